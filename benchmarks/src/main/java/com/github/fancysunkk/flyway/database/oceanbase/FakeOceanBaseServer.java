@@ -0,0 +1,519 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process stand-in for an OceanBase server. It answers the queries issued by the plugin with canned results
+ * and waits a configurable time on every round trip, so the number of round trips and the resulting wall time can
+ * be measured for different network profiles without a real cluster.
+ * <p>
+ * Index builds can be made to take a while with {@link #setDdlMillis}, during which {@code GV$SESSION_LONGOPS} reports
+ * their progress like OceanBase does, and {@code EXPLAIN} of a DML statement answers with a plan in the 4.x format.
+ */
+public class FakeOceanBaseServer implements Driver {
+    static final String URL = "jdbc:mysql://fake-oceanbase:2881/bench";
+    private static final String VERSION_COMMENT = "OceanBase_CE 4.2.1.0 (r100000102023103109-fake) (Built Oct 31 2023 10:12:54)";
+    private static final String SERVER_VERSION = "5.7.25-OceanBase_CE-v4.2.1.0";
+    private static final Pattern INDEX_BUILD = Pattern.compile(
+            "(?:CREATE\\s+(?:UNIQUE\\s+)?INDEX|ADD\\s+(?:UNIQUE\\s+)?(?:INDEX|KEY))\\s+`?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final long TABLE_ROWS = 1_000_000;
+    private static final Pattern ASSIGNMENT = Pattern.compile("(?<![@\\w])(\\w+)\\s*=\\s*(\\w+)");
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(?:`?\\w+`?\\.)?`?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DML_TABLE = Pattern.compile(
+            "\\b(?:UPDATE|INTO|FROM)\\s+(?:`?\\w+`?\\.)?`?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern KEY_LOOKUP = Pattern.compile("\\bWHERE\\s+`?id`?\\s*=", Pattern.CASE_INSENSITIVE);
+
+    private final long latencyNanos;
+    private final int tableCount;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final Map<String, String> variables = new ConcurrentHashMap<>();
+    private final Set<String> createdTables = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> indexBuilders = new ConcurrentHashMap<>();
+    private volatile long ddlMillis;
+    private volatile String buildingIndex;
+    private volatile long buildStart;
+
+    /**
+     * @param latencyMicros The time every round trip takes, in microseconds.
+     * @param tableCount    The number of tables in the fake schema.
+     */
+    FakeOceanBaseServer(long latencyMicros, int tableCount) {
+        this.latencyNanos = latencyMicros * 1000L;
+        this.tableCount = tableCount;
+        variables.put("foreign_key_checks", "1");
+        variables.put("sql_safe_updates", "0");
+        variables.put("ob_query_timeout", "10000000");
+        variables.put("ob_trx_timeout", "86400000000");
+        variables.put("_force_parallel_query_dop", "1");
+        variables.put("_force_parallel_dml_dop", "1");
+        variables.put("_force_parallel_ddl_dop", "1");
+    }
+
+    /**
+     * @return The number of round trips served so far.
+     */
+    long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    /**
+     * @param ddlMillis The time every index build takes, in milliseconds.
+     */
+    void setDdlMillis(long ddlMillis) {
+        this.ddlMillis = ddlMillis;
+    }
+
+    /**
+     * @return The name of the thread that built this index, or {@code null} if it was not built.
+     */
+    String getIndexBuilder(String index) {
+        return indexBuilders.get(index.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @return The current value of this system variable.
+     */
+    String getVariable(String name) {
+        return variables.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    DataSource dataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> "getConnection".equals(method.getName())
+                        ? connect(URL, new Properties())
+                        : defaultValue(method.getReturnType()));
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        roundTrips.incrementAndGet();
+        pause();
+        boolean[] autoCommit = {true};
+        String[] catalog = {"bench"};
+        Connection[] self = new Connection[1];
+        self[0] = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "createStatement":
+                    return statement(Statement.class, null, self[0], catalog);
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, (String) args[0], self[0], catalog);
+                case "prepareCall":
+                    return statement(CallableStatement.class, (String) args[0], self[0], catalog);
+                case "getMetaData":
+                    return metaData(self[0]);
+                case "getAutoCommit":
+                    return autoCommit[0];
+                case "setAutoCommit":
+                    roundTrip();
+                    autoCommit[0] = (Boolean) args[0];
+                    return null;
+                case "getCatalog":
+                    return catalog[0];
+                case "setCatalog":
+                    roundTrip();
+                    catalog[0] = (String) args[0];
+                    return null;
+                case "commit":
+                case "rollback":
+                    roundTrip();
+                    return null;
+                case "isValid":
+                    return true;
+                case "getTransactionIsolation":
+                    return Connection.TRANSACTION_REPEATABLE_READ;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        return self[0];
+    }
+
+    private DatabaseMetaData metaData(Connection connection) {
+        return proxy(DatabaseMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getURL":
+                    return URL;
+                case "getUserName":
+                    return "bench";
+                case "getDatabaseProductName":
+                    return "MySQL";
+                case "getDatabaseProductVersion":
+                    return SERVER_VERSION;
+                case "getDatabaseMajorVersion":
+                    return 5;
+                case "getDatabaseMinorVersion":
+                    return 7;
+                case "getDriverName":
+                    return "Fake OceanBase Driver";
+                case "getDriverVersion":
+                    return "1.0";
+                case "getConnection":
+                    return connection;
+                case "getTables":
+                    return resultSet(createdTables.contains(String.valueOf(args[2]).toLowerCase(Locale.ENGLISH))
+                            ? rows(new String[]{String.valueOf(args[2])})
+                            : Collections.<String[]>emptyList());
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private Statement statement(Class<? extends Statement> type, String preparedSql, Connection connection, String[] catalog) {
+        Object[] state = new Object[2]; // current result set, current update count
+        return proxy(type, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                roundTrip();
+                List<String[]> rows = respond(sql, catalog);
+                state[0] = rows == null ? null : resultSet(rows);
+                state[1] = rows == null ? 0 : -1;
+                if ("executeQuery".equals(name)) {
+                    return state[0] == null ? resultSet(Collections.emptyList()) : state[0];
+                }
+                if ("executeUpdate".equals(name) || "executeLargeUpdate".equals(name)) {
+                    return 0;
+                }
+                if ("executeBatch".equals(name)) {
+                    return new int[0];
+                }
+                return rows != null;
+            }
+            switch (name) {
+                case "getResultSet":
+                    Object resultSet = state[0];
+                    state[0] = null;
+                    return resultSet;
+                case "getUpdateCount":
+                    return state[1] == null ? -1 : state[1];
+                case "getMoreResults":
+                    state[0] = null;
+                    state[1] = -1;
+                    return false;
+                case "getConnection":
+                    return connection;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * @param catalog The current schema of the connection executing the statement.
+     * @return The rows answering this statement, or {@code null} if it returns an update count instead.
+     */
+    private List<String[]> respond(String sql, String[] catalog) throws SQLException {
+        String normalized = sql.trim();
+        if (normalized.regionMatches(true, 0, "EXPLAIN ", 0, 8)) {
+            return rows(new String[]{explain(normalized.substring(8))});
+        }
+        if (normalized.startsWith("SELECT @@version_comment, @@version")) {
+            return rows(new String[]{VERSION_COMMENT, SERVER_VERSION});
+        }
+        if (normalized.equalsIgnoreCase("SELECT VERSION()")) {
+            return rows(new String[]{SERVER_VERSION});
+        }
+        if (normalized.startsWith("SELECT COUNT(*) FROM performance_schema.user_variables_by_thread")) {
+            return rows(new String[]{"0"});
+        }
+        if (normalized.startsWith("SELECT DATABASE()")) {
+            return rows(new String[]{catalog[0]});
+        }
+        if (normalized.startsWith("USE ")) {
+            catalog[0] = normalized.substring(4).replace("`", "").trim();
+            return null;
+        }
+        if (normalized.startsWith("DROP SCHEMA ")
+                && normalized.substring(12).replace("`", "").trim().equals(catalog[0])) {
+            catalog[0] = null;
+            return null;
+        }
+        if (normalized.startsWith("SELECT SUBSTRING_INDEX(USER()")) {
+            return rows(new String[]{"bench"});
+        }
+        if (normalized.startsWith("SELECT CASE")) {
+            return rows(new String[]{tableCount > 0 ? "1" : "0"});
+        }
+        if (normalized.startsWith("SELECT 'T', table_name")) {
+            List<String[]> tables = new ArrayList<>(tableCount);
+            for (int i = 0; i < tableCount; i++) {
+                tables.add(new String[]{"T", "table_" + i, "BASE TABLE"});
+            }
+            return tables;
+        }
+        if (normalized.contains("GET_LOCK") || normalized.contains("RELEASE_LOCK")) {
+            return rows(new String[]{"1"});
+        }
+        if (normalized.contains("IS_USED_LOCK")) {
+            return rows(new String[]{null});
+        }
+        if (normalized.startsWith("SELECT @@")) {
+            String[] names = normalized.substring("SELECT ".length()).split(",");
+            String[] values = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                values[i] = getVariable(names[i].trim().substring(2));
+            }
+            return rows(values);
+        }
+        if (normalized.regionMatches(true, 0, "SET ", 0, 4)) {
+            Matcher assignment = ASSIGNMENT.matcher(normalized.substring(4));
+            while (assignment.find()) {
+                variables.put(assignment.group(1).toLowerCase(Locale.ENGLISH), assignment.group(2));
+            }
+            return null;
+        }
+        if (normalized.contains("GV$SESSION_LONGOPS")) {
+            return sessionLongops();
+        }
+        if (normalized.startsWith("SELECT column_type FROM information_schema.columns")) {
+            return rows(new String[]{"varchar(64)"});
+        }
+        if (normalized.contains("information_schema.tables") && normalized.contains("table_rows")) {
+            return rows(new String[]{String.valueOf(TABLE_ROWS)});
+        }
+        Matcher createTable = CREATE_TABLE.matcher(normalized);
+        if (createTable.lookingAt()) {
+            createdTables.add(createTable.group(1).toLowerCase(Locale.ENGLISH));
+            return null;
+        }
+        Matcher indexBuild = INDEX_BUILD.matcher(normalized);
+        if (indexBuild.find() && ddlMillis > 0) {
+            buildIndex(indexBuild.group(1));
+            return null;
+        }
+        // The privilege check of the recreating clean
+        if (normalized.equals("SHOW GRANTS")) {
+            return Arrays.asList(new String[]{"GRANT USAGE ON *.* TO 'bench'@'%'"},
+                    new String[]{"GRANT ALL PRIVILEGES ON `bench`.* TO 'bench'@'%'"});
+        }
+        if (normalized.startsWith("SELECT default_character_set_name, default_collation_name")) {
+            return rows(new String[]{"utf8mb4", "utf8mb4_general_ci"});
+        }
+        if (normalized.startsWith("SELECT COUNT(1) FROM information_schema.schemata")) {
+            return rows(new String[]{"1"});
+        }
+        if (normalized.startsWith("SELECT COUNT(")) {
+            return rows(new String[]{"0"});
+        }
+        if (normalized.startsWith("SELECT") || normalized.startsWith("SHOW")) {
+            return Collections.emptyList();
+        }
+        return null;
+    }
+
+    /**
+     * Plans a DML statement like OceanBase 4.x: a primary key lookup when it filters on {@code id}, otherwise a full
+     * scan of its table. The tables of the fake schema and those created so far can be explained.
+     */
+    private String explain(String sql) throws SQLException {
+        Matcher table = DML_TABLE.matcher(sql);
+        String name = table.find() ? table.group(1).toLowerCase(Locale.ENGLISH) : "";
+        if (!createdTables.contains(name) && !name.matches("table_\\d+")
+                || name.matches("table_\\d+") && Integer.parseInt(name.substring(6)) >= tableCount) {
+            throw new SQLSyntaxErrorException("Table 'bench." + name + "' doesn't exist", "42S02", 1146);
+        }
+        boolean lookup = KEY_LOOKUP.matcher(sql).find();
+        String operator = lookup ? "TABLE GET" : "TABLE FULL SCAN";
+        long rows = lookup ? 1 : TABLE_ROWS;
+        return "==================================================\n"
+                + "|ID|OPERATOR       |NAME    |EST.ROWS|EST.TIME(us)|\n"
+                + "--------------------------------------------------\n"
+                + String.format(Locale.ENGLISH, "|0 |%-15s|%-8s|%-8d|%-12d|%n", operator, name, rows, lookup ? 3 : rows / 20)
+                + "==================================================\n"
+                + "Outputs & filters:\n"
+                + "-------------------------------------\n"
+                + "  0 - output(nil), filter(nil), rowset=256\n"
+                + "      access(nil), partitions(p0)\n"
+                + (lookup ? "      range_key([" + name + ".id]), range[1 ; 1]\n"
+                : "      range_key([" + name + ".id]), range(MIN ; MAX)always true\n");
+    }
+
+    private void buildIndex(String index) {
+        buildingIndex = index.toLowerCase(Locale.ENGLISH);
+        indexBuilders.put(buildingIndex, Thread.currentThread().getName());
+        buildStart = System.nanoTime();
+        try {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ddlMillis));
+        } finally {
+            buildingIndex = null;
+        }
+    }
+
+    /**
+     * @return The progress row of the index build in progress, if any, without a time remaining like OceanBase 4.x.
+     */
+    private List<String[]> sessionLongops() {
+        String index = buildingIndex;
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+        long done = Math.min(2 * TABLE_ROWS, 2 * TABLE_ROWS * elapsedMillis / ddlMillis);
+        long scanned = Math.min(TABLE_ROWS, done);
+        String message = "TENANT_ID: 1002, TASK_ID: 1, STATUS: REDEFINITION, ROW_SCANNED: " + scanned
+                + ", ROW_SORTED: " + scanned + ", ROW_INSERTED: " + (done - scanned);
+        return rows(new String[]{String.valueOf(elapsedMillis / 1000), "0", message});
+    }
+
+    private static List<String[]> rows(String[] row) {
+        return Collections.singletonList(row);
+    }
+
+    private ResultSet resultSet(List<String[]> rows) {
+        int[] position = {-1};
+        Object[] lastValue = new Object[1];
+        int columnCount = rows.isEmpty() ? 1 : rows.get(0).length;
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return columnCount;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return "C" + args[0];
+                case "getColumnType":
+                    return java.sql.Types.VARCHAR;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if ("next".equals(name)) {
+                return ++position[0] < rows.size();
+            }
+            if ("getMetaData".equals(name)) {
+                return metaData;
+            }
+            if ("wasNull".equals(name)) {
+                return lastValue[0] == null;
+            }
+            if (name.startsWith("get") && args != null && args.length == 1) {
+                int column = args[0] instanceof Integer ? (Integer) args[0] : Integer.parseInt(((String) args[0]).substring(1));
+                String value = rows.get(position[0])[column - 1];
+                lastValue[0] = value;
+                return convert(value, method.getReturnType());
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object convert(String value, Class<?> type) {
+        if (type == String.class || type == Object.class) {
+            return value;
+        }
+        if (value == null) {
+            return defaultValue(type);
+        }
+        if (type == int.class) {
+            return Integer.parseInt(value);
+        }
+        if (type == long.class) {
+            return Long.parseLong(value);
+        }
+        if (type == boolean.class) {
+            return "1".equals(value) || Boolean.parseBoolean(value);
+        }
+        return defaultValue(type);
+    }
+
+    private void roundTrip() {
+        roundTrips.incrementAndGet();
+        pause();
+    }
+
+    private void pause() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeOceanBaseServer.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return URL.equals(url);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getGlobal();
+    }
+}
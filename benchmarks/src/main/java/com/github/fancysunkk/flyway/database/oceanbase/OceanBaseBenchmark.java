@@ -0,0 +1,160 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.api.configuration.ClassicConfiguration;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures wall time and round trips of the plugin's connection setup, clean, lock, restore and DDL paths against
+ * {@link FakeOceanBaseServer}.
+ * <p>
+ * Run with {@code mvn package && java -jar target/benchmarks.jar}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OceanBaseBenchmark {
+    /**
+     * The time every round trip takes, in microseconds: in-process, same zone and cross-zone profiles.
+     */
+    @Param({"0", "200", "1000"})
+    public long latencyMicros;
+
+    @Param({"100", "3000"})
+    public int tableCount;
+
+    private FakeOceanBaseServer server;
+    private ClassicConfiguration configuration;
+    private JdbcConnectionFactory jdbcConnectionFactory;
+    private OceanBaseDatabase database;
+    private OceanBaseConnection connection;
+
+    /**
+     * Reports the total number of round trips served during each iteration next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+        public long roundTrips;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new FakeOceanBaseServer(latencyMicros, tableCount);
+        configuration = new ClassicConfiguration();
+        configuration.setDataSource(server.dataSource());
+        jdbcConnectionFactory = new JdbcConnectionFactory(configuration.getDataSource(), configuration, null);
+        database = new OceanBaseDatabase(configuration, jdbcConnectionFactory, null);
+        connection = database.getMainConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Object constructDatabase(RoundTrips counters) {
+        long before = server.getRoundTrips();
+        OceanBaseDatabase constructed = new OceanBaseDatabase(configuration, jdbcConnectionFactory, null);
+        constructed.getVersion();
+        constructed.close();
+        counters.roundTrips += server.getRoundTrips() - before;
+        return constructed;
+    }
+
+    @Benchmark
+    public Object constructConnectionAndRestore(RoundTrips counters) throws Exception {
+        long before = server.getRoundTrips();
+        OceanBaseConnection constructed = new OceanBaseConnection(database, server.connect(FakeOceanBaseServer.URL, null));
+        constructed.getJdbcTemplate().execute("SET foreign_key_checks = 0");
+        constructed.restoreOriginalState();
+        constructed.close();
+        counters.roundTrips += server.getRoundTrips() - before;
+        return constructed;
+    }
+
+    @Benchmark
+    public boolean schemaEmpty(RoundTrips counters) {
+        long before = server.getRoundTrips();
+        database.getCatalogCache().invalidate();
+        boolean empty = connection.getSchema("bench").empty();
+        counters.roundTrips += server.getRoundTrips() - before;
+        return empty;
+    }
+
+    @Benchmark
+    public Object schemaAllTables(RoundTrips counters) {
+        long before = server.getRoundTrips();
+        database.getCatalogCache().invalidate();
+        Object tables = connection.getSchema("bench").allTables();
+        counters.roundTrips += server.getRoundTrips() - before;
+        return tables;
+    }
+
+    @Benchmark
+    public void schemaClean(RoundTrips counters) {
+        long before = server.getRoundTrips();
+        connection.getSchema("bench").clean();
+        counters.roundTrips += server.getRoundTrips() - before;
+    }
+
+    @Benchmark
+    public void schemaRecreate(RoundTrips counters) {
+        OceanBaseConfigurationExtension extension = database.getConfigurationExtension();
+        extension.setCleanRecreateSchema(true);
+        try {
+            long before = server.getRoundTrips();
+            connection.getSchema("bench").clean();
+            counters.roundTrips += server.getRoundTrips() - before;
+        } finally {
+            extension.setCleanRecreateSchema(false);
+        }
+    }
+
+    /**
+     * A metadata-only ALTER TABLE, which should take a single round trip.
+     */
+    @Benchmark
+    public void alterTableInstant(RoundTrips counters) throws Exception {
+        long before = server.getRoundTrips();
+        connection.getJdbcTemplate().execute("ALTER TABLE table_0 RENAME COLUMN c TO d");
+        counters.roundTrips += server.getRoundTrips() - before;
+    }
+
+    /**
+     * An index build, executed with the DDL timeout extended around it.
+     */
+    @Benchmark
+    public void createIndex(RoundTrips counters) throws Exception {
+        long before = server.getRoundTrips();
+        connection.getJdbcTemplate().execute("CREATE INDEX idx_c ON table_0 (c)");
+        counters.roundTrips += server.getRoundTrips() - before;
+    }
+
+    @Benchmark
+    public Object namedLock(RoundTrips counters) {
+        long before = server.getRoundTrips();
+        Object result = new MySQLNamedLockTemplate(connection.getJdbcTemplate(), 1, 0).execute(() -> Boolean.TRUE);
+        counters.roundTrips += server.getRoundTrips() - before;
+        return result;
+    }
+}
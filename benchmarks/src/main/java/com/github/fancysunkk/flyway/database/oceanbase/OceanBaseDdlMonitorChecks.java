@@ -0,0 +1,131 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.api.configuration.ClassicConfiguration;
+import org.flywaydb.core.api.logging.LogFactory;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that {@link OceanBaseDdlMonitor} reports the progress of an index build read from the
+ * {@code GV$SESSION_LONGOPS} of {@link FakeOceanBaseServer}, and that {@code ob_query_timeout} is extended during the
+ * build and restored after it, both when the build runs on the migration's connection and when it is submitted.
+ * <p>
+ * Run with {@code mvn package && java -cp target/benchmarks.jar com.github.fancysunkk.flyway.database.oceanbase.OceanBaseDdlMonitorChecks}.
+ */
+public class OceanBaseDdlMonitorChecks {
+    private static final long DDL_MILLIS = 3500;
+    private static final String SESSION_TIMEOUT = "10000000";
+    private static final String DDL_TIMEOUT = "86400000000";
+    private static final Pattern PROGRESS = Pattern.compile(
+            "Building index (\\w+) on table_1: (\\d+\\.\\d)% complete, about (\\d+)s remaining \\(running for (\\d+)s\\)");
+
+    public static void main(String[] args) throws SQLException {
+        check("idx_blocking", false, "main");
+        check("idx_submitted", true, "flyway-oceanbase-ddl-submit");
+        System.out.println("OceanBaseDdlMonitorChecks passed");
+    }
+
+    /**
+     * Builds an index and checks its progress reports, timeouts and the thread it was built on.
+     */
+    private static void check(String index, boolean submit, String builder) throws SQLException {
+        FakeOceanBaseServer server = new FakeOceanBaseServer(0, 10);
+        server.setDdlMillis(DDL_MILLIS);
+        ProgressHandler progress = new ProgressHandler(server);
+        Logger logger = Logger.getLogger(OceanBaseDdlMonitor.class.getName());
+        logger.addHandler(progress);
+        OceanBaseDatabase database = database(server, submit);
+        try {
+            long start = System.nanoTime();
+            database.getMainConnection().getJdbcTemplate().executeStatement("CREATE INDEX " + index + " ON table_1 (c)");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            check(elapsedMillis >= DDL_MILLIS, index + " returns once the build completes, not after " + elapsedMillis + " ms");
+        } finally {
+            database.close();
+            logger.removeHandler(progress);
+        }
+
+        check(builder.equals(server.getIndexBuilder(index)), index + " built on " + server.getIndexBuilder(index));
+        check(SESSION_TIMEOUT.equals(server.getVariable("ob_query_timeout")),
+                index + " restores ob_query_timeout to " + server.getVariable("ob_query_timeout"));
+
+        List<Matcher> reports = new ArrayList<>();
+        for (Map.Entry<String, String> report : progress.reports) {
+            Matcher matcher = PROGRESS.matcher(report.getKey());
+            check(matcher.matches() && matcher.group(1).equals(index), "progress of " + index + ": " + report.getKey());
+            check(DDL_TIMEOUT.equals(report.getValue()), index + " runs with ob_query_timeout " + report.getValue());
+            reports.add(matcher);
+        }
+        check(reports.size() >= 2, index + " reports its progress every second: " + progress.reports);
+        double previous = 0;
+        for (Matcher report : reports) {
+            double percent = Double.parseDouble(report.group(2));
+            long remaining = Long.parseLong(report.group(3));
+            long running = Long.parseLong(report.group(4));
+            // The fake scans, then inserts, the rows of table_1 evenly over the build
+            double expected = 100.0 * running * 1000 / DDL_MILLIS;
+            check(percent > previous && percent < 100, index + " percent increases: " + percent + " after " + previous);
+            check(Math.abs(percent - expected) <= 15, index + " " + percent + "% complete after " + running + "s");
+            check(Math.abs(remaining - (DDL_MILLIS / 1000.0 - running)) <= 1.5,
+                    index + " about " + remaining + "s remaining after " + running + "s");
+            previous = percent;
+        }
+    }
+
+    private static OceanBaseDatabase database(FakeOceanBaseServer server, boolean submit) {
+        ClassicConfiguration configuration = new ClassicConfiguration();
+        configuration.setDataSource(server.dataSource());
+        Map<String, String> properties = new HashMap<>();
+        properties.put("flyway.oceanbase.ddl.progressInterval", "1");
+        properties.put("flyway.oceanbase.ddl.submit", String.valueOf(submit));
+        configuration.configure(properties);
+        LogFactory.setConfiguration(configuration);
+        JdbcConnectionFactory jdbcConnectionFactory = new JdbcConnectionFactory(configuration.getDataSource(), configuration, null);
+        return new OceanBaseDatabase(configuration, jdbcConnectionFactory, null);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Collects the progress reports of the monitor, with the {@code ob_query_timeout} in effect when each was logged.
+     */
+    private static class ProgressHandler extends Handler {
+        private final FakeOceanBaseServer server;
+        private final List<Map.Entry<String, String>> reports = new CopyOnWriteArrayList<>();
+
+        ProgressHandler(FakeOceanBaseServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getMessage().startsWith("Building ")) {
+                reports.add(new AbstractMap.SimpleEntry<>(record.getMessage(), server.getVariable("ob_query_timeout")));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks the parsing of OceanBase 3.x and 4.x execution plans, and the thresholds of {@link OceanBaseExplainAnalyzer}
+ * against the plans of {@link FakeOceanBaseServer}.
+ * <p>
+ * Run with {@code mvn package && java -cp target/benchmarks.jar com.github.fancysunkk.flyway.database.oceanbase.OceanBaseExplainChecks}.
+ */
+public class OceanBaseExplainChecks {
+    private static final String PLAN_3X = "===========================================================\n"
+            + "|ID|OPERATOR                     |NAME    |EST. ROWS|COST  |\n"
+            + "-----------------------------------------------------------\n"
+            + "|0 |PX COORDINATOR               |        |100000   |98765 |\n"
+            + "|1 | EXCHANGE OUT DISTR          |:EX10000|100000   |90123 |\n"
+            + "|2 |  PX PARTITION ITERATOR      |        |100000   |80456 |\n"
+            + "|3 |   TABLE SCAN                |orders  |100000   |70789 |\n"
+            + "===========================================================\n"
+            + "\n"
+            + "Outputs & filters:\n"
+            + "-------------------------------------\n"
+            + "  0 - output([orders.id]), filter(nil)\n"
+            + "  1 - output([orders.id]), filter(nil), dop=16\n"
+            + "  2 - output([orders.id]), filter(nil)\n"
+            + "  3 - output([orders.id]), filter([orders.status = 1]),\n"
+            + "      access([orders.id], [orders.status]), partitions(p[0-15])\n"
+            + "      range_key([orders.id]), range(MIN ; MAX)always true\n";
+
+    private static final String PLAN_3X_RANGE = "==============================================\n"
+            + "|ID|OPERATOR  |NAME             |EST. ROWS|COST|\n"
+            + "----------------------------------------------\n"
+            + "|0 |TABLE SCAN|users(idx_email) |2        |92  |\n"
+            + "==============================================\n"
+            + "\n"
+            + "Outputs & filters:\n"
+            + "-------------------------------------\n"
+            + "  0 - output([users.id]), filter(nil),\n"
+            + "      access([users.id]), partitions(p0)\n"
+            + "      range_key([users.email], [users.id]), range(a@x.com,MIN ; a@x.com,MAX)\n";
+
+    private static final String PLAN_4X = "=================================================================\n"
+            + "|ID|OPERATOR                 |NAME          |EST.ROWS|EST.TIME(us)|\n"
+            + "-----------------------------------------------------------------\n"
+            + "|0 |HASH JOIN                |              |5000    |41287       |\n"
+            + "|1 |├─TABLE FULL SCAN        |users         |20000   |1064        |\n"
+            + "|2 |└─TABLE RANGE SCAN       |orders(idx_ts)|5000    |37211       |\n"
+            + "=================================================================\n"
+            + "Outputs & filters:\n"
+            + "-------------------------------------\n"
+            + "  0 - output([orders.id]), filter(nil), rowset=256\n"
+            + "      equal_conds([users.id = orders.user_id]), other_conds(nil)\n"
+            + "  1 - output([users.id]), filter(nil), rowset=256\n"
+            + "      access([users.id]), partitions(p0)\n"
+            + "      is_index_back=false, is_global_index=false,\n"
+            + "      range_key([users.id]), range(MIN ; MAX)always true\n"
+            + "  2 - output([orders.id], [orders.user_id]), filter(nil), rowset=256\n"
+            + "      access([orders.id], [orders.user_id]), partitions(p0)\n"
+            + "      range_key([orders.ts], [orders.id]), range(2024-01-01,MIN ; MAX,MAX)\n";
+
+    private static final String PLAN_4X_PX = "====================================================================\n"
+            + "|ID|OPERATOR                       |NAME    |EST.ROWS|EST.TIME(us)|\n"
+            + "--------------------------------------------------------------------\n"
+            + "|0 |DISTRIBUTED DELETE             |        |300000  |812345      |\n"
+            + "|1 |└─PX COORDINATOR               |        |300000  |402311      |\n"
+            + "|2 |  └─EXCHANGE OUT DISTR         |:EX10000|300000  |301122      |\n"
+            + "|3 |    └─PX BLOCK ITERATOR        |        |300000  |200456      |\n"
+            + "|4 |      └─TABLE FULL SCAN        |orders  |300000  |100789      |\n"
+            + "====================================================================\n";
+
+    public static void main(String[] args) throws IOException {
+        parse3x();
+        parse4x();
+        parseUnrecognized();
+        analyze();
+        System.out.println("OceanBaseExplainChecks passed");
+    }
+
+    private static void parse3x() {
+        OceanBaseExplainPlan plan = OceanBaseExplainPlan.parse(PLAN_3X);
+        check(plan.getEstimatedRows() == 100000, "3.x estimated rows: " + plan.getEstimatedRows());
+        check(plan.getCost() == 98765, "3.x cost is that of the root operator: " + plan.getCost());
+        check(plan.isParallel(), "3.x PX plan is parallel");
+        check(plan.getFullScans().equals(Collections.singletonMap("orders", 100000L)),
+                "3.x TABLE SCAN over range(MIN ; MAX)always true is a full scan: " + plan.getFullScans());
+
+        OceanBaseExplainPlan range = OceanBaseExplainPlan.parse(PLAN_3X_RANGE);
+        check(range.getEstimatedRows() == 2 && range.getCost() == 92, "3.x index range scan figures");
+        check(!range.isParallel(), "3.x serial plan is not parallel");
+        check(range.getFullScans().isEmpty(), "3.x bounded TABLE SCAN is no full scan: " + range.getFullScans());
+    }
+
+    private static void parse4x() {
+        OceanBaseExplainPlan plan = OceanBaseExplainPlan.parse(PLAN_4X);
+        check(plan.getEstimatedRows() == 20000, "4.x estimated rows is the largest of any operator: " + plan.getEstimatedRows());
+        check(plan.getCost() == 41287, "4.x cost is the EST.TIME(us) of the root operator: " + plan.getCost());
+        check(!plan.isParallel(), "4.x serial plan is not parallel");
+        check(plan.getFullScans().equals(Collections.singletonMap("users", 20000L)),
+                "4.x TABLE FULL SCAN is a full scan, TABLE RANGE SCAN is not: " + plan.getFullScans());
+
+        OceanBaseExplainPlan px = OceanBaseExplainPlan.parse(PLAN_4X_PX);
+        check(px.isParallel(), "4.x PX operator below the root makes the plan parallel");
+        check(px.getCost() == 812345 && px.getEstimatedRows() == 300000, "4.x PX plan figures");
+        check(px.getFullScans().equals(Collections.singletonMap("orders", 300000L)), "4.x PX full scan: " + px.getFullScans());
+    }
+
+    private static void parseUnrecognized() {
+        try {
+            OceanBaseExplainPlan.parse("Query OK, 0 rows affected");
+            throw new AssertionError("Text without a plan table is refused");
+        } catch (FlywayException expected) {
+            check(expected.getMessage().startsWith("Unrecognized execution plan"), expected.getMessage());
+        }
+    }
+
+    private static void analyze() throws IOException {
+        Path locations = Files.createTempDirectory("explain-checks");
+        Files.write(locations.resolve("V1__explain.sql"), ("UPDATE table_1 SET status = 2 WHERE id = 1;\n"
+                + "DELETE FROM table_2 WHERE status = 0;\n"
+                + "INSERT INTO missing (id) VALUES (1);\n").getBytes(StandardCharsets.UTF_8));
+
+        OceanBaseExplainAnalyzer.Report report = new OceanBaseExplainAnalyzer(configure(locations, 0)).analyze();
+        check(report.getPendingMigrations() == 1, "pending migrations: " + report.getPendingMigrations());
+        check(report.getRanked().size() == 2, "explained statements: " + report.getRanked().size());
+        OceanBaseExplainAnalyzer.Entry first = report.getRanked().get(0);
+        check(first.getSql().startsWith("DELETE FROM table_2") && first.getLineNumber() == 2,
+                "full scan ranked first: " + first.getLocation());
+        check(first.getFullScans().equals(Collections.singletonMap("table_2", 1_000_000L)),
+                "full scan of table_2: " + first.getFullScans());
+        check(report.getRanked().get(1).getFullScans().isEmpty(), "primary key lookup is no full scan");
+        check(report.getUnexplained().size() == 1 && report.getUnexplained().get(0).getError().contains("missing"),
+                "statement on a missing table is not explained");
+        check(report.getViolations().isEmpty(), "no thresholds, no violations");
+
+        try {
+            new OceanBaseExplainAnalyzer(configure(locations, 1000)).analyze();
+            throw new AssertionError("Thresholds exceeded by the full scan fail the report");
+        } catch (FlywayException expected) {
+            String message = expected.getMessage();
+            check(message.startsWith("1 pending statements exceed"), message);
+            check(message.contains("V1__explain.sql:2: estimated rows 1000000 > 1000"), "maxRows tripped: " + message);
+            check(message.contains("cost 50000 > 1000"), "maxCost tripped: " + message);
+            check(message.contains("full scan of table_2 (1000000 rows) > 1000"), "maxFullScanRows tripped: " + message);
+            check(!message.contains(":1:"), "primary key lookup trips no threshold: " + message);
+        }
+    }
+
+    /**
+     * @param threshold The maximum rows, cost and full scan rows, or 0 for none.
+     */
+    private static FluentConfiguration configure(Path locations, int threshold) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("flyway.oceanbase.explain.maxRows", String.valueOf(threshold));
+        properties.put("flyway.oceanbase.explain.maxCost", String.valueOf(threshold));
+        properties.put("flyway.oceanbase.explain.maxFullScanRows", String.valueOf(threshold));
+        return Flyway.configure()
+                .dataSource(new FakeOceanBaseServer(0, 100).dataSource())
+                .locations("filesystem:" + locations)
+                .configuration(properties);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.github.fancysunkk.flyway.database.oceanbase;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.resource.LoadableResource;
 import org.flywaydb.core.internal.util.IOUtils;
 import org.flywaydb.core.internal.util.StringUtils;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -18,6 +20,8 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,6 +30,8 @@ import java.util.Locale;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class FileUtils {
+    private static final int BUFFER_SIZE = 8192;
+
     public static String getFilename(String path) {
         if (StringUtils.hasText(path)) {
             return path.substring(path.replace("/", "\\").lastIndexOf("\\") + 1);
@@ -125,11 +131,166 @@ public class FileUtils {
         }
     }
 
-    private static String readAsString(Path path, Charset charset) {
+    /**
+     * Opens this file for reading. A byte order mark, if present, selects the charset and is skipped.
+     *
+     * @param path    The file to read.
+     * @param charset The charset to use if the file starts without a byte order mark.
+     * @return The reader. The caller is responsible for closing it.
+     * @throws IOException in case of I/O errors
+     */
+    public static Reader openReader(Path path, Charset charset) throws IOException {
+        return openReader(Files.newInputStream(path), charset);
+    }
+
+    /**
+     * Opens this resource for reading. A byte order mark, if present, selects the charset and is skipped.
+     *
+     * @param classLoader The class loader to load the resource with.
+     * @param path        The path of the resource.
+     * @param charset     The charset to use if the resource starts without a byte order mark.
+     * @return The reader. The caller is responsible for closing it.
+     */
+    public static Reader openResourceReader(ClassLoader classLoader, String path, Charset charset) {
+        InputStream inputStream = classLoader.getResourceAsStream(path);
+        if (inputStream == null) {
+            throw new FlywayException("Unable to find " + path + " in resources");
+        }
         try {
-            return String.join(System.lineSeparator(), Files.readAllLines(path.toAbsolutePath(), charset));
+            // Like the plain InputStreamReader this replaces, malformed input is replaced rather than reported
+            return openReader(inputStream, charset, false);
+        } catch (IOException ioe) {
+            IOUtils.close(inputStream);
+            throw new FlywayException("Unable to read " + path + " from resources", ioe);
+        }
+    }
+
+    /**
+     * Opens this resource for reading, straight from disk when it is a file so that its byte order mark, if present,
+     * selects the charset.
+     *
+     * @param resource The resource to read.
+     * @param charset  The charset to use if the file starts without a byte order mark.
+     * @return The reader. The caller is responsible for closing it.
+     * @throws IOException in case of I/O errors
+     */
+    public static Reader openReader(LoadableResource resource, Charset charset) throws IOException {
+        String pathOnDisk = resource.getAbsolutePathOnDisk();
+        if (pathOnDisk != null && Files.isRegularFile(Paths.get(pathOnDisk))) {
+            return openReader(Paths.get(pathOnDisk), charset);
+        }
+        return new BufferedReader(resource.read(), BUFFER_SIZE);
+    }
+
+    /**
+     * Wraps this stream in a buffered reader. A byte order mark, if present, selects the charset and is skipped.
+     * Input that is malformed or unmappable in the charset fails the read, like {@link Files#readAllLines} does.
+     *
+     * @param in      The stream to read.
+     * @param charset The charset to use if the stream starts without a byte order mark.
+     * @return The reader. Closing it closes the stream.
+     * @throws IOException in case of I/O errors
+     */
+    public static Reader openReader(InputStream in, Charset charset) throws IOException {
+        return openReader(in, charset, true);
+    }
+
+    private static Reader openReader(InputStream in, Charset charset, boolean report) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(3);
+        byte[] bom = new byte[3];
+        int length = 0;
+        int read;
+        while (length < bom.length && (read = buffered.read(bom, length, bom.length - length)) != -1) {
+            length += read;
+        }
+        buffered.reset();
+
+        Charset detected = detectBom(bom, length);
+        if (detected != null) {
+            long skip = detected == StandardCharsets.UTF_8 ? 3 : 2;
+            while (skip > 0) {
+                skip -= buffered.skip(skip);
+            }
+        }
+        Charset decoded = detected == null ? charset : detected;
+        if (!report) {
+            return new BufferedReader(new InputStreamReader(buffered, decoded), BUFFER_SIZE);
+        }
+        CharsetDecoder decoder = decoded.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        return new BufferedReader(new InputStreamReader(buffered, decoder), BUFFER_SIZE);
+    }
+
+    /**
+     * @return The charset indicated by the byte order mark at the start of this buffer, or {@code null} if there is
+     * none.
+     */
+    private static Charset detectBom(byte[] bytes, int length) {
+        if (length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    /**
+     * Reads this reader to its end, replacing every line terminator with the platform line separator in a single
+     * pass over the characters.
+     *
+     * @param in                The reader to read. Not closed.
+     * @param capacity          The expected number of characters, used to size the result.
+     * @param trailingSeparator Whether the result must end with a line separator, or must not.
+     * @return The text.
+     * @throws IOException in case of I/O errors
+     */
+    private static String readNormalized(Reader in, int capacity, boolean trailingSeparator) throws IOException {
+        String separator = System.lineSeparator();
+        StringBuilder result = new StringBuilder(capacity);
+        char[] buffer = new char[BUFFER_SIZE];
+        boolean afterCarriageReturn = false;
+        boolean endsWithTerminator = false;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    result.append(buffer, start, i - start);
+                    start = i + 1;
+                    // The \n of a \r\n pair was already replaced along with the \r
+                    if (c == '\r' || !afterCarriageReturn) {
+                        result.append(separator);
+                    }
+                    afterCarriageReturn = c == '\r';
+                    endsWithTerminator = true;
+                } else {
+                    afterCarriageReturn = false;
+                    endsWithTerminator = false;
+                }
+            }
+            result.append(buffer, start, read - start);
+        }
+        if (endsWithTerminator && !trailingSeparator) {
+            result.setLength(result.length() - separator.length());
+        } else if (!endsWithTerminator && trailingSeparator && result.length() > 0) {
+            result.append(separator);
+        }
+        return result.toString();
+    }
+
+    private static String readAsString(Path path, Charset charset) {
+        Path absolutePath = path.toAbsolutePath();
+        try (Reader reader = openReader(absolutePath, charset)) {
+            return readNormalized(reader, (int) Math.min(Files.size(absolutePath), Integer.MAX_VALUE - 8), false);
         } catch (IOException ioe) {
-            throw new FlywayException("Unable to read " + path.toAbsolutePath() + " from disk", ioe);
+            throw new FlywayException("Unable to read " + absolutePath + " from disk", ioe);
         }
     }
 
@@ -142,14 +303,8 @@ public class FileUtils {
     }
 
     public static String readResourceAsString(ClassLoader classLoader, String path) {
-        try (InputStream inputStream = classLoader.getResourceAsStream(path);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-
-            String result = "";
-            while (reader.ready()) {
-                result += reader.readLine() + System.lineSeparator();
-            }
-            return result;
+        try (Reader reader = openResourceReader(classLoader, path, Charset.defaultCharset())) {
+            return readNormalized(reader, BUFFER_SIZE, true);
         } catch (IOException ioe) {
             throw new FlywayException("Unable to read " + path + " from resources", ioe);
         }
@@ -186,6 +341,25 @@ public class FileUtils {
         return new File(redgateAppData, "Flyway CLI");
     }
 
+    /**
+     * Opens this file for writing in UTF-8, creating its directory if needed, for content too large to be built in
+     * memory and written with {@link #writeToFile}.
+     *
+     * @param file The file, replaced if it exists.
+     * @return The buffered writer. The caller is responsible for closing it.
+     */
+    public static Writer openWriter(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new FlywayException("Unable to create directory " + dir.getAbsolutePath());
+        }
+        try {
+            return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new FlywayException("Unable to write to " + file.getAbsolutePath(), e);
+        }
+    }
+
     public static void writeToFile(File file, String content) {
         try (FileWriter fileWriter = new FileWriter(file)) {
             fileWriter.write(content);
@@ -193,4 +367,4 @@ public class FileUtils {
             throw new FlywayException("Unable to write to " + file.getAbsolutePath(), e);
         }
     }
-}
\ No newline at end of file
+}
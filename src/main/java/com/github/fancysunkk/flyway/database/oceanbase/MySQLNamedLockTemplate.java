@@ -1,15 +1,31 @@
 package com.github.fancysunkk.flyway.database.oceanbase;
 
 import lombok.CustomLog;
+import lombok.Getter;
 import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.internal.exception.FlywaySqlException;
 import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 
 import java.sql.SQLException;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
 
 @CustomLog
 public class MySQLNamedLockTemplate {
+    /**
+     * The longest time a single GET_LOCK call blocks, kept below OceanBase's default ob_query_timeout of 10 s.
+     */
+    private static final int MAX_WAIT_PER_ATTEMPT_SECONDS = 5;
+
+    /**
+     * Waits longer than this are reported at info level.
+     */
+    private static final long REPORT_WAIT_MILLIS = 1000L;
+
+    private static final long MIN_BACKOFF_MILLIS = 50L;
+    private static final long MAX_BACKOFF_MILLIS = 1000L;
+
     /**
      * The connection for the named lock.
      */
@@ -17,14 +33,34 @@ public class MySQLNamedLockTemplate {
 
     private final String lockName;
 
+    /**
+     * The maximum total time to wait for the lock, in seconds. 0 waits indefinitely.
+     */
+    private final int timeoutSeconds;
+
+    /**
+     * How long the last execution waited for the lock, in milliseconds.
+     */
+    @Getter
+    private long waitMillis;
+
+    /**
+     * The connection id of the session that held the lock while this one was waiting, or {@code null} if the lock
+     * was never contended.
+     */
+    @Getter
+    private String holderConnectionId;
+
     /**
      * Creates a new named lock template for this connection.
      *
-     * @param jdbcTemplate  The jdbcTemplate for the connection.
-     * @param discriminator A number to discriminate between locks.
+     * @param jdbcTemplate   The jdbcTemplate for the connection.
+     * @param discriminator  A number to discriminate between locks.
+     * @param timeoutSeconds The maximum total time to wait for the lock, in seconds. 0 waits indefinitely.
      */
-    MySQLNamedLockTemplate(JdbcTemplate jdbcTemplate, int discriminator) {
+    MySQLNamedLockTemplate(JdbcTemplate jdbcTemplate, int discriminator, int timeoutSeconds) {
         this.jdbcTemplate = jdbcTemplate;
+        this.timeoutSeconds = timeoutSeconds;
         lockName = "Flyway-" + discriminator;
     }
 
@@ -35,8 +71,12 @@ public class MySQLNamedLockTemplate {
      * @return The result of the callable code.
      */
     public <T> T execute(Callable<T> callable) {
+        boolean locked = false;
         try {
-            lock();
+            try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.LOCK)) {
+                lock();
+            }
+            locked = true;
             return callable.call();
         } catch (SQLException e) {
             throw new FlywaySqlException("Unable to acquire MySQL named lock: " + lockName, e);
@@ -49,25 +89,71 @@ public class MySQLNamedLockTemplate {
             }
             throw rethrow;
         } finally {
-            try {
-                jdbcTemplate.execute("SELECT RELEASE_LOCK('" + lockName + "')");
-            } catch (SQLException e) {
-                LOG.error("Unable to release MySQL named lock: " + lockName, e);
+            if (locked) {
+                try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.LOCK)) {
+                    jdbcTemplate.execute("SELECT RELEASE_LOCK('" + lockName + "')");
+                } catch (SQLException e) {
+                    LOG.error("Unable to release MySQL named lock: " + lockName, e);
+                }
             }
         }
     }
 
     private void lock() throws SQLException {
-        while (!tryLock()) {
+        long start = System.nanoTime();
+        long deadline = timeoutSeconds > 0 ? start + timeoutSeconds * 1_000_000_000L : Long.MAX_VALUE;
+        long backoff = MIN_BACKOFF_MILLIS;
+        holderConnectionId = null;
+
+        while (!tryLock(secondsUntil(deadline))) {
+            String holder = queryHolder();
+            if (holder != null && !holder.equals(holderConnectionId)) {
+                LOG.info("Waiting for MySQL named lock " + lockName + " held by connection " + holder);
+                holderConnectionId = holder;
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new FlywayException("Unable to acquire MySQL named lock " + lockName + " within " + timeoutSeconds
+                        + " seconds" + (holderConnectionId == null ? "" : " (held by connection " + holderConnectionId + ")"));
+            }
             try {
-                Thread.sleep(100L);
+                // Jitter keeps waiters that failed together from retrying in lockstep
+                Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff));
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new FlywayException("Interrupted while attempting to acquire MySQL named lock: " + lockName, e);
             }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+
+        waitMillis = (System.nanoTime() - start) / 1_000_000;
+        if (waitMillis >= REPORT_WAIT_MILLIS) {
+            LOG.info("Acquired MySQL named lock " + lockName + " after waiting " + waitMillis + " ms");
+        } else {
+            LOG.debug("Acquired MySQL named lock " + lockName + " after waiting " + waitMillis + " ms");
         }
+        OceanBaseMetrics.lockAcquired(lockName, waitMillis, holderConnectionId);
     }
 
-    private boolean tryLock() throws SQLException {
-        return jdbcTemplate.queryForInt("SELECT GET_LOCK(?,10)", lockName) == 1;
+    private int secondsUntil(long deadline) {
+        if (deadline == Long.MAX_VALUE) {
+            return MAX_WAIT_PER_ATTEMPT_SECONDS;
+        }
+        long remaining = (deadline - System.nanoTime() + 999_999_999L) / 1_000_000_000L;
+        return (int) Math.max(0, Math.min(remaining, MAX_WAIT_PER_ATTEMPT_SECONDS));
+    }
+
+    private boolean tryLock(int waitSeconds) throws SQLException {
+        // GET_LOCK blocks on the server until the lock is free or the wait expires, so no client-side polling is needed
+        return jdbcTemplate.queryForInt("SELECT GET_LOCK(?," + waitSeconds + ")", lockName) == 1;
+    }
+
+    private String queryHolder() {
+        try {
+            List<String> holder = jdbcTemplate.queryForStringList("SELECT IS_USED_LOCK(?)", lockName);
+            return holder.isEmpty() ? null : holder.get(0);
+        } catch (SQLException e) {
+            LOG.debug("Unable to determine holder of MySQL named lock " + lockName + ": " + e.getMessage());
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
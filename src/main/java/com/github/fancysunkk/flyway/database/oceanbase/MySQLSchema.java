@@ -8,7 +8,6 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 public class MySQLSchema extends Schema<OceanBaseDatabase, MySQLTable> {
 
@@ -18,26 +17,39 @@ public class MySQLSchema extends Schema<OceanBaseDatabase, MySQLTable> {
 
     @Override
     protected boolean doExists() throws SQLException {
-        return jdbcTemplate.queryForInt("SELECT COUNT(1) FROM information_schema.schemata WHERE schema_name=? LIMIT 1", name) > 0;
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.CATALOG)) {
+            return jdbcTemplate.queryForInt("SELECT COUNT(1) FROM information_schema.schemata WHERE schema_name=? LIMIT 1", name) > 0;
+        }
     }
 
     @Override
     protected boolean doEmpty() throws SQLException {
-        List<String> params = new ArrayList<>(Arrays.asList(name, name, name, name, name));
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.CATALOG)) {
+            return isEmpty();
+        }
+    }
+
+    private boolean isEmpty() throws SQLException {
+        OceanBaseCatalogSnapshot snapshot = database.getCatalogCache().getIfLoaded(name);
+        if (snapshot != null) {
+            return snapshot.isEmpty();
+        }
+
+        List<String> params = new ArrayList<>(Arrays.asList(name, name));
         if (database.eventSchedulerQueryable) {
             params.add(name);
         }
 
-        return jdbcTemplate.queryForInt("SELECT SUM(found) FROM ("
-                        + "(SELECT 1 as found FROM information_schema.tables WHERE table_schema=?) UNION ALL "
-                        + "(SELECT 1 as found FROM information_schema.views WHERE table_schema=? LIMIT 1) UNION ALL "
-                        + "(SELECT 1 as found FROM information_schema.table_constraints WHERE table_schema=? LIMIT 1) UNION ALL "
-                        + "(SELECT 1 as found FROM information_schema.triggers WHERE event_object_schema=?  LIMIT 1) UNION ALL "
-                        + "(SELECT 1 as found FROM information_schema.routines WHERE routine_schema=? LIMIT 1)"
+        // CASE evaluates its branches in order and stops at the first match, so a non-empty schema costs a single
+        // LIMIT 1 probe. Views are listed in information_schema.tables, and constraints and triggers cannot exist
+        // without a table, so they need no probe of their own.
+        return jdbcTemplate.queryForInt("SELECT CASE"
+                        + " WHEN EXISTS (SELECT 1 FROM information_schema.tables WHERE table_schema=? LIMIT 1) THEN 1"
+                        + " WHEN EXISTS (SELECT 1 FROM information_schema.routines WHERE routine_schema=? LIMIT 1) THEN 1"
                         // #2410 Unlike MySQL, MariaDB 10.0 and newer don't allow the events table to be queried
                         // when the event scheduled is DISABLED or in some rare cases OFF
-                        + (database.eventSchedulerQueryable ? " UNION ALL (SELECT 1 as found FROM information_schema.events WHERE event_schema=? LIMIT 1)" : "")
-                        + ") as all_found",
+                        + (database.eventSchedulerQueryable ? " WHEN EXISTS (SELECT 1 FROM information_schema.events WHERE event_schema=? LIMIT 1) THEN 1" : "")
+                        + " ELSE 0 END",
                 params.toArray(new String[0])
         ) == 0;
     }
@@ -54,94 +66,92 @@ public class MySQLSchema extends Schema<OceanBaseDatabase, MySQLTable> {
 
     @Override
     protected void doClean() throws SQLException {
-        if (database.eventSchedulerQueryable) {
-            for (String statement : cleanEvents()) {
-                jdbcTemplate.execute(statement);
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.CLEAN)) {
+            OceanBaseConfigurationExtension configuration = database.getConfigurationExtension();
+            if (configuration.isCleanRecreateSchema()
+                    && new OceanBaseSchemaRecreator(database, jdbcTemplate, configuration.getCleanGrantees()).recreate(this)) {
+                return;
             }
+            dropAllObjects();
         }
+    }
 
-        for (String statement : cleanRoutines()) {
-            jdbcTemplate.execute(statement);
-        }
+    private void dropAllObjects() throws SQLException {
+        long start = System.nanoTime();
+        OceanBaseConfigurationExtension configuration = database.getConfigurationExtension();
+        OceanBaseCleanExecutor executor = new OceanBaseCleanExecutor(database, jdbcTemplate,
+                configuration.getCleanBatchSize(), configuration.getCleanParallelism());
+
+        // Taken once up front, as every DROP below invalidates the cached snapshot
+        OceanBaseCatalogSnapshot snapshot = getCatalogSnapshot();
+        try {
+            if (database.eventSchedulerQueryable) {
+                executor.dropEach("events", cleanEvents(snapshot));
+            }
 
-        for (String statement : cleanViews()) {
-            jdbcTemplate.execute(statement);
-        }
+            executor.dropEach("routines", cleanRoutines(snapshot));
 
-        jdbcTemplate.execute("SET FOREIGN_KEY_CHECKS = 0");
-        for (Table table : allTables()) {
-            table.drop();
-        }
-        jdbcTemplate.execute("SET FOREIGN_KEY_CHECKS = 1");
+            executor.dropInBatches("views", "DROP VIEW", quote(snapshot.getViews()), false);
 
-        // MariaDB 10.3 and newer only
-        for (String statement : cleanSequences()) {
-            jdbcTemplate.execute(statement);
+            jdbcTemplate.execute("SET FOREIGN_KEY_CHECKS = 0");
+            executor.dropInBatches("tables", "DROP TABLE", quote(snapshot.getTables()), true);
+            jdbcTemplate.execute("SET FOREIGN_KEY_CHECKS = 1");
+
+            // MariaDB 10.3 and newer only
+            executor.dropEach("sequences", cleanSequences(snapshot));
+        } finally {
+            // Objects dropped over additional connections are not seen by the catalog cache
+            database.getCatalogCache().invalidate();
         }
-    }
 
-    private List<String> cleanEvents() throws SQLException {
-        List<String> eventNames =
-                jdbcTemplate.queryForStringList(
-                        "SELECT event_name FROM information_schema.events WHERE event_schema=?",
-                        name);
+        executor.report(this, start);
+    }
 
-        List<String> statements = new ArrayList<>();
-        for (String eventName : eventNames) {
-            statements.add("DROP EVENT " + database.quote(name, eventName));
+    private OceanBaseCatalogSnapshot getCatalogSnapshot() throws SQLException {
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.CATALOG)) {
+            return database.getCatalogCache().get(jdbcTemplate, name, database.eventSchedulerQueryable);
         }
-        return statements;
     }
 
-    private List<String> cleanRoutines() throws SQLException {
-        List<Map<String, String>> routineNames =
-                jdbcTemplate.queryForList(
-                        "SELECT routine_name as 'N', routine_type as 'T' FROM information_schema.routines WHERE routine_schema=?",
-                        name);
+    private List<String> quote(String[] objectNames) {
+        List<String> quoted = new ArrayList<>(objectNames.length);
+        for (String objectName : objectNames) {
+            quoted.add(database.quote(name, objectName));
+        }
+        return quoted;
+    }
 
+    private List<String> cleanEvents(OceanBaseCatalogSnapshot snapshot) {
         List<String> statements = new ArrayList<>();
-        for (Map<String, String> row : routineNames) {
-            String routineName = row.get("N");
-            String routineType = row.get("T");
-            statements.add("DROP " + routineType + " " + database.quote(name, routineName));
+        for (String eventName : snapshot.getEvents()) {
+            statements.add("DROP EVENT " + database.quote(name, eventName));
         }
         return statements;
     }
 
-    private List<String> cleanViews() throws SQLException {
-        List<String> viewNames =
-                jdbcTemplate.queryForStringList(
-                        "SELECT table_name FROM information_schema.views WHERE table_schema=?", name);
-
+    private List<String> cleanRoutines(OceanBaseCatalogSnapshot snapshot) {
         List<String> statements = new ArrayList<>();
-        for (String viewName : viewNames) {
-            statements.add("DROP VIEW " + database.quote(name, viewName));
+        for (int i = 0; i < snapshot.getRoutineCount(); i++) {
+            statements.add("DROP " + snapshot.getRoutineType(i) + " " + database.quote(name, snapshot.getRoutineName(i)));
         }
         return statements;
     }
 
-    private List<String> cleanSequences() throws SQLException {
-        List<String> names =
-                jdbcTemplate.queryForStringList(
-                        "SELECT table_name FROM information_schema.tables WHERE table_schema=?" +
-                                " AND table_type='SEQUENCE'", name);
-
+    private List<String> cleanSequences(OceanBaseCatalogSnapshot snapshot) {
         List<String> statements = new ArrayList<>();
-        for (String name : names) {
-            statements.add("DROP SEQUENCE " + database.quote(this.name, name));
+        for (String sequenceName : snapshot.getSequences()) {
+            statements.add("DROP SEQUENCE " + database.quote(name, sequenceName));
         }
         return statements;
     }
 
     @Override
     protected MySQLTable[] doAllTables() throws SQLException {
-        List<String> tableNames = jdbcTemplate.queryForStringList(
-                "SELECT table_name FROM information_schema.tables WHERE table_schema=?" +
-                        " AND table_type IN ('BASE TABLE', 'SYSTEM VERSIONED')", name);
+        String[] tableNames = getCatalogSnapshot().getTables();
 
-        MySQLTable[] tables = new MySQLTable[tableNames.size()];
-        for (int i = 0; i < tableNames.size(); i++) {
-            tables[i] = new MySQLTable(jdbcTemplate, database, this, tableNames.get(i));
+        MySQLTable[] tables = new MySQLTable[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            tables[i] = new MySQLTable(jdbcTemplate, database, this, tableNames[i]);
         }
         return tables;
     }
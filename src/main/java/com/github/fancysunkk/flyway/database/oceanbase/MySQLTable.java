@@ -5,8 +5,17 @@ import org.flywaydb.core.internal.database.mysql.MySQLDatabase;
 import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
 public class MySQLTable extends Table<OceanBaseDatabase, MySQLSchema> {
+    /**
+     * The suffix of the companion table locked by {@link OceanBaseLockStrategy#SENTINEL}.
+     */
+    static final String SENTINEL_TABLE_SUFFIX = "_lock";
+
+    private static final int ER_NO_SUCH_TABLE = 1146;
+
     /**
      * Creates a new MySQL table.
      *
@@ -31,6 +40,38 @@ public class MySQLTable extends Table<OceanBaseDatabase, MySQLSchema> {
 
     @Override
     protected void doLock() throws SQLException {
-        jdbcTemplate.execute("SELECT * FROM " + this + " FOR UPDATE");
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.LOCK)) {
+            if (database.getLockStrategy() == OceanBaseLockStrategy.SENTINEL) {
+                lockSentinel();
+            } else {
+                jdbcTemplate.execute("SELECT * FROM " + this + " FOR UPDATE");
+            }
+        }
+    }
+
+    /**
+     * Locks the single row of the companion lock table, creating the table and its row on first use.
+     * Unlike locking this table, the cost stays constant however long the history grows.
+     */
+    private void lockSentinel() throws SQLException {
+        String sentinel = database.quote(schema.getName(), name + SENTINEL_TABLE_SUFFIX);
+        String lockQuery = "SELECT id FROM " + sentinel + " WHERE id = 1 FOR UPDATE";
+
+        List<String> rows;
+        try {
+            rows = jdbcTemplate.queryForStringList(lockQuery);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_NO_SUCH_TABLE) {
+                throw e;
+            }
+            // Implicitly commits, which is harmless as no lock is held yet
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + sentinel + " (`id` INT NOT NULL PRIMARY KEY)");
+            rows = Collections.emptyList();
+        }
+
+        if (rows.isEmpty()) {
+            jdbcTemplate.execute("INSERT IGNORE INTO " + sentinel + " (`id`) VALUES (1)");
+            jdbcTemplate.queryForStringList(lockQuery);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,820 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.jdbc.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads CSV or TSV data into a table much faster than INSERT statements in a SQL migration. The data is streamed, never
+ * held in memory as a whole, to the server with {@code LOAD DATA LOCAL INFILE}, with a direct load hint on OceanBase.
+ * When the driver or the server does not allow local infiles, it is inserted with multi-row INSERT statements instead,
+ * over several connections if configured.
+ * <p>
+ * The first line of the data names the columns. In CSV, fields may be quoted with double quotes and an empty unquoted
+ * field is NULL. In TSV, tabs, newlines and backslashes are escaped with a backslash and {@code \N} is NULL, as in
+ * MySQL's own format.
+ * <p>
+ * Data files named like SQL migrations ({@code V2__countries.csv}) are loaded by {@link OceanBaseBulkLoadResolver}.
+ * Java migrations can call {@link #load} directly with the connection of their context.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseBulkLoad {
+    private static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;
+
+    /**
+     * The largest number of parameters in a prepared statement.
+     */
+    private static final int MAX_PARAMETERS = 65535;
+
+    /**
+     * The most warnings of a LOAD DATA listed when it did not load every row as is.
+     */
+    private static final int MAX_REPORTED_WARNINGS = 10;
+
+    /**
+     * The layout of the data.
+     */
+    public enum Format {
+        CSV(','),
+        TSV('\t');
+
+        private final char separator;
+
+        Format(char separator) {
+            this.separator = separator;
+        }
+
+        /**
+         * @return The format of a file with this name, from its extension.
+         */
+        public static Format of(String filename) {
+            String lower = filename.toLowerCase(Locale.ENGLISH);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".tsv")) {
+                return TSV;
+            }
+            throw new FlywayException("Unable to load " + filename + ": only .csv and .tsv files are supported");
+        }
+    }
+
+    private final int batchSize;
+    private final int parallelism;
+    private final boolean direct;
+    private final DataSource dataSource;
+
+    /**
+     * Creates a new bulk loader.
+     *
+     * @param batchSize   The number of rows inserted by each statement when falling back to INSERT statements.
+     * @param parallelism The degree of parallelism of LOAD DATA, or the number of connections inserting concurrently.
+     * @param direct      Whether to ask OceanBase for a direct load.
+     * @param dataSource  The data source of the additional connections inserting concurrently, or {@code null} to
+     *                    insert over the given connection only.
+     */
+    public OceanBaseBulkLoad(int batchSize, int parallelism, boolean direct, DataSource dataSource) {
+        if (batchSize < 1) {
+            throw new FlywayException("Invalid bulk load batch size (should be at least 1): " + batchSize);
+        }
+        if (parallelism < 1) {
+            throw new FlywayException("Invalid bulk load parallelism (should be at least 1): " + parallelism);
+        }
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.direct = direct;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Creates a bulk loader from the {@code flyway.oceanbase.load.*} configuration.
+     */
+    static OceanBaseBulkLoad fromConfiguration(OceanBaseConfigurationExtension extension, DataSource dataSource) {
+        return new OceanBaseBulkLoad(extension.getLoadBatchSize(), extension.getLoadParallelism(), extension.isLoadDirect(),
+                dataSource);
+    }
+
+    /**
+     * Loads this data into a table. Rows are committed as they are loaded, so a failed load leaves those before it in
+     * the table.
+     *
+     * @param connection The connection to load over, in auto-commit mode.
+     * @param table      The table, possibly qualified with its schema.
+     * @param format     The layout of the data.
+     * @param data       The data, closed when done.
+     * @return The number of rows loaded.
+     * @throws SQLException when the rows cannot be loaded.
+     */
+    public long load(Connection connection, String table, Format format, Reader data) throws SQLException {
+        long start = System.nanoTime();
+        try (RowReader rows = new RowReader(data, format)) {
+            List<String> columns = rows.header();
+            String method;
+            long loaded;
+            RowStream stream = new RowStream(rows, columns.size());
+            if (loadData(connection, table, columns, stream)) {
+                method = "LOAD DATA";
+                loaded = stream.count;
+            } else {
+                method = "INSERT statements";
+                loaded = insert(connection, table, columns, rows, true);
+            }
+            long nanos = System.nanoTime() - start;
+            LOG.info(String.format(Locale.ENGLISH, "Loaded %d rows into %s with %s in %d ms (%.0f rows/s)",
+                    loaded, table, method, nanos / 1_000_000, loaded * 1e9 / Math.max(nanos, 1)));
+            return loaded;
+        } catch (UncheckedIOException e) {
+            throw new FlywayException("Unable to read the data to load into " + table, e.getCause());
+        }
+    }
+
+    /**
+     * Replaces the contents of this table with this data in a single transaction: the rows of the table are deleted,
+     * then the data is inserted with INSERT statements over this connection, as LOAD DATA commits on its own on
+     * OceanBase. Concurrent readers see the old rows until the transaction commits, and a failed replacement leaves
+     * them in place.
+     * <p>
+     * Foreign key checks are disabled while the rows are replaced, so that the table can be the parent of other tables:
+     * their rows are neither rejected nor deleted in cascade, and reference the rows loaded again with the same keys.
+     * Keys referenced by other tables must therefore remain in the data.
+     *
+     * @param connection The connection to load over. In auto-commit mode the replacement is committed, otherwise it
+     *                   is part of the current transaction.
+     * @param table      The table, possibly qualified with its schema.
+     * @param format     The layout of the data.
+     * @param data       The data, closed when done.
+     * @return The number of rows loaded.
+     * @throws SQLException when the rows cannot be replaced.
+     */
+    public long replace(Connection connection, String table, Format format, Reader data) throws SQLException {
+        long start = System.nanoTime();
+        try (RowReader rows = new RowReader(data, format)) {
+            List<String> columns = rows.header();
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            long loaded;
+            try {
+                long deleted;
+                try (Statement statement = connection.createStatement()) {
+                    String foreignKeyChecks;
+                    try (ResultSet resultSet = statement.executeQuery("SELECT @@foreign_key_checks")) {
+                        foreignKeyChecks = resultSet.next() ? resultSet.getString(1) : "1";
+                    }
+                    statement.execute("SET foreign_key_checks = 0");
+                    try {
+                        deleted = statement.executeLargeUpdate("DELETE FROM " + quote(table));
+                        loaded = insert(connection, table, columns, rows, false);
+                    } finally {
+                        statement.execute("SET foreign_key_checks = " + foreignKeyChecks);
+                    }
+                }
+                if (autoCommit) {
+                    connection.commit();
+                }
+                long nanos = System.nanoTime() - start;
+                LOG.info(String.format(Locale.ENGLISH, "Replaced %d rows of %s with %d rows in %d ms (%.0f rows/s)",
+                        deleted, table, loaded, nanos / 1_000_000, loaded * 1e9 / Math.max(nanos, 1)));
+            } catch (SQLException | RuntimeException e) {
+                if (autoCommit) {
+                    rollback(connection);
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+            return loaded;
+        } catch (UncheckedIOException e) {
+            throw new FlywayException("Unable to read the data to load into " + table, e.getCause());
+        }
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LOG.debug("Unable to rollback failed replacement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams the rows to the server with LOAD DATA LOCAL INFILE, in MySQL's default tab-separated format.
+     *
+     * @return {@code false} if the driver or the server does not allow it and no row was read yet.
+     */
+    private boolean loadData(Connection connection, String table, List<String> columns, RowStream stream) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            Statement driverStatement = statement.isWrapperFor(Statement.class) ? statement.unwrap(Statement.class) : null;
+            Method setter = driverStatement == null ? null : localInfileSetter(driverStatement);
+            if (setter == null) {
+                LOG.debug("The JDBC driver cannot stream local infiles, loading " + table + " with INSERT statements");
+                return false;
+            }
+            try {
+                setter.invoke(driverStatement, stream);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOG.debug("Unable to stream a local infile, loading " + table + " with INSERT statements: " + e);
+                return false;
+            }
+            try {
+                statement.execute("LOAD DATA " + hints(connection) + "LOCAL INFILE 'flyway-bulk-load.tsv' INTO TABLE "
+                        + quote(table) + " CHARACTER SET utf8mb4 (" + quoteColumns(columns) + ")");
+            } catch (SQLException e) {
+                if (stream.started) {
+                    throw e;
+                }
+                LOG.debug("Unable to LOAD DATA LOCAL INFILE, loading " + table + " with INSERT statements: " + e.getMessage());
+                return false;
+            }
+            if (stream.invalidRow != null) {
+                throw new FlywayException("Unable to load " + stream.invalidRow + ". The " + stream.count
+                        + " rows before it remain loaded");
+            }
+            checkLoaded(statement, table, stream.count);
+            return true;
+        }
+    }
+
+    /**
+     * Fails unless LOAD DATA loaded every row sent as is. With LOCAL, the server skips rows with a duplicate key and
+     * stores invalid values converted, reporting both as warnings rather than failing like an INSERT would.
+     */
+    private static void checkLoaded(Statement statement, String table, long sent) throws SQLException {
+        int loaded = statement.getUpdateCount();
+        List<String> warnings = new ArrayList<>();
+        for (SQLWarning warning = statement.getWarnings(); warning != null && warnings.size() < MAX_REPORTED_WARNINGS;
+             warning = warning.getNextWarning()) {
+            warnings.add(warning.getMessage());
+        }
+        if ((loaded < 0 || loaded == sent) && warnings.isEmpty()) {
+            return;
+        }
+        throw new FlywayException("LOAD DATA into " + table + " loaded " + (loaded < 0 ? "an unknown number" : loaded)
+                + " of " + sent + " rows" + (warnings.isEmpty() ? "" : " with warnings:\n- " + String.join("\n- ", warnings))
+                + "\nThe loaded rows remain in the table");
+    }
+
+    private String hints(Connection connection) {
+        OceanBaseVersion version;
+        try {
+            version = OceanBaseJdbcUtils.getVersion(connection);
+        } catch (SQLException e) {
+            version = null;
+        }
+        if (version == null) {
+            return "";
+        }
+        StringBuilder hints = new StringBuilder("/*+ ");
+        if (direct && version.isAtLeast(4, 1, 0)) {
+            hints.append("direct(true, 0) ");
+        }
+        hints.append("parallel(").append(parallelism).append(") */ ");
+        return hints.toString();
+    }
+
+    /**
+     * @return The public {@code setLocalInfileInputStream(InputStream)} method of the MySQL, MariaDB and OceanBase
+     * drivers' statements, or {@code null} if this statement has none.
+     */
+    private static Method localInfileSetter(Statement statement) {
+        List<Class<?>> types = new ArrayList<>();
+        for (Class<?> type = statement.getClass(); type != null; type = type.getSuperclass()) {
+            types.add(type);
+        }
+        for (int i = 0; i < types.size(); i++) {
+            for (Class<?> type : types.get(i).getInterfaces()) {
+                if (!types.contains(type)) {
+                    types.add(type);
+                }
+            }
+        }
+        for (Class<?> type : types) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                continue;
+            }
+            try {
+                return type.getDeclaredMethod("setLocalInfileInputStream", InputStream.class);
+            } catch (NoSuchMethodException e) {
+                // Declared elsewhere in the hierarchy
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserts the rows with multi-row INSERT statements, over several connections if configured and allowed.
+     *
+     * @param concurrent Whether the rows may be inserted over additional connections, outside the transaction of this
+     *                   connection.
+     */
+    private long insert(Connection connection, String table, List<String> columns, RowReader rows, boolean concurrent)
+            throws SQLException {
+        int rowsPerStatement = Math.max(1, Math.min(batchSize, MAX_PARAMETERS / columns.size()));
+        String insert = "INSERT INTO " + quote(table) + " (" + quoteColumns(columns) + ") VALUES ";
+        Progress progress = new Progress(table);
+        if (!concurrent || parallelism == 1 || dataSource == null) {
+            try (Inserter inserter = new Inserter(connection, insert, columns.size(), rowsPerStatement)) {
+                List<String[]> batch;
+                while (!(batch = rows.next(rowsPerStatement, columns.size())).isEmpty()) {
+                    inserter.insert(batch);
+                    progress.add(batch.size());
+                }
+            }
+            return progress.rows.get();
+        }
+
+        String catalog = connection.getCatalog();
+        BlockingQueue<List<String[]>> batches = new ArrayBlockingQueue<>(parallelism * 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "flyway-oceanbase-load-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                futures.add(executor.submit(() -> {
+                    Connection workerConnection = dataSource.getConnection();
+                    try {
+                        if (catalog != null) {
+                            workerConnection.setCatalog(catalog);
+                        }
+                        try (Inserter inserter = new Inserter(workerConnection, insert, columns.size(), rowsPerStatement)) {
+                            List<String[]> batch;
+                            while (!(batch = batches.take()).isEmpty()) {
+                                inserter.insert(batch);
+                                progress.add(batch.size());
+                            }
+                        }
+                    } finally {
+                        JdbcUtils.closeConnection(workerConnection);
+                    }
+                    return null;
+                }));
+            }
+            List<String[]> batch;
+            do {
+                batch = rows.next(rowsPerStatement, columns.size());
+                while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    checkWorkers(futures);
+                }
+            } while (!batch.isEmpty());
+            // Every worker stops at an empty batch
+            for (int i = 1; i < parallelism; i++) {
+                while (!batches.offer(Collections.emptyList(), 100, TimeUnit.MILLISECONDS)) {
+                    checkWorkers(futures);
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new FlywayException("Unable to load " + table, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while loading " + table, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return progress.rows.get();
+    }
+
+    /**
+     * Rethrows the failure of a worker, which otherwise leaves the queue full.
+     */
+    private static void checkWorkers(List<Future<Void>> futures) throws ExecutionException, InterruptedException {
+        for (Future<Void> future : futures) {
+            if (future.isDone()) {
+                future.get();
+            }
+        }
+    }
+
+    private static String quote(String table) {
+        StringBuilder quoted = new StringBuilder();
+        for (String part : table.split("\\.")) {
+            if (quoted.length() > 0) {
+                quoted.append('.');
+            }
+            quoted.append('`').append(part.replace("`", "")).append('`');
+        }
+        return quoted.toString();
+    }
+
+    private static String quoteColumns(List<String> columns) {
+        StringBuilder quoted = new StringBuilder();
+        for (String column : columns) {
+            if (quoted.length() > 0) {
+                quoted.append(", ");
+            }
+            quoted.append('`').append(column.trim().replace("`", "``")).append('`');
+        }
+        return quoted.toString();
+    }
+
+    /**
+     * Inserts batches of rows with a multi-row INSERT, prepared once for full batches.
+     */
+    private static class Inserter implements AutoCloseable {
+        private final Connection connection;
+        private final String insert;
+        private final int columns;
+        private final int rowsPerStatement;
+        private PreparedStatement fullBatch;
+
+        Inserter(Connection connection, String insert, int columns, int rowsPerStatement) {
+            this.connection = connection;
+            this.insert = insert;
+            this.columns = columns;
+            this.rowsPerStatement = rowsPerStatement;
+        }
+
+        void insert(List<String[]> batch) throws SQLException {
+            if (batch.size() == rowsPerStatement) {
+                if (fullBatch == null) {
+                    fullBatch = connection.prepareStatement(statement(rowsPerStatement));
+                }
+                execute(fullBatch, batch);
+            } else {
+                try (PreparedStatement statement = connection.prepareStatement(statement(batch.size()))) {
+                    execute(statement, batch);
+                }
+            }
+        }
+
+        private String statement(int rows) {
+            StringBuilder row = new StringBuilder("(");
+            for (int i = 0; i < columns; i++) {
+                row.append(i == 0 ? "?" : ", ?");
+            }
+            row.append(")");
+            StringBuilder sql = new StringBuilder(insert.length() + rows * (row.length() + 2)).append(insert);
+            for (int i = 0; i < rows; i++) {
+                sql.append(i == 0 ? "" : ", ").append(row);
+            }
+            return sql.toString();
+        }
+
+        private void execute(PreparedStatement statement, List<String[]> batch) throws SQLException {
+            int index = 1;
+            for (String[] values : batch) {
+                for (String value : values) {
+                    if (value == null) {
+                        statement.setNull(index++, Types.VARCHAR);
+                    } else {
+                        statement.setString(index++, value);
+                    }
+                }
+            }
+            statement.executeUpdate();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (fullBatch != null) {
+                fullBatch.close();
+            }
+        }
+    }
+
+    /**
+     * Counts the rows loaded and logs the rate every few seconds.
+     */
+    private static class Progress {
+        private final String table;
+        private final long start = System.nanoTime();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong lastReport = new AtomicLong(start);
+
+        Progress(String table) {
+            this.table = table;
+        }
+
+        void add(int count) {
+            long total = rows.addAndGet(count);
+            long now = System.nanoTime();
+            long last = lastReport.get();
+            if (now - last >= REPORT_INTERVAL_NANOS && lastReport.compareAndSet(last, now)) {
+                LOG.info(String.format(Locale.ENGLISH, "Loading %s: %d rows so far (%.0f rows/s)",
+                        table, total, total * 1e9 / (now - start)));
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of CSV or TSV data one field at a time.
+     */
+    private static class RowReader implements AutoCloseable {
+        private final Reader reader;
+        private final Format format;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private long line = 1;
+
+        RowReader(Reader reader, Format format) {
+            this.reader = reader;
+            this.format = format;
+        }
+
+        List<String> header() {
+            String[] header = next();
+            if (header == null || header.length == 0) {
+                throw new FlywayException("Unable to load empty data: the first line should name the columns");
+            }
+            List<String> columns = new ArrayList<>();
+            for (String column : header) {
+                if (column == null || column.trim().isEmpty()) {
+                    throw new FlywayException("Unable to load data with an unnamed column: " + String.join(",", columns));
+                }
+                columns.add(column);
+            }
+            return columns;
+        }
+
+        /**
+         * @return Up to this number of rows, or none at the end of the data.
+         */
+        List<String[]> next(int count, int columns) {
+            List<String[]> rows = new ArrayList<>(count);
+            String[] row;
+            while (rows.size() < count && (row = next()) != null) {
+                if (row.length != columns) {
+                    throw new FlywayException("Unable to load line " + (line - 1) + ": expected " + columns
+                            + " fields but found " + row.length);
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        /**
+         * @return The next row, or {@code null} at the end of the data. Empty lines are skipped.
+         */
+        String[] next() {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            boolean escapedNull = false;
+            int c;
+            while ((c = read()) >= 0) {
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == format.separator) {
+                    fields.add(value(field, wasQuoted, escapedNull));
+                    field.setLength(0);
+                    wasQuoted = false;
+                    escapedNull = false;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    line++;
+                    if (fields.isEmpty() && field.length() == 0 && !wasQuoted && !escapedNull) {
+                        continue;
+                    }
+                    fields.add(value(field, wasQuoted, escapedNull));
+                    return fields.toArray(new String[0]);
+                } else if (format == Format.CSV && c == '"' && field.length() == 0 && !wasQuoted) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (format == Format.TSV && c == '\\') {
+                    int escaped = read();
+                    if (escaped == 'N' && field.length() == 0) {
+                        escapedNull = true;
+                    } else {
+                        field.append(unescape(escaped));
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (quoted) {
+                throw new FlywayException("Unable to load line " + line + ": unterminated quoted field");
+            }
+            if (fields.isEmpty() && field.length() == 0 && !wasQuoted && !escapedNull) {
+                return null;
+            }
+            fields.add(value(field, wasQuoted, escapedNull));
+            return fields.toArray(new String[0]);
+        }
+
+        private String value(StringBuilder field, boolean wasQuoted, boolean escapedNull) {
+            if (escapedNull || (format == Format.CSV && field.length() == 0 && !wasQuoted)) {
+                return null;
+            }
+            return field.toString();
+        }
+
+        private static char unescape(int c) {
+            switch (c) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case '0':
+                    return '\0';
+                case -1:
+                    return '\\';
+                default:
+                    return (char) c;
+            }
+        }
+
+        private int read() {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++];
+        }
+
+        private int peek() {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position];
+        }
+
+        private boolean fill() {
+            try {
+                int read;
+                do {
+                    read = reader.read(buffer);
+                } while (read == 0);
+                position = 0;
+                limit = Math.max(read, 0);
+                return read > 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                LOG.debug("Unable to close the data: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Serves the rows as a local infile in MySQL's default format: tab-separated fields, one row per line, special
+     * characters escaped with a backslash and NULL as {@code \N}.
+     */
+    private static class RowStream extends InputStream {
+        private final RowReader rows;
+        private final int columns;
+        private final StringBuilder line = new StringBuilder();
+        private byte[] bytes = new byte[0];
+        private int position;
+        private boolean started;
+        private boolean ended;
+        private long count;
+
+        /**
+         * The row that ended the data early as it does not have a field for every column, if any.
+         */
+        private String invalidRow;
+
+        RowStream(RowReader rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            started = true;
+            while (position == bytes.length) {
+                if (ended || !nextRow()) {
+                    ended = true;
+                    return -1;
+                }
+            }
+            int count = Math.min(length, bytes.length - position);
+            System.arraycopy(bytes, position, target, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean nextRow() throws IOException {
+            String[] row;
+            try {
+                row = rows.next();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (row == null) {
+                return false;
+            }
+            if (row.length != columns) {
+                // Thrown once the driver completed LOAD DATA, which an exception from the stream would break
+                invalidRow = "line " + (rows.line - 1) + ": expected " + columns + " fields but found " + row.length;
+                return false;
+            }
+            line.setLength(0);
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    line.append('\t');
+                }
+                appendEscaped(row[i]);
+            }
+            line.append('\n');
+            bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            count++;
+            return true;
+        }
+
+        private void appendEscaped(String value) {
+            if (value == null) {
+                line.append("\\N");
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\0':
+                        line.append("\\0");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    default:
+                        line.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationType;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.ResourceProvider;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.executor.Context;
+import org.flywaydb.core.api.executor.MigrationExecutor;
+import org.flywaydb.core.api.resolver.MigrationResolver;
+import org.flywaydb.core.api.resolver.ResolvedMigration;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.flywaydb.core.internal.plugin.PluginRegister;
+import org.flywaydb.core.internal.resolver.ChecksumCalculator;
+import org.flywaydb.core.internal.resolver.MigrationInfoHelper;
+import org.flywaydb.core.internal.resolver.ResolvedMigrationImpl;
+import org.flywaydb.core.internal.util.Pair;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolves CSV and TSV files named like SQL migrations into migrations that bulk load them with
+ * {@link OceanBaseBulkLoad}. The description names the table, so {@code V2__countries.csv} loads {@code countries} and
+ * {@code V3__app.user_roles.tsv} loads {@code app.user_roles}. Repeatable data files replace the contents of their
+ * table whenever they change, with {@link OceanBaseBulkLoad#replace} in the transaction of the migration.
+ * <p>
+ * Flyway only uses this resolver when it is configured with {@code flyway.resolvers}.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseBulkLoadResolver implements MigrationResolver {
+    private static final String[] SUFFIXES = {".csv", ".tsv"};
+
+    @Override
+    public List<ResolvedMigration> resolveMigrations(org.flywaydb.core.api.resolver.Context context) {
+        Configuration configuration = context.getConfiguration();
+        ResourceProvider resourceProvider = OceanBaseScanner.getResourceProvider(configuration);
+        List<ResolvedMigration> migrations = new ArrayList<>();
+        addMigrations(migrations, configuration, resourceProvider, configuration.getSqlMigrationPrefix(), false);
+        addMigrations(migrations, configuration, resourceProvider, configuration.getRepeatableSqlMigrationPrefix(), true);
+        return migrations;
+    }
+
+    private void addMigrations(List<ResolvedMigration> migrations, Configuration configuration,
+                               ResourceProvider resourceProvider, String prefix, boolean repeatable) {
+        Collection<LoadableResource> resources = resourceProvider.getResources(prefix, SUFFIXES);
+        for (LoadableResource resource : resources) {
+            String filename = resource.getFilename();
+            Pair<MigrationVersion, String> info = MigrationInfoHelper.extractVersionAndDescription(filename, prefix,
+                    configuration.getSqlMigrationSeparator(), SUFFIXES, repeatable);
+            String table = info.getRight().replace(' ', '_');
+            migrations.add(new ResolvedMigrationImpl(info.getLeft(), info.getRight(), resource.getRelativePath(),
+                    ChecksumCalculator.calculate(resource), null, MigrationType.CUSTOM, resource.getAbsolutePathOnDisk(),
+                    new BulkLoadExecutor(resource, table, OceanBaseBulkLoad.Format.of(filename), repeatable)));
+        }
+    }
+
+    /**
+     * Loads one data file over the connection of the migration.
+     */
+    private static class BulkLoadExecutor implements MigrationExecutor {
+        private final LoadableResource resource;
+        private final String table;
+        private final OceanBaseBulkLoad.Format format;
+        private final boolean replace;
+
+        BulkLoadExecutor(LoadableResource resource, String table, OceanBaseBulkLoad.Format format, boolean replace) {
+            this.resource = resource;
+            this.table = table;
+            this.format = format;
+            this.replace = replace;
+        }
+
+        @Override
+        public void execute(Context context) throws SQLException {
+            OceanBaseConfigurationExtension extension = PluginRegister.getPlugin(OceanBaseConfigurationExtension.class);
+            if (extension == null) {
+                extension = new OceanBaseConfigurationExtension();
+            }
+            Configuration configuration = context.getConfiguration();
+            OceanBaseBulkLoad bulkLoad = OceanBaseBulkLoad.fromConfiguration(extension, configuration.getDataSource());
+            try {
+                if (replace) {
+                    bulkLoad.replace(context.getConnection(), table, format,
+                            FileUtils.openReader(resource, configuration.getEncoding()));
+                } else {
+                    bulkLoad.load(context.getConnection(), table, format,
+                            FileUtils.openReader(resource, configuration.getEncoding()));
+                }
+            } catch (IOException e) {
+                throw new FlywayException("Unable to read " + resource.getRelativePath(), e);
+            }
+        }
+
+        /**
+         * Loaded rows are committed as they are loaded, and LOAD DATA commits on its own, while a replacement runs in
+         * the transaction of the migration.
+         */
+        @Override
+        public boolean canExecuteInTransaction() {
+            return replace;
+        }
+
+        @Override
+        public boolean shouldExecute() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.api.ClassProvider;
+import org.flywaydb.core.api.MigrationType;
+import org.flywaydb.core.api.ResourceProvider;
+import org.flywaydb.core.api.callback.Event;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.executor.Context;
+import org.flywaydb.core.api.executor.MigrationExecutor;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.flywaydb.core.api.resolver.MigrationResolver;
+import org.flywaydb.core.api.resolver.ResolvedMigration;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.flywaydb.core.internal.callback.NoopCallbackExecutor;
+import org.flywaydb.core.internal.database.DatabaseType;
+import org.flywaydb.core.internal.database.DatabaseTypeRegister;
+import org.flywaydb.core.internal.database.base.Database;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.flywaydb.core.internal.parser.ParsingContext;
+import org.flywaydb.core.internal.parser.PlaceholderReplacingReader;
+import org.flywaydb.core.internal.plugin.PluginRegister;
+import org.flywaydb.core.internal.resolver.ChecksumCalculator;
+import org.flywaydb.core.internal.resolver.ResolvedMigrationComparator;
+import org.flywaydb.core.internal.resolver.ResolvedMigrationImpl;
+import org.flywaydb.core.internal.resolver.java.FixedJavaMigrationResolver;
+import org.flywaydb.core.internal.resolver.java.ScanningJavaMigrationResolver;
+import org.flywaydb.core.internal.resource.ResourceName;
+import org.flywaydb.core.internal.resource.ResourceNameParser;
+import org.flywaydb.core.internal.scanner.Scanner;
+import org.flywaydb.core.internal.sqlscript.SqlScript;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutorFactory;
+import org.flywaydb.core.internal.sqlscript.SqlScriptFactory;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the same migrations as Flyway's default resolvers, but takes the checksums of SQL migrations from an
+ * {@link OceanBaseChecksumCache}, so that starting an application with thousands of unchanged scripts does not read
+ * and hash every one of them again.
+ * <p>
+ * It replaces the default resolvers, so Flyway must be configured with {@code flyway.skipDefaultResolvers=true} and
+ * {@code flyway.resolvers} naming this class. Scripts are only parsed when they are executed, with the parser and
+ * placeholders Flyway would use; per-statement callbacks are not invoked for them.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseCachingMigrationResolver implements MigrationResolver {
+    @Override
+    public List<ResolvedMigration> resolveMigrations(org.flywaydb.core.api.resolver.Context context) {
+        Configuration configuration = context.getConfiguration();
+        ResourceProvider resourceProvider = configuration.getResourceProvider();
+        ClassProvider<JavaMigration> classProvider = configuration.getJavaMigrationClassProvider();
+        if (resourceProvider == null || classProvider == null) {
+            Scanner<JavaMigration> scanner = OceanBaseScanner.scan(configuration);
+            resourceProvider = resourceProvider == null ? scanner : resourceProvider;
+            classProvider = classProvider == null ? scanner : classProvider;
+        }
+
+        OceanBaseChecksumCache cache = new OceanBaseChecksumCache(cacheFile(), configuration.getClassLoader(),
+                configuration.getEncoding().name(), configuration.getPlaceholderPrefix());
+        Environment environment = new Environment(configuration, resourceProvider);
+        List<ResolvedMigration> migrations = new ArrayList<>();
+        addSqlMigrations(migrations, configuration, resourceProvider, cache, environment,
+                configuration.getSqlMigrationPrefix(), false);
+        addSqlMigrations(migrations, configuration, resourceProvider, cache, environment,
+                configuration.getRepeatableSqlMigrationPrefix(), true);
+        cache.save();
+
+        migrations.addAll(new ScanningJavaMigrationResolver(classProvider, configuration).resolveMigrations(context));
+        migrations.addAll(new FixedJavaMigrationResolver(configuration.getJavaMigrations()).resolveMigrations(context));
+        migrations.sort(new ResolvedMigrationComparator());
+        return migrations;
+    }
+
+    private static Path cacheFile() {
+        OceanBaseConfigurationExtension extension = PluginRegister.getPlugin(OceanBaseConfigurationExtension.class);
+        if (extension != null && extension.getChecksumCacheFile() != null) {
+            return Paths.get(extension.getChecksumCacheFile());
+        }
+        return new File(new File(FileUtils.getAppDataLocation(), "flyway-oceanbase"), "checksums.bin").toPath();
+    }
+
+    private void addSqlMigrations(List<ResolvedMigration> migrations, Configuration configuration,
+                                  ResourceProvider resourceProvider, OceanBaseChecksumCache cache,
+                                  Environment environment, String prefix, boolean repeatable) {
+        ResourceNameParser resourceNameParser = new ResourceNameParser(configuration);
+        for (LoadableResource resource : resourceProvider.getResources(prefix, configuration.getSqlMigrationSuffixes())) {
+            ResourceName resourceName = resourceNameParser.parse(resource.getFilename());
+            // SQL callbacks such as beforeMigrate.sql are skipped, as in Flyway's own resolver
+            if (!resourceName.isValid() || Event.fromId(resourceName.getPrefix()) != null
+                    || !prefix.equals(resourceName.getPrefix())) {
+                continue;
+            }
+
+            OceanBaseChecksumCache.Checksum raw = cache.get(resource);
+            Integer checksum = raw.getChecksum();
+            // As in Flyway, repeatable migrations carry their raw checksum as the equivalent one, and are checksummed
+            // with their placeholders replaced, so that they run again when the values of their placeholders change
+            Integer equivalentChecksum = repeatable ? raw.getChecksum() : null;
+            if (repeatable && configuration.isPlaceholderReplacement() && raw.isPlaceholders()) {
+                checksum = environment.placeholderReplacingChecksum(resource);
+            }
+            migrations.add(new ResolvedMigrationImpl(repeatable ? null : resourceName.getVersion(),
+                    resourceName.getDescription(), resource.getRelativePath(), checksum, equivalentChecksum,
+                    MigrationType.SQL, resource.getAbsolutePathOnDisk(),
+                    new CachedSqlMigrationExecutor(environment, resource, resourceName)));
+        }
+    }
+
+    /**
+     * What parsing and executing scripts needs from the database, set up once and only when a script needs it, so
+     * that resolving migrations alone does not connect.
+     */
+    private static class Environment {
+        private final Configuration configuration;
+        private final ResourceProvider resourceProvider;
+        private final ParsingContext parsingContext = new ParsingContext();
+        private SqlScriptFactory sqlScriptFactory;
+        private SqlScriptExecutorFactory sqlScriptExecutorFactory;
+
+        Environment(Configuration configuration, ResourceProvider resourceProvider) {
+            this.configuration = configuration;
+            this.resourceProvider = resourceProvider;
+        }
+
+        synchronized void initialize() {
+            if (sqlScriptFactory != null) {
+                return;
+            }
+            JdbcConnectionFactory jdbcConnectionFactory = new JdbcConnectionFactory(configuration.getDataSource(), configuration, null);
+            DatabaseType databaseType = jdbcConnectionFactory.getDatabaseType();
+            try (Database<?> database = databaseType.createDatabase(configuration, false, jdbcConnectionFactory, null)) {
+                parsingContext.populate(database, configuration);
+            }
+            sqlScriptFactory = databaseType.createSqlScriptFactory(configuration, parsingContext);
+            sqlScriptExecutorFactory = databaseType.createSqlScriptExecutorFactory(jdbcConnectionFactory,
+                    NoopCallbackExecutor.INSTANCE, null);
+        }
+
+        int placeholderReplacingChecksum(LoadableResource resource) {
+            initialize();
+            return ChecksumCalculator.calculate(new LoadableResource() {
+                @Override
+                public Reader read() {
+                    return PlaceholderReplacingReader.create(configuration, parsingContext, resource.read());
+                }
+
+                @Override
+                public String getAbsolutePath() {
+                    return resource.getAbsolutePath();
+                }
+
+                @Override
+                public String getAbsolutePathOnDisk() {
+                    return resource.getAbsolutePathOnDisk();
+                }
+
+                @Override
+                public String getFilename() {
+                    return resource.getFilename();
+                }
+
+                @Override
+                public String getRelativePath() {
+                    return resource.getRelativePath();
+                }
+            });
+        }
+
+        boolean hasScriptConfiguration(LoadableResource resource) {
+            return resourceProvider.getResource(resource.getRelativePath() + ".conf") != null;
+        }
+
+        synchronized SqlScript createSqlScript(LoadableResource resource, ResourceName resourceName) {
+            initialize();
+            parsingContext.updateFilenamePlaceholder(resourceName);
+            SqlScript sqlScript = sqlScriptFactory.createSqlScript(resource, configuration.isMixed(), resourceProvider);
+            // Parsed now, while the filename placeholder is this script's
+            sqlScript.validate();
+            return sqlScript;
+        }
+    }
+
+    /**
+     * Executes a SQL migration like Flyway's own executor, parsing it on first use.
+     */
+    private static class CachedSqlMigrationExecutor implements MigrationExecutor {
+        private final Environment environment;
+        private final LoadableResource resource;
+        private final ResourceName resourceName;
+        private SqlScript sqlScript;
+
+        CachedSqlMigrationExecutor(Environment environment, LoadableResource resource, ResourceName resourceName) {
+            this.environment = environment;
+            this.resource = resource;
+            this.resourceName = resourceName;
+        }
+
+        private synchronized SqlScript sqlScript() {
+            if (sqlScript == null) {
+                sqlScript = environment.createSqlScript(resource, resourceName);
+            }
+            return sqlScript;
+        }
+
+        @Override
+        public void execute(Context context) throws SQLException {
+            SqlScript script = sqlScript();
+            DatabaseTypeRegister.getDatabaseTypeForConnection(context.getConnection())
+                    .createExecutionStrategy(context.getConnection()).execute(() -> {
+                        environment.sqlScriptExecutorFactory.createSqlScriptExecutor(context.getConnection(), false,
+                                context.getConfiguration().isBatch(), context.getConfiguration().isOutputQueryResults())
+                                .execute(script);
+                        return true;
+                    });
+        }
+
+        @Override
+        public boolean canExecuteInTransaction() {
+            return sqlScript().executeInTransaction();
+        }
+
+        /**
+         * Asked of every migration whenever Flyway reports their state, so only scripts with a configuration file,
+         * which may tell otherwise, are parsed to answer.
+         */
+        @Override
+        public boolean shouldExecute() {
+            return !environment.hasScriptConfiguration(resource) || sqlScript().shouldExecute();
+        }
+    }
+}
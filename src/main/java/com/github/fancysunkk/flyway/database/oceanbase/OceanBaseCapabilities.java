@@ -0,0 +1,82 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import lombok.Getter;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.util.StringUtils;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The server capabilities the plugin depends on, probed with a single query and cached for the lifetime of the JVM,
+ * keyed by server address, user and server version. The server version itself comes from {@link OceanBaseJdbcUtils#getVersion}.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseCapabilities {
+    private static final ConcurrentMap<String, OceanBaseCapabilities> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the user variables table can be queried, which is required to reset user variables.
+     */
+    @Getter
+    private final boolean userVariablesQueryable;
+
+    private volatile Boolean awsRds;
+
+    private OceanBaseCapabilities(boolean userVariablesQueryable) {
+        this.userVariablesQueryable = userVariablesQueryable;
+    }
+
+    /**
+     * Retrieves the capabilities for this server, probing it only if no other connection with the same identity
+     * did so before, whichever database it connects to.
+     *
+     * @param jdbcTemplate       The Jdbc Template of the connection to probe with.
+     * @param jdbcUrl            The JDBC URL of the server.
+     * @param user               The user connecting to the server.
+     * @param serverVersion      The server version reported by the driver.
+     * @param userVariablesTable The table listing the user variables of the current session.
+     * @return The capabilities.
+     */
+    static OceanBaseCapabilities get(JdbcTemplate jdbcTemplate, String jdbcUrl, String user, String serverVersion,
+                                     String userVariablesTable) {
+        String key = OceanBaseJdbcUtils.getServerAddress(jdbcUrl) + "\u0000" + user + "\u0000" + serverVersion;
+        return CACHE.computeIfAbsent(key, k -> probe(jdbcTemplate, userVariablesTable));
+    }
+
+    private static OceanBaseCapabilities probe(JdbcTemplate jdbcTemplate, String userVariablesTable) {
+        try {
+            // #2215: ensure the database is recent enough and the current user has the necessary SELECT grant
+            jdbcTemplate.queryForInt("SELECT COUNT(*) FROM " + userVariablesTable + " WHERE 1 = 0");
+            return new OceanBaseCapabilities(true);
+        } catch (SQLException e) {
+            LOG.debug("Disabled user variable reset as " + userVariablesTable
+                    + " cannot be queried (SQL State: " + e.getSQLState() + ", Error Code: " + e.getErrorCode() + ")");
+            return new OceanBaseCapabilities(false);
+        }
+    }
+
+    /**
+     * Whether this server is an AWS RDS instance. Checked on first use only.
+     *
+     * @param jdbcTemplate The Jdbc Template of a connection to this server.
+     * @return {@code true} if it is.
+     */
+    boolean isAwsRds(JdbcTemplate jdbcTemplate) {
+        Boolean result = awsRds;
+        if (result == null) {
+            try {
+                result = StringUtils.hasText(jdbcTemplate.queryForString("SHOW DATABASES LIKE 'RDSAdmin';"));
+            } catch (Exception e) {
+                result = false;
+            }
+            awsRds = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the catalog snapshots of a database, keyed by schema name. All snapshots are discarded as soon as any
+ * statement that may change the catalog is executed through the plugin's connections.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseCatalogCache implements OceanBaseStatementListener {
+    private final ConcurrentMap<String, OceanBaseCatalogSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the snapshot of this schema, loading it if it is not cached.
+     *
+     * @param jdbcTemplate The Jdbc Template to load the snapshot with.
+     * @param schema       The name of the schema.
+     * @param withEvents   Whether information_schema.events can be queried.
+     * @return The snapshot.
+     */
+    OceanBaseCatalogSnapshot get(JdbcTemplate jdbcTemplate, String schema, boolean withEvents) throws SQLException {
+        OceanBaseCatalogSnapshot snapshot = snapshots.get(schema);
+        if (snapshot == null) {
+            snapshot = OceanBaseCatalogSnapshot.load(jdbcTemplate, schema, withEvents);
+            snapshots.put(schema, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return The cached snapshot of this schema, or {@code null} if it has not been loaded.
+     */
+    OceanBaseCatalogSnapshot getIfLoaded(String schema) {
+        return snapshots.get(schema);
+    }
+
+    void invalidate() {
+        snapshots.clear();
+    }
+
+    @Override
+    public void beforeExecute(String sql) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        switch (OceanBaseSessionTracker.firstKeyword(sql)) {
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+            case "RENAME":
+            case "CALL":
+            case "EXECUTE":
+                invalidate();
+                break;
+            default:
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The objects of a schema, loaded from information_schema with a single query.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseCatalogSnapshot {
+    private static final String[] NONE = new String[0];
+
+    private final String[] tables;
+    private final String[] views;
+    private final String[] sequences;
+    private final String[] routineNames;
+    private final String[] routineTypes;
+    private final String[] events;
+
+    private OceanBaseCatalogSnapshot(String[] tables, String[] views, String[] sequences,
+                                     String[] routineNames, String[] routineTypes, String[] events) {
+        this.tables = tables;
+        this.views = views;
+        this.sequences = sequences;
+        this.routineNames = routineNames;
+        this.routineTypes = routineTypes;
+        this.events = events;
+    }
+
+    /**
+     * Loads the objects of this schema.
+     *
+     * @param jdbcTemplate The Jdbc Template to query with.
+     * @param schema       The name of the schema.
+     * @param withEvents   Whether information_schema.events can be queried.
+     * @return The snapshot.
+     */
+    static OceanBaseCatalogSnapshot load(JdbcTemplate jdbcTemplate, String schema, boolean withEvents) throws SQLException {
+        List<String[]> rows = jdbcTemplate.query(
+                "SELECT 'T', table_name, table_type FROM information_schema.tables WHERE table_schema=?"
+                        + " UNION ALL SELECT 'R', routine_name, routine_type FROM information_schema.routines WHERE routine_schema=?"
+                        + (withEvents ? " UNION ALL SELECT 'E', event_name, NULL FROM information_schema.events WHERE event_schema=?" : ""),
+                rs -> new String[]{rs.getString(1), rs.getString(2), rs.getString(3)},
+                withEvents ? new Object[]{schema, schema, schema} : new Object[]{schema, schema});
+
+        List<String> tables = new ArrayList<>();
+        List<String> views = new ArrayList<>();
+        List<String> sequences = new ArrayList<>();
+        List<String> routineNames = new ArrayList<>();
+        List<String> routineTypes = new ArrayList<>();
+        List<String> events = new ArrayList<>();
+        for (String[] row : rows) {
+            switch (row[0]) {
+                case "T":
+                    if ("VIEW".equals(row[2])) {
+                        views.add(row[1]);
+                    } else if ("SEQUENCE".equals(row[2])) {
+                        sequences.add(row[1]);
+                    } else if ("BASE TABLE".equals(row[2]) || "SYSTEM VERSIONED".equals(row[2])) {
+                        tables.add(row[1]);
+                    }
+                    break;
+                case "R":
+                    routineNames.add(row[1]);
+                    routineTypes.add(row[2]);
+                    break;
+                default:
+                    events.add(row[1]);
+            }
+        }
+        return new OceanBaseCatalogSnapshot(tables.toArray(NONE), views.toArray(NONE), sequences.toArray(NONE),
+                routineNames.toArray(NONE), routineTypes.toArray(NONE), events.toArray(NONE));
+    }
+
+    public String[] getTables() {
+        return tables.clone();
+    }
+
+    public String[] getViews() {
+        return views.clone();
+    }
+
+    public String[] getSequences() {
+        return sequences.clone();
+    }
+
+    public String[] getEvents() {
+        return events.clone();
+    }
+
+    public int getRoutineCount() {
+        return routineNames.length;
+    }
+
+    public String getRoutineName(int i) {
+        return routineNames[i];
+    }
+
+    /**
+     * @return The type of this routine, such as {@code PROCEDURE} or {@code FUNCTION}.
+     */
+    public String getRoutineType(int i) {
+        return routineTypes[i];
+    }
+
+    public boolean isEmpty() {
+        return tables.length == 0 && views.length == 0 && sequences.length == 0
+                && routineNames.length == 0 && events.length == 0;
+    }
+}
@@ -0,0 +1,316 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import lombok.Getter;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.flywaydb.core.internal.util.BomFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers the checksums of migration scripts across runs, in a compact binary file, so that the scripts which did
+ * not change since the last run are neither read nor hashed again. A script is identified by its location, its size
+ * and its last modification time, or the CRC of its jar entry when it is packaged in a jar.
+ * <p>
+ * The file can be shared by concurrent JVMs: it is read under a shared lock and rewritten under an exclusive one, after
+ * merging the entries other JVMs added in between. Entries unused for {@value #RETENTION_DAYS} days are dropped, and a
+ * damaged file is ignored and rewritten.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseChecksumCache {
+    private static final int MAGIC = 0x4F424343;
+    private static final int FORMAT_VERSION = 1;
+    private static final int RETENTION_DAYS = 30;
+
+    /**
+     * File locks are held by the whole JVM, so threads of the same JVM take turns on this one first.
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    /**
+     * A checksum of the raw content of a script.
+     */
+    @Getter
+    public static class Checksum {
+        private final int checksum;
+
+        /**
+         * Whether the script contains the placeholder prefix, so that its checksum after replacing placeholders may
+         * differ and depends on their values.
+         */
+        private final boolean placeholders;
+
+        Checksum(int checksum, boolean placeholders) {
+            this.checksum = checksum;
+            this.placeholders = placeholders;
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long stamp;
+        private final Checksum checksum;
+        private int lastUsedDay;
+
+        Entry(long size, long stamp, Checksum checksum, int lastUsedDay) {
+            this.size = size;
+            this.stamp = stamp;
+            this.checksum = checksum;
+            this.lastUsedDay = lastUsedDay;
+        }
+    }
+
+    private final Path file;
+    private final ClassLoader classLoader;
+    private final String placeholderPrefix;
+    private final String variant;
+    private final int today = (int) TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis());
+    private final Map<String, Entry> entries;
+    private final Map<String, Entry> changed = new HashMap<>();
+    private int hits;
+    private int misses;
+
+    /**
+     * Loads the checksums stored in this file.
+     *
+     * @param file              The file, created when first saved.
+     * @param classLoader       The class loader of the classpath scripts.
+     * @param encoding          The encoding the scripts are read with, as checksums are computed on their text.
+     * @param placeholderPrefix The prefix of placeholders.
+     */
+    OceanBaseChecksumCache(Path file, ClassLoader classLoader, String encoding, String placeholderPrefix) {
+        this.file = file;
+        this.classLoader = classLoader;
+        this.placeholderPrefix = placeholderPrefix;
+        this.variant = encoding + '\0' + placeholderPrefix + '\0';
+        this.entries = load();
+    }
+
+    /**
+     * @return The checksum of the raw content of this script, computed only if the script changed since it was
+     * cached.
+     */
+    Checksum get(LoadableResource resource) {
+        String[] location = new String[1];
+        long[] key = key(resource, location);
+        if (key == null) {
+            misses++;
+            return calculate(resource);
+        }
+        String id = variant + location[0];
+        Entry entry = entries.get(id);
+        if (entry != null && entry.size == key[0] && entry.stamp == key[1]) {
+            hits++;
+            if (entry.lastUsedDay != today) {
+                entry.lastUsedDay = today;
+                changed.put(id, entry);
+            }
+            return entry.checksum;
+        }
+        misses++;
+        Checksum checksum = calculate(resource);
+        entry = new Entry(key[0], key[1], checksum, today);
+        entries.put(id, entry);
+        changed.put(id, entry);
+        return checksum;
+    }
+
+    /**
+     * Writes the checksums computed since this cache was loaded to its file. Failing to do so only costs the next run
+     * the time to compute them again.
+     */
+    void save() {
+        LOG.debug("Checksum cache " + file + ": " + hits + " hits, " + misses + " misses");
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            synchronized (JVM_LOCK) {
+                writeMerged();
+            }
+            changed.clear();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to save checksum cache " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void writeMerged() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            Map<String, Entry> merged = read(channel);
+            merged.putAll(changed);
+            for (Iterator<Entry> iterator = merged.values().iterator(); iterator.hasNext(); ) {
+                if (today - iterator.next().lastUsedDay > RETENTION_DAYS) {
+                    iterator.remove();
+                }
+            }
+            ByteBuffer content = ByteBuffer.wrap(write(merged));
+            channel.truncate(0);
+            long position = 0;
+            while (content.hasRemaining()) {
+                position += channel.write(content, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    private Map<String, Entry> load() {
+        if (!Files.isRegularFile(file)) {
+            return new HashMap<>();
+        }
+        synchronized (JVM_LOCK) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+                return read(channel);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Unable to load checksum cache " + file + ": " + e.getMessage());
+                return new HashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of the file, none if it is empty or damaged.
+     */
+    private Map<String, Entry> read(FileChannel channel) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        long size = channel.size();
+        if (size < 20 || size > Integer.MAX_VALUE) {
+            return entries;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        long position = 0;
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer, position)) >= 0) {
+            position += read;
+        }
+        byte[] bytes = buffer.array();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                || ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+            LOG.debug("Ignoring damaged or outdated checksum cache " + file);
+            return entries;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            long entrySize = in.readLong();
+            long stamp = in.readLong();
+            int checksum = in.readInt();
+            boolean placeholders = in.readBoolean();
+            int lastUsedDay = in.readInt();
+            entries.put(id, new Entry(entrySize, stamp, new Checksum(checksum, placeholders), lastUsedDay));
+        }
+        return entries;
+    }
+
+    private static byte[] write(Map<String, Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().size);
+            out.writeLong(entry.getValue().stamp);
+            out.writeInt(entry.getValue().checksum.checksum);
+            out.writeBoolean(entry.getValue().checksum.placeholders);
+            out.writeInt(entry.getValue().lastUsedDay);
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The size and the modification time or CRC identifying this version of the script, or {@code null} if it
+     * cannot be identified without reading it.
+     */
+    private long[] key(LoadableResource resource, String[] location) {
+        try {
+            URL url = classLoader == null ? null : classLoader.getResource(resource.getAbsolutePath());
+            if (url != null && "jar".equals(url.getProtocol())) {
+                URLConnection connection = url.openConnection();
+                JarEntry jarEntry = ((JarURLConnection) connection).getJarEntry();
+                if (jarEntry == null || jarEntry.getCrc() == -1) {
+                    return null;
+                }
+                location[0] = url.toString();
+                return new long[]{jarEntry.getSize(), jarEntry.getCrc()};
+            }
+            String pathOnDisk = resource.getAbsolutePathOnDisk();
+            if (pathOnDisk == null) {
+                return null;
+            }
+            Path path = Paths.get(pathOnDisk).toAbsolutePath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            location[0] = path.toString();
+            return new long[]{attributes.size(), attributes.lastModifiedTime().toMillis()};
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Unable to identify " + resource.getRelativePath() + " for the checksum cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Computes the checksum of this resource exactly like Flyway's {@code ChecksumCalculator}, a CRC32 of the UTF-8
+     * bytes of its lines without their terminators, and looks for the placeholder prefix in the same single pass.
+     */
+    private Checksum calculate(LoadableResource resource) {
+        boolean checkPlaceholders = placeholderPrefix != null && !placeholderPrefix.isEmpty();
+        CRC32 crc32 = new CRC32();
+        boolean placeholders = false;
+        try (BufferedReader reader = new BufferedReader(resource.read(), 4096)) {
+            String line = reader.readLine();
+            if (line != null) {
+                line = BomFilter.FilterBomFromString(line);
+                do {
+                    crc32.update(line.getBytes(StandardCharsets.UTF_8));
+                    placeholders = placeholders || checkPlaceholders && line.contains(placeholderPrefix);
+                } while ((line = reader.readLine()) != null);
+            }
+        } catch (IOException e) {
+            throw new FlywayException("Unable to calculate checksum of " + resource.getFilename() + "\r\n"
+                    + e.getMessage(), e);
+        }
+        return new Checksum((int) crc32.getValue(), placeholders);
+    }
+}
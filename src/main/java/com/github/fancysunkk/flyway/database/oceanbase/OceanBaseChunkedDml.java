@@ -0,0 +1,743 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Executes a single-table UPDATE or DELETE as a series of primary key range chunks, each committed in its own
+ * transaction, so that no transaction exceeds OceanBase's ob_trx_timeout or memstore limits. Progress is stored in a
+ * table in the same transaction as each chunk, so a failed execution resumes after the last committed chunk when it
+ * is run again.
+ * <p>
+ * The progress of a statement of a SQL migration is keyed by the script and the statement, so that the same statement
+ * in a later migration starts from the first row. Once a script completed, the progress left in the table by its
+ * statements, such as that of a failed statement that was later edited away, is deleted.
+ * <p>
+ * In SQL migrations, statements are chunked when they contain the {@value #MARKER} comment, or when their table is
+ * estimated to hold more than {@code flyway.oceanbase.chunk.autoThresholdRows} rows. Unmarked statements are only
+ * chunked outside a transaction and when their table has a suitable primary key, so that automatic chunking never
+ * splits a transaction nor fails a statement that would have succeeded otherwise. Java migrations can call
+ * {@link #execute} directly with the connection of their context.
+ * <p>
+ * Chunks are committed independently, so statements executed earlier in the same migration are committed with the
+ * first chunk, and a failed execution leaves the chunks before it applied.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseChunkedDml {
+    /**
+     * Marks a statement in a SQL migration for chunked execution.
+     */
+    public static final String MARKER = "/* flyway:chunked */";
+
+    private static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;
+
+    private static final Set<String> INTEGER_TYPES = new HashSet<>(Arrays.asList(
+            "tinyint", "smallint", "mediumint", "int", "integer", "bigint"));
+
+    /**
+     * The statements that may change the primary key or size of a table.
+     */
+    private static final Set<String> DDL_KEYWORDS = new HashSet<>(Arrays.asList(
+            "ALTER", "CREATE", "DROP", "RENAME", "TRUNCATE"));
+
+    private final int chunkSize;
+    private final long throttleMillis;
+    private final long autoThresholdRows;
+    private final String progressTable;
+
+    /**
+     * The tables seen by automatic chunking, by qualified name, until the next DDL statement.
+     */
+    private final Map<String, TableInfo> tables = new HashMap<>();
+
+    /**
+     * The path of the SQL migration being executed, or {@code null} outside of one.
+     */
+    private String script;
+
+    /**
+     * Whether the progress table exists, or {@code null} if not known yet.
+     */
+    private Boolean progressTableExists;
+
+    /**
+     * Creates a new chunked DML executor.
+     *
+     * @param chunkSize      The number of primary key values covered by each chunk.
+     * @param throttleMillis The pause between two chunks, in milliseconds.
+     * @param progressTable  The table recording the progress of unfinished executions, created on first use.
+     */
+    public OceanBaseChunkedDml(int chunkSize, long throttleMillis, String progressTable) {
+        this(chunkSize, throttleMillis, 0, progressTable);
+    }
+
+    private OceanBaseChunkedDml(int chunkSize, long throttleMillis, long autoThresholdRows, String progressTable) {
+        if (chunkSize < 1) {
+            throw new FlywayException("Invalid chunk size (should be at least 1): " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.throttleMillis = throttleMillis;
+        this.autoThresholdRows = autoThresholdRows;
+        this.progressTable = progressTable;
+    }
+
+    /**
+     * Creates a chunked DML executor from the {@code flyway.oceanbase.chunk.*} configuration.
+     */
+    static OceanBaseChunkedDml fromConfiguration(OceanBaseConfigurationExtension extension) {
+        return new OceanBaseChunkedDml(extension.getChunkSize(), extension.getChunkThrottle(),
+                extension.getChunkAutoThresholdRows(), extension.getChunkProgressTable());
+    }
+
+    /**
+     * Checks whether this statement of a SQL migration should be chunked: either it is marked, or automatic chunking
+     * is enabled, the connection is in auto-commit mode, and the statement's table has a single-column integer
+     * primary key that the statement does not assign and holds more rows than the threshold.
+     *
+     * @param connection The connection the statement is about to be executed on.
+     * @param sql        The statement.
+     * @return {@code true} if it should be executed with {@link #execute}.
+     */
+    boolean accepts(Connection connection, String sql) throws SQLException {
+        if (sql.contains(MARKER)) {
+            return true;
+        }
+        if (autoThresholdRows <= 0) {
+            return false;
+        }
+        String keyword = OceanBaseSessionTracker.firstKeyword(sql);
+        if (!"UPDATE".equals(keyword) && !"DELETE".equals(keyword)) {
+            if (DDL_KEYWORDS.contains(keyword)) {
+                invalidate();
+            }
+            return false;
+        }
+        // Chunks are committed on their own, which would split the transaction of the migration
+        if (!connection.getAutoCommit()) {
+            return false;
+        }
+        ChunkedStatement statement = ChunkedStatement.parse(sql);
+        if (statement == null) {
+            return false;
+        }
+        TableInfo table = describe(connection, statement);
+        return table.primaryKey != null && !statement.assigns(table.primaryKey) && table.rows > autoThresholdRows;
+    }
+
+    /**
+     * Scopes the progress of the statements executed from now on to this SQL migration.
+     *
+     * @param script The path of the script, or {@code null} once it is no longer executed.
+     */
+    void setScript(String script) {
+        this.script = script;
+    }
+
+    /**
+     * Deletes the progress left by the statements of the current SQL migration, which completed, and ends its scope.
+     *
+     * @param connection The connection the script was executed on.
+     */
+    void completeScript(Connection connection) throws SQLException {
+        String completed = script;
+        script = null;
+        if (completed == null || !progressTableExists(connection)) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + progressTable + " WHERE script = ?")) {
+            statement.setString(1, completed);
+            int deleted = statement.executeUpdate();
+            if (deleted > 0) {
+                LOG.info("Deleted the stale progress of " + deleted + " chunked statements of " + completed);
+            }
+        }
+    }
+
+    /**
+     * Forgets the primary keys and row estimates looked up so far, after DDL that may have changed them.
+     */
+    void invalidate() {
+        tables.clear();
+    }
+
+    /**
+     * Executes this UPDATE or DELETE in primary key range chunks, resuming after the last chunk committed by an
+     * earlier failed execution of the same statement. The target table must have a single-column integer primary
+     * key, and the statement must neither assign that key nor use joins, ORDER BY or LIMIT.
+     *
+     * @param connection The connection to execute on. Its auto-commit mode is restored afterwards.
+     * @param sql        The statement.
+     * @return The number of rows affected, including those of resumed chunks.
+     * @throws SQLException when a chunk fails. The chunks before it remain committed.
+     */
+    public long execute(Connection connection, String sql) throws SQLException {
+        ChunkedStatement statement = ChunkedStatement.parse(sql);
+        if (statement == null) {
+            throw new FlywayException("Unable to execute statement in chunks, only single-table UPDATE and DELETE"
+                    + " statements without ORDER BY or LIMIT are supported: " + sql);
+        }
+        String primaryKey = getPrimaryKey(connection, statement);
+        if (statement.assigns(primaryKey)) {
+            // Rows moved past the next chunk boundary would be updated again by a later chunk
+            throw new FlywayException("Unable to execute statement in chunks, it assigns the primary key " + primaryKey
+                    + ", which the chunks are split on: " + sql);
+        }
+        String job = jobId(script, statement.sql);
+
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            if (!autoCommit) {
+                // Commits whatever the migration executed before, as each chunk is committed on its own
+                connection.commit();
+            }
+            if (!Boolean.TRUE.equals(progressTableExists)) {
+                createProgressTableIfNotExists(connection);
+                progressTableExists = true;
+            }
+            connection.setAutoCommit(false);
+            return executeChunks(connection, statement, primaryKey, job);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private long executeChunks(Connection connection, ChunkedStatement statement, String primaryKey, String job) throws SQLException {
+        Long lastKey = null;
+        long rows = 0;
+        long[] progress = readProgress(connection, job);
+        if (progress != null) {
+            lastKey = progress[0];
+            rows = progress[1];
+            LOG.info("Resuming chunked " + statement.verb + " of " + statement.table + " after " + primaryKey + " = "
+                    + lastKey + " (" + rows + " rows already affected)");
+        }
+
+        String boundaryQuery = "SELECT " + primaryKey + " FROM " + statement.table
+                + " WHERE " + primaryKey + " > ? ORDER BY " + primaryKey + " LIMIT 1 OFFSET " + (chunkSize - 1);
+        String firstBoundaryQuery = "SELECT " + primaryKey + " FROM " + statement.table
+                + " ORDER BY " + primaryKey + " LIMIT 1 OFFSET " + (chunkSize - 1);
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long resumedRows = rows;
+        int chunks = 0;
+        while (true) {
+            Long upperKey = queryBoundary(connection, lastKey == null ? firstBoundaryQuery : boundaryQuery, lastKey);
+            List<String> range = new ArrayList<>(2);
+            if (lastKey != null) {
+                range.add(primaryKey + " > ?");
+            }
+            if (upperKey != null) {
+                range.add(primaryKey + " <= ?");
+            }
+            String chunkSql = statement.withRange(String.join(" AND ", range));
+
+            try (PreparedStatement chunk = connection.prepareStatement(chunkSql)) {
+                int index = 1;
+                if (lastKey != null) {
+                    chunk.setLong(index++, lastKey);
+                }
+                if (upperKey != null) {
+                    chunk.setLong(index, upperKey);
+                }
+                rows += chunk.executeLargeUpdate();
+                if (upperKey == null) {
+                    deleteProgress(connection, job);
+                } else {
+                    saveProgress(connection, job, statement.table, upperKey, rows);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                rollback(connection);
+                throw new SQLException("Chunk of " + statement.verb + " on " + statement.table + " after "
+                        + (lastKey == null ? "the first row" : primaryKey + " = " + lastKey) + " failed after "
+                        + rows + " rows. Completed chunks remain committed and the statement resumes from here"
+                        + " when executed again: " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+            }
+            chunks++;
+
+            if (upperKey == null) {
+                break;
+            }
+            lastKey = upperKey;
+
+            long now = System.nanoTime();
+            if (now - lastReport >= REPORT_INTERVAL_NANOS) {
+                lastReport = now;
+                LOG.info("Chunked " + statement.verb + " of " + statement.table + ": " + rows + " rows in " + chunks
+                        + " chunks up to " + primaryKey + " = " + lastKey + " ("
+                        + rowsPerSecond(rows - resumedRows, now - start) + " rows/s)");
+            }
+            throttle();
+        }
+
+        long nanos = System.nanoTime() - start;
+        LOG.info("Chunked " + statement.verb + " of " + statement.table + " affected " + rows + " rows in " + chunks
+                + " chunks in " + nanos / 1_000_000 + " ms (" + rowsPerSecond(rows - resumedRows, nanos) + " rows/s)");
+        return rows;
+    }
+
+    private static long rowsPerSecond(long rows, long nanos) {
+        return nanos <= 0 ? rows : rows * 1_000_000_000L / nanos;
+    }
+
+    private void throttle() {
+        if (throttleMillis > 0) {
+            try {
+                Thread.sleep(throttleMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlywayException("Interrupted while executing statement in chunks", e);
+            }
+        }
+    }
+
+    private static Long queryBoundary(Connection connection, String query, Long lastKey) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            if (lastKey != null) {
+                statement.setLong(1, lastKey);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        }
+    }
+
+    private static String getPrimaryKey(Connection connection, ChunkedStatement statement) throws SQLException {
+        String primaryKey = findPrimaryKey(connection, statement);
+        if (primaryKey == null) {
+            throw new FlywayException("Unable to execute statement in chunks, " + statement.table
+                    + " does not have a single-column integer primary key");
+        }
+        return primaryKey;
+    }
+
+    /**
+     * @return The quoted single-column integer primary key of the statement's table, or {@code null} if it has none.
+     */
+    private static String findPrimaryKey(Connection connection, ChunkedStatement statement) throws SQLException {
+        List<String[]> columns = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement("SELECT column_name, data_type"
+                + " FROM information_schema.columns WHERE table_schema = COALESCE(?, DATABASE()) AND table_name = ?"
+                + " AND column_key = 'PRI'")) {
+            query.setString(1, statement.schemaName);
+            query.setString(2, statement.tableName);
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    columns.add(new String[]{resultSet.getString(1), resultSet.getString(2)});
+                }
+            }
+        }
+        if (columns.size() != 1 || !INTEGER_TYPES.contains(columns.get(0)[1].toLowerCase(Locale.ENGLISH))) {
+            return null;
+        }
+        return "`" + columns.get(0)[0] + "`";
+    }
+
+    /**
+     * @return The primary key and row estimate of the statement's table, looked up once per table.
+     */
+    private TableInfo describe(Connection connection, ChunkedStatement statement) throws SQLException {
+        String key = (statement.schemaName == null ? connection.getCatalog() : statement.schemaName) + "."
+                + statement.tableName;
+        TableInfo table = tables.get(key);
+        if (table == null) {
+            table = new TableInfo(findPrimaryKey(connection, statement), estimateRows(connection, statement));
+            tables.put(key, table);
+        }
+        return table;
+    }
+
+    private static long estimateRows(Connection connection, ChunkedStatement statement) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement("SELECT table_rows FROM information_schema.tables"
+                + " WHERE table_schema = COALESCE(?, DATABASE()) AND table_name = ?")) {
+            query.setString(1, statement.schemaName);
+            query.setString(2, statement.tableName);
+            try (ResultSet resultSet = query.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void createProgressTableIfNotExists(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + progressTable + " (\n"
+                    + "    `job` CHAR(64) NOT NULL PRIMARY KEY,\n"
+                    + "    `script` VARCHAR(1024),\n"
+                    + "    `table_name` VARCHAR(200) NOT NULL,\n"
+                    + "    `last_key` BIGINT NOT NULL,\n"
+                    + "    `rows_done` BIGINT NOT NULL,\n"
+                    + "    `updated_on` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,\n"
+                    + "    KEY `idx_script` (`script`(255))\n"
+                    + ")");
+        }
+    }
+
+    private long[] readProgress(Connection connection, String job) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT last_key, rows_done FROM " + progressTable + " WHERE job = ?")) {
+            query.setString(1, job);
+            try (ResultSet resultSet = query.executeQuery()) {
+                return resultSet.next() ? new long[]{resultSet.getLong(1), resultSet.getLong(2)} : null;
+            }
+        }
+    }
+
+    private void saveProgress(Connection connection, String job, String table, long lastKey, long rows) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + progressTable
+                + " (job, script, table_name, last_key, rows_done) VALUES (?, ?, ?, ?, ?)"
+                + " ON DUPLICATE KEY UPDATE last_key = VALUES(last_key), rows_done = VALUES(rows_done)")) {
+            statement.setString(1, job);
+            statement.setString(2, script);
+            statement.setString(3, table);
+            statement.setLong(4, lastKey);
+            statement.setLong(5, rows);
+            statement.executeUpdate();
+        }
+    }
+
+    private void deleteProgress(Connection connection, String job) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + progressTable + " WHERE job = ?")) {
+            statement.setString(1, job);
+            statement.executeUpdate();
+        }
+    }
+
+    private boolean progressTableExists(Connection connection) throws SQLException {
+        if (progressTableExists == null) {
+            String[] name = progressTable.replace("`", "").split("\\.", 2);
+            try (PreparedStatement query = connection.prepareStatement("SELECT COUNT(*) FROM information_schema.tables"
+                    + " WHERE table_schema = COALESCE(?, DATABASE()) AND table_name = ?")) {
+                query.setString(1, name.length == 2 ? name[0] : null);
+                query.setString(2, name[name.length - 1]);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    progressTableExists = resultSet.next() && resultSet.getInt(1) > 0;
+                }
+            }
+        }
+        return progressTableExists;
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LOG.debug("Unable to rollback failed chunk: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The key of the progress of this statement, scoped to its script if it is executed from one.
+     */
+    private static String jobId(String script, String sql) {
+        String scoped = script == null ? sql : script + "\n" + sql;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(scoped.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new FlywayException(e);
+        }
+    }
+
+    private static class TableInfo {
+        /**
+         * The quoted single-column integer primary key, or {@code null} if the table has none.
+         */
+        private final String primaryKey;
+        private final long rows;
+
+        TableInfo(String primaryKey, long rows) {
+            this.primaryKey = primaryKey;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * A single-table UPDATE or DELETE, split at its top-level WHERE clause.
+     */
+    private static class ChunkedStatement {
+        private final String sql;
+        private final String verb;
+        private final String table;
+        private final String schemaName;
+        private final String tableName;
+        private final String head;
+        private final String condition;
+
+        /**
+         * The lower-case names of the columns assigned by the SET clause of an UPDATE, empty for a DELETE.
+         */
+        private final Set<String> assigned;
+
+        private ChunkedStatement(String sql, String verb, String table, String schemaName, String tableName,
+                                 String head, String condition, Set<String> assigned) {
+            this.sql = sql;
+            this.verb = verb;
+            this.table = table;
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+            this.head = head;
+            this.condition = condition;
+            this.assigned = assigned;
+        }
+
+        /**
+         * @param column The column, optionally quoted with backticks.
+         * @return Whether the SET clause assigns this column.
+         */
+        boolean assigns(String column) {
+            String name = column.length() > 1 && column.startsWith("`") && column.endsWith("`")
+                    ? column.substring(1, column.length() - 1) : column;
+            return assigned.contains(name.toLowerCase(Locale.ENGLISH));
+        }
+
+        /**
+         * @param range The primary key range condition, with a placeholder for each bound, or an empty string for a
+         *              single chunk covering the whole table.
+         * @return The statement restricted to this range.
+         */
+        String withRange(String range) {
+            if (range.isEmpty()) {
+                return condition == null ? head : head + " WHERE " + condition;
+            }
+            return head + " WHERE " + (condition == null ? "" : "(" + condition + ") AND ") + range;
+        }
+
+        /**
+         * @return The parsed statement, or {@code null} if it cannot be chunked.
+         */
+        static ChunkedStatement parse(String sql) {
+            String stripped = sql.replace(MARKER, "").trim();
+            if (stripped.endsWith(";")) {
+                stripped = stripped.substring(0, stripped.length() - 1).trim();
+            }
+            List<int[]> tokens = tokenize(stripped);
+            if (tokens == null || tokens.isEmpty()) {
+                return null;
+            }
+
+            String verb = word(stripped, tokens.get(0));
+            int i = 1;
+            if ("DELETE".equals(verb)) {
+                while (i < tokens.size() && isModifier(word(stripped, tokens.get(i)))) {
+                    i++;
+                }
+                if (i >= tokens.size() || !"FROM".equals(word(stripped, tokens.get(i)))) {
+                    return null;
+                }
+                i++;
+            } else if ("UPDATE".equals(verb)) {
+                while (i < tokens.size() && isModifier(word(stripped, tokens.get(i)))) {
+                    i++;
+                }
+            } else {
+                return null;
+            }
+
+            // The table reference: name or schema.name, each part optionally quoted with backticks
+            if (i >= tokens.size()) {
+                return null;
+            }
+            int tableStart = tokens.get(i)[0];
+            String first = identifier(stripped, tokens.get(i++));
+            String schemaName = null;
+            String tableName = first;
+            if (i + 1 < tokens.size() && ".".equals(text(stripped, tokens.get(i)))) {
+                schemaName = first;
+                tableName = identifier(stripped, tokens.get(i + 1));
+                i += 2;
+            }
+            if (tableName == null) {
+                return null;
+            }
+            String table = stripped.substring(tableStart, tokens.get(i - 1)[1]);
+
+            if ("DELETE".equals(verb) ? i < tokens.size() && !"WHERE".equals(word(stripped, tokens.get(i)))
+                    : i >= tokens.size() || !"SET".equals(word(stripped, tokens.get(i)))) {
+                return null;
+            }
+
+            // Joins and multi-table statements were ruled out above, as the table must be followed by SET or WHERE
+            int where = -1;
+            for (int j = i; j < tokens.size(); j++) {
+                String word = word(stripped, tokens.get(j));
+                if ("ORDER".equals(word) || "LIMIT".equals(word)) {
+                    return null;
+                }
+                if ("WHERE".equals(word) && where < 0) {
+                    where = j;
+                }
+            }
+
+            Set<String> assigned = new HashSet<>();
+            if ("UPDATE".equals(verb)) {
+                // Each assignment of the SET clause starts with its column, optionally qualified, and ends at a
+                // top-level comma, as the commas of function calls and subqueries are inside parenthesized tokens
+                int end = where < 0 ? tokens.size() : where;
+                boolean expectColumn = true;
+                for (int j = i + 1; j < end; j++) {
+                    if (expectColumn) {
+                        String column = identifier(stripped, tokens.get(j));
+                        while (j + 2 < end && ".".equals(text(stripped, tokens.get(j + 1)))) {
+                            j += 2;
+                            column = identifier(stripped, tokens.get(j));
+                        }
+                        if (column == null) {
+                            return null;
+                        }
+                        assigned.add(column.toLowerCase(Locale.ENGLISH));
+                        expectColumn = false;
+                    } else if (",".equals(text(stripped, tokens.get(j)))) {
+                        expectColumn = true;
+                    }
+                }
+            }
+
+            String head = where < 0 ? stripped : stripped.substring(0, tokens.get(where)[0]).trim();
+            String condition = where < 0 ? null : stripped.substring(tokens.get(where)[1]).trim();
+            return new ChunkedStatement(stripped, verb, table, schemaName, tableName, head, condition, assigned);
+        }
+
+        private static boolean isModifier(String word) {
+            return "LOW_PRIORITY".equals(word) || "QUICK".equals(word) || "IGNORE".equals(word);
+        }
+
+        private static String text(String sql, int[] token) {
+            return sql.substring(token[0], token[1]);
+        }
+
+        private static String word(String sql, int[] token) {
+            return text(sql, token).toUpperCase(Locale.ENGLISH);
+        }
+
+        private static String identifier(String sql, int[] token) {
+            String text = text(sql, token);
+            if (text.length() > 1 && text.startsWith("`") && text.endsWith("`")) {
+                return text.substring(1, text.length() - 1);
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '$') {
+                    return null;
+                }
+            }
+            return text;
+        }
+
+        /**
+         * Splits this statement into its top-level tokens: words, quoted strings and identifiers, parenthesized
+         * groups and single punctuation characters, skipping whitespace and comments.
+         *
+         * @return The start and end offset of each token, or {@code null} if a quote or parenthesis is unbalanced.
+         */
+        private static List<int[]> tokenize(String sql) {
+            List<int[]> tokens = new ArrayList<>();
+            int length = sql.length();
+            int i = 0;
+            while (i < length) {
+                char c = sql.charAt(i);
+                int start = i;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+                    int end = sql.indexOf('\n', i);
+                    i = end < 0 ? length : end + 1;
+                    continue;
+                }
+                if (c == '/' && sql.startsWith("/*", i)) {
+                    int end = sql.indexOf("*/", i + 2);
+                    if (end < 0) {
+                        return null;
+                    }
+                    i = end + 2;
+                    continue;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    i = skipQuoted(sql, i, c);
+                } else if (c == '(') {
+                    int depth = 0;
+                    while (i < length) {
+                        char d = sql.charAt(i);
+                        if (d == '\'' || d == '"' || d == '`') {
+                            i = skipQuoted(sql, i, d);
+                            if (i < 0) {
+                                return null;
+                            }
+                            continue;
+                        }
+                        if (d == '(') {
+                            depth++;
+                        } else if (d == ')' && --depth == 0) {
+                            i++;
+                            break;
+                        }
+                        i++;
+                    }
+                    if (depth != 0) {
+                        return null;
+                    }
+                } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@') {
+                    while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+                            || sql.charAt(i) == '$' || sql.charAt(i) == '@')) {
+                        i++;
+                    }
+                } else {
+                    i++;
+                }
+                if (i < 0) {
+                    return null;
+                }
+                tokens.add(new int[]{start, i});
+            }
+            return tokens;
+        }
+
+        /**
+         * @return The offset just after the closing quote, or -1 if the quote is not closed.
+         */
+        private static int skipQuoted(String sql, int start, char quote) {
+            int i = start + 1;
+            while (i < sql.length()) {
+                char c = sql.charAt(i);
+                if (c == '\\' && quote != '`') {
+                    i += 2;
+                } else if (c == quote) {
+                    if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                        i += 2;
+                    } else {
+                        return i + 1;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            return -1;
+        }
+    }
+}
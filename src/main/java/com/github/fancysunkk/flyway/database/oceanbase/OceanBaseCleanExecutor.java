@@ -0,0 +1,173 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the DROP statements issued while cleaning a schema. Tables and views are grouped into multi-object
+ * DROP statements and all statements of a phase are spread over a bounded number of connections.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseCleanExecutor {
+    private final OceanBaseDatabase database;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final int parallelism;
+
+    private final StringBuilder phaseTimings = new StringBuilder();
+    private int droppedObjects;
+
+    /**
+     * Creates a new clean executor.
+     *
+     * @param database     The database-specific support.
+     * @param jdbcTemplate The Jdbc Template of the connection performing the clean.
+     * @param batchSize    The maximum number of objects dropped by a single statement.
+     * @param parallelism  The maximum number of connections dropping objects concurrently.
+     */
+    OceanBaseCleanExecutor(OceanBaseDatabase database, JdbcTemplate jdbcTemplate, int batchSize, int parallelism) {
+        this.database = database;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Drops objects that can only be dropped one by one, such as events and routines.
+     *
+     * @param phase      The name of the phase, used for reporting.
+     * @param statements The DROP statements, one per object.
+     */
+    void dropEach(String phase, List<String> statements) throws SQLException {
+        execute(phase, statements, statements.size(), false);
+    }
+
+    /**
+     * Drops objects using DROP statements naming up to {@code batchSize} objects each.
+     *
+     * @param phase                    The name of the phase, used for reporting.
+     * @param dropPrefix               The statement prefix, such as {@code DROP TABLE}.
+     * @param quotedNames              The fully qualified and quoted names of the objects to drop.
+     * @param foreignKeyChecksDisabled Whether foreign key checks must be disabled on additional connections.
+     */
+    void dropInBatches(String phase, String dropPrefix, List<String> quotedNames, boolean foreignKeyChecksDisabled) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        for (int from = 0; from < quotedNames.size(); from += batchSize) {
+            List<String> batch = quotedNames.subList(from, Math.min(from + batchSize, quotedNames.size()));
+            statements.add(dropPrefix + " " + String.join(", ", batch));
+        }
+        execute(phase, statements, quotedNames.size(), foreignKeyChecksDisabled);
+    }
+
+    /**
+     * Logs how many objects were dropped and how long each phase took.
+     *
+     * @param schema     The schema that was cleaned.
+     * @param startNanos The value of {@link System#nanoTime()} when the clean started.
+     */
+    void report(MySQLSchema schema, long startNanos) {
+        LOG.info("Dropped " + droppedObjects + " objects from schema " + schema
+                + " in " + millisSince(startNanos) + " ms (" + phaseTimings + ")");
+    }
+
+    private void execute(String phase, List<String> statements, int objectCount, boolean foreignKeyChecksDisabled) throws SQLException {
+        long start = System.nanoTime();
+        int connections = Math.min(parallelism, statements.size());
+        if (connections <= 1) {
+            for (String statement : statements) {
+                jdbcTemplate.execute(statement);
+            }
+        } else {
+            executeConcurrently(statements, connections, foreignKeyChecksDisabled);
+        }
+        droppedObjects += objectCount;
+
+        long millis = millisSince(start);
+        if (phaseTimings.length() > 0) {
+            phaseTimings.append(", ");
+        }
+        phaseTimings.append(phase).append(": ").append(objectCount).append(" in ").append(millis).append(" ms");
+        LOG.debug("Dropped " + objectCount + " " + phase + " using " + statements.size() + " statements on "
+                + Math.max(connections, 1) + " connections in " + millis + " ms");
+    }
+
+    private void executeConcurrently(List<String> statements, int connections, boolean foreignKeyChecksDisabled) throws SQLException {
+        Queue<String> queue = new ConcurrentLinkedQueue<>(statements);
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "flyway-oceanbase-clean-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                futures.add(executor.submit(() -> drain(queue, failed, foreignKeyChecksDisabled)));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new FlywayException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while cleaning schema", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Void drain(Queue<String> queue, AtomicBoolean failed, boolean foreignKeyChecksDisabled) throws SQLException {
+        Connection connection = database.openConnection();
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.CLEAN)) {
+            JdbcTemplate template = new JdbcTemplate(connection, database.getDatabaseType());
+            if (foreignKeyChecksDisabled) {
+                template.execute("SET FOREIGN_KEY_CHECKS = 0");
+            }
+            String statement;
+            while (!failed.get() && (statement = queue.poll()) != null) {
+                try {
+                    template.execute(statement);
+                } catch (SQLException | RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                }
+            }
+            if (foreignKeyChecksDisabled) {
+                template.execute("SET FOREIGN_KEY_CHECKS = 1");
+            }
+            return null;
+        } finally {
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,409 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.extensibility.ConfigurationExtension;
+import org.flywaydb.core.internal.configuration.ConfigUtils;
+import org.flywaydb.core.internal.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * OceanBase specific configuration, read from the {@code flyway.oceanbase.*} properties
+ * and the matching {@code FLYWAY_OCEANBASE_*} environment variables.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@Getter
+@Setter
+public class OceanBaseConfigurationExtension implements ConfigurationExtension {
+    private static final String CLEAN_BATCH_SIZE = "flyway.oceanbase.clean.batchSize";
+    private static final String CLEAN_PARALLELISM = "flyway.oceanbase.clean.parallelism";
+    private static final String CLEAN_RECREATE_SCHEMA = "flyway.oceanbase.clean.recreateSchema";
+    private static final String CLEAN_GRANTEES = "flyway.oceanbase.clean.grantees";
+    private static final String LOCK_TIMEOUT = "flyway.oceanbase.lock.timeout";
+    private static final String LOCK_STRATEGY = "flyway.oceanbase.lock.strategy";
+    private static final String LOCK_LEASE_DURATION = "flyway.oceanbase.lock.leaseDuration";
+    private static final String HISTORY_TABLE_GROUP = "flyway.oceanbase.historyTable.tableGroup";
+    private static final String HISTORY_TABLE_PRIMARY_ZONE = "flyway.oceanbase.historyTable.primaryZone";
+    private static final String HISTORY_TABLE_LOCALITY = "flyway.oceanbase.historyTable.locality";
+    private static final String HISTORY_TABLE_COMPRESSION = "flyway.oceanbase.historyTable.compression";
+    private static final String HISTORY_TABLE_DUPLICATE_SCOPE = "flyway.oceanbase.historyTable.duplicateScope";
+    private static final String CHUNK_SIZE = "flyway.oceanbase.chunk.size";
+    private static final String CHUNK_THROTTLE = "flyway.oceanbase.chunk.throttle";
+    private static final String CHUNK_AUTO_THRESHOLD_ROWS = "flyway.oceanbase.chunk.autoThresholdRows";
+    private static final String CHUNK_PROGRESS_TABLE = "flyway.oceanbase.chunk.progressTable";
+    private static final String DDL_PARALLELISM = "flyway.oceanbase.ddl.parallelism";
+    private static final String DDL_TIMEOUT = "flyway.oceanbase.ddl.timeout";
+    private static final String DDL_PROGRESS_INTERVAL = "flyway.oceanbase.ddl.progressInterval";
+    private static final String DDL_OFFLINE_POLICY = "flyway.oceanbase.ddl.offlinePolicy";
+    private static final String DDL_SUBMIT = "flyway.oceanbase.ddl.submit";
+    private static final String SESSION_QUERY_TIMEOUT = "flyway.oceanbase.session.queryTimeout";
+    private static final String SESSION_TRX_TIMEOUT = "flyway.oceanbase.session.trxTimeout";
+    private static final String SESSION_PARALLEL_DEGREE = "flyway.oceanbase.session.parallelDegree";
+    private static final String SESSION_DDL_PARALLEL_DEGREE = "flyway.oceanbase.session.ddlParallelDegree";
+    private static final String SCRATCH_SCHEMA = "flyway.oceanbase.scratchSchema";
+    private static final String LOAD_BATCH_SIZE = "flyway.oceanbase.load.batchSize";
+    private static final String LOAD_PARALLELISM = "flyway.oceanbase.load.parallelism";
+    private static final String LOAD_DIRECT = "flyway.oceanbase.load.direct";
+    private static final String CHECKSUM_CACHE_FILE = "flyway.oceanbase.checksumCache.file";
+    private static final String EXPLAIN_TOP = "flyway.oceanbase.explain.top";
+    private static final String EXPLAIN_MAX_ROWS = "flyway.oceanbase.explain.maxRows";
+    private static final String EXPLAIN_MAX_COST = "flyway.oceanbase.explain.maxCost";
+    private static final String EXPLAIN_MAX_FULL_SCAN_ROWS = "flyway.oceanbase.explain.maxFullScanRows";
+    private static final String PROFILE_FILE = "flyway.oceanbase.profile.file";
+    private static final String PROFILE_TOP = "flyway.oceanbase.profile.top";
+    private static final String PROFILE_TRACE_ID = "flyway.oceanbase.profile.traceId";
+
+    private static final Map<String, String> ENVIRONMENT_VARIABLES = new HashMap<>();
+
+    static {
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CLEAN_BATCH_SIZE", CLEAN_BATCH_SIZE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CLEAN_PARALLELISM", CLEAN_PARALLELISM);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CLEAN_RECREATE_SCHEMA", CLEAN_RECREATE_SCHEMA);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CLEAN_GRANTEES", CLEAN_GRANTEES);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_LOCK_TIMEOUT", LOCK_TIMEOUT);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_LOCK_STRATEGY", LOCK_STRATEGY);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_LOCK_LEASE_DURATION", LOCK_LEASE_DURATION);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_HISTORY_TABLE_GROUP", HISTORY_TABLE_GROUP);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_HISTORY_TABLE_PRIMARY_ZONE", HISTORY_TABLE_PRIMARY_ZONE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_HISTORY_TABLE_LOCALITY", HISTORY_TABLE_LOCALITY);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_HISTORY_TABLE_COMPRESSION", HISTORY_TABLE_COMPRESSION);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_HISTORY_TABLE_DUPLICATE_SCOPE", HISTORY_TABLE_DUPLICATE_SCOPE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CHUNK_SIZE", CHUNK_SIZE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CHUNK_THROTTLE", CHUNK_THROTTLE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CHUNK_AUTO_THRESHOLD_ROWS", CHUNK_AUTO_THRESHOLD_ROWS);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CHUNK_PROGRESS_TABLE", CHUNK_PROGRESS_TABLE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_DDL_PARALLELISM", DDL_PARALLELISM);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_DDL_TIMEOUT", DDL_TIMEOUT);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_DDL_PROGRESS_INTERVAL", DDL_PROGRESS_INTERVAL);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_DDL_OFFLINE_POLICY", DDL_OFFLINE_POLICY);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_DDL_SUBMIT", DDL_SUBMIT);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_SESSION_QUERY_TIMEOUT", SESSION_QUERY_TIMEOUT);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_SESSION_TRX_TIMEOUT", SESSION_TRX_TIMEOUT);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_SESSION_PARALLEL_DEGREE", SESSION_PARALLEL_DEGREE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_SESSION_DDL_PARALLEL_DEGREE", SESSION_DDL_PARALLEL_DEGREE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_SCRATCH_SCHEMA", SCRATCH_SCHEMA);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_LOAD_BATCH_SIZE", LOAD_BATCH_SIZE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_LOAD_PARALLELISM", LOAD_PARALLELISM);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_LOAD_DIRECT", LOAD_DIRECT);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_CHECKSUM_CACHE_FILE", CHECKSUM_CACHE_FILE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_EXPLAIN_TOP", EXPLAIN_TOP);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_EXPLAIN_MAX_ROWS", EXPLAIN_MAX_ROWS);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_EXPLAIN_MAX_COST", EXPLAIN_MAX_COST);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_EXPLAIN_MAX_FULL_SCAN_ROWS", EXPLAIN_MAX_FULL_SCAN_ROWS);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_PROFILE_FILE", PROFILE_FILE);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_PROFILE_TOP", PROFILE_TOP);
+        ENVIRONMENT_VARIABLES.put("FLYWAY_OCEANBASE_PROFILE_TRACE_ID", PROFILE_TRACE_ID);
+    }
+
+    /**
+     * The maximum number of tables or views dropped by a single DROP statement during clean.
+     */
+    private int cleanBatchSize = 1;
+
+    /**
+     * The maximum number of connections used concurrently to drop objects during clean.
+     */
+    private int cleanParallelism = 1;
+
+    /**
+     * Whether clean drops and creates each schema again instead of dropping its objects one by one, when the user has
+     * the privileges to do so.
+     */
+    private boolean cleanRecreateSchema = false;
+
+    /**
+     * The users, such as {@code 'app'@'%'}, whose grants on a schema are restored after clean recreated it.
+     */
+    private String[] cleanGrantees = new String[0];
+
+    /**
+     * The maximum time in seconds to wait for the migration lock. 0 waits indefinitely.
+     */
+    private int lockTimeout = 0;
+
+    /**
+     * How the schema history table is locked while migrating.
+     */
+    private OceanBaseLockStrategy lockStrategy = OceanBaseLockStrategy.AUTO;
+
+    /**
+     * How long in seconds a migration lease lasts unless renewed. A lease left behind by a crashed node is taken over
+     * after this long.
+     */
+    private int lockLeaseDuration = 30;
+
+    /**
+     * The table group the schema history table is created in, so it can be co-located with the tables it describes.
+     */
+    private String historyTableGroup;
+
+    /**
+     * The primary zone of the schema history table, such as {@code zone1}.
+     */
+    private String historyTablePrimaryZone;
+
+    /**
+     * The replica distribution of the schema history table, such as {@code F@zone1,F@zone2,F@zone3}.
+     */
+    private String historyTableLocality;
+
+    /**
+     * The compression algorithm of the schema history table, such as {@code zstd_1.3.8}.
+     */
+    private String historyTableCompression;
+
+    /**
+     * The duplicate scope of the schema history table, such as {@code cluster}. A duplicated table can be read with
+     * strong consistency from any replica, so starting applications far from the leader does not cross zones.
+     */
+    private String historyTableDuplicateScope;
+
+    /**
+     * The number of primary key values covered by each chunk of a chunked UPDATE or DELETE.
+     */
+    private int chunkSize = 10000;
+
+    /**
+     * The pause between two chunks of a chunked UPDATE or DELETE, in milliseconds.
+     */
+    private int chunkThrottle = 0;
+
+    /**
+     * UPDATE and DELETE statements on tables estimated to hold more rows than this are chunked even when they are
+     * not marked. 0 only chunks marked statements.
+     */
+    private int chunkAutoThresholdRows = 0;
+
+    /**
+     * The table recording the progress of chunked statements, so that a failed one resumes where it stopped.
+     */
+    private String chunkProgressTable = "flyway_chunk_progress";
+
+    /**
+     * The maximum number of connections executing DDL statements marked as parallel concurrently. 1 executes them
+     * one after the other like any other statement.
+     */
+    private int ddlParallelism = 1;
+
+    /**
+     * The ob_query_timeout in seconds that index builds and table alterations run with, when the session's own is
+     * shorter. 0 leaves the session's timeout unchanged.
+     */
+    private int ddlTimeout = 86400;
+
+    /**
+     * The interval in seconds at which the progress of a running index build or table alteration is logged. 0 disables
+     * progress reporting.
+     */
+    private int ddlProgressInterval = 30;
+
+    /**
+     * What happens to ALTER TABLE statements that OceanBase executes offline, rewriting the table and blocking writes.
+     */
+    private OceanBaseOfflineDdlPolicy ddlOfflinePolicy = OceanBaseOfflineDdlPolicy.WARN;
+
+    /**
+     * Whether index builds and table alterations are submitted on a connection of their own and polled for completion,
+     * instead of being executed on the migration's connection.
+     */
+    private boolean ddlSubmit = false;
+
+    /**
+     * The ob_query_timeout in seconds that migrations run with. 0 keeps the session's own.
+     */
+    private int sessionQueryTimeout = 0;
+
+    /**
+     * The ob_trx_timeout in seconds that migrations run with. 0 keeps the session's own.
+     */
+    private int sessionTrxTimeout = 0;
+
+    /**
+     * The degree of parallelism forced on the queries and DML of migrations. 0 keeps the session's own.
+     */
+    private int sessionParallelDegree = 0;
+
+    /**
+     * The degree of parallelism forced on the DDL of migrations, such as index builds. 0 keeps the session's own.
+     */
+    private int sessionDdlParallelDegree = 0;
+
+    /**
+     * An empty schema switched to instead of deselecting the current schema, which OceanBase can only do by creating,
+     * selecting and dropping a temporary schema. It is created on first use if it does not exist.
+     */
+    private String scratchSchema;
+
+    /**
+     * The number of rows inserted by each statement when a bulk load falls back to INSERT statements.
+     */
+    private int loadBatchSize = 1000;
+
+    /**
+     * The degree of parallelism of LOAD DATA in a bulk load, or the number of connections inserting concurrently when
+     * it falls back to INSERT statements.
+     */
+    private int loadParallelism = 1;
+
+    /**
+     * Whether bulk loads ask OceanBase for a direct load, which writes data files without going through the memstore.
+     */
+    private boolean loadDirect = true;
+
+    /**
+     * The file in which {@link OceanBaseCachingMigrationResolver} keeps the checksums of migration scripts. Defaults
+     * to {@code flyway-oceanbase/checksums.bin} in the application data directory.
+     */
+    private String checksumCacheFile;
+
+    /**
+     * The number of most expensive statements listed by the EXPLAIN report of pending migrations.
+     */
+    private int explainTop = 10;
+
+    /**
+     * Pending DML statements whose plan estimates more rows than this fail the EXPLAIN report. 0 disables the check.
+     */
+    private int explainMaxRows = 0;
+
+    /**
+     * Pending DML statements whose plan is estimated to cost more than this fail the EXPLAIN report. The cost is that
+     * of the plan's root operator: EST.TIME(us) on OceanBase 4.x, COST before. 0 disables the check.
+     */
+    private int explainMaxCost = 0;
+
+    /**
+     * Pending DML statements scanning a table holding more rows than this from end to end fail the EXPLAIN report.
+     * 0 disables the check.
+     */
+    private int explainMaxFullScanRows = 0;
+
+    /**
+     * The file to which the statements executed by SQL migrations are profiled, as JSON if its name ends with
+     * {@code .json} and as CSV otherwise. {@code null} disables profiling.
+     */
+    private String profileFile;
+
+    /**
+     * The number of slowest statements logged once the profiled migrations completed.
+     */
+    private int profileTop = 10;
+
+    /**
+     * Whether the OceanBase trace ID of every profiled statement is read with {@code LAST_TRACE_ID()}, at the cost of
+     * a round trip per statement.
+     */
+    private boolean profileTraceId = false;
+
+    @Override
+    public void extractParametersFromConfiguration(Map<String, String> configuration) {
+        cleanBatchSize = removePositiveInteger(configuration, CLEAN_BATCH_SIZE, cleanBatchSize);
+        cleanParallelism = removePositiveInteger(configuration, CLEAN_PARALLELISM, cleanParallelism);
+        Boolean recreateSchema = ConfigUtils.removeBoolean(configuration, CLEAN_RECREATE_SCHEMA);
+        if (recreateSchema != null) {
+            cleanRecreateSchema = recreateSchema;
+        }
+        String grantees = removeString(configuration, CLEAN_GRANTEES, null);
+        if (grantees != null) {
+            cleanGrantees = StringUtils.tokenizeToStringArray(grantees, ",");
+        }
+        lockTimeout = removeNonNegativeInteger(configuration, LOCK_TIMEOUT, lockTimeout);
+        lockStrategy = removeEnum(configuration, LOCK_STRATEGY, OceanBaseLockStrategy.class, lockStrategy);
+        lockLeaseDuration = removePositiveInteger(configuration, LOCK_LEASE_DURATION, lockLeaseDuration);
+        historyTableGroup = removeString(configuration, HISTORY_TABLE_GROUP, historyTableGroup);
+        historyTablePrimaryZone = removeString(configuration, HISTORY_TABLE_PRIMARY_ZONE, historyTablePrimaryZone);
+        historyTableLocality = removeString(configuration, HISTORY_TABLE_LOCALITY, historyTableLocality);
+        historyTableCompression = removeString(configuration, HISTORY_TABLE_COMPRESSION, historyTableCompression);
+        historyTableDuplicateScope = removeString(configuration, HISTORY_TABLE_DUPLICATE_SCOPE, historyTableDuplicateScope);
+        chunkSize = removePositiveInteger(configuration, CHUNK_SIZE, chunkSize);
+        chunkThrottle = removeNonNegativeInteger(configuration, CHUNK_THROTTLE, chunkThrottle);
+        chunkAutoThresholdRows = removeNonNegativeInteger(configuration, CHUNK_AUTO_THRESHOLD_ROWS, chunkAutoThresholdRows);
+        String progressTable = removeString(configuration, CHUNK_PROGRESS_TABLE, chunkProgressTable);
+        if (progressTable != null) {
+            chunkProgressTable = progressTable;
+        }
+        ddlParallelism = removePositiveInteger(configuration, DDL_PARALLELISM, ddlParallelism);
+        ddlTimeout = removeNonNegativeInteger(configuration, DDL_TIMEOUT, ddlTimeout);
+        ddlProgressInterval = removeNonNegativeInteger(configuration, DDL_PROGRESS_INTERVAL, ddlProgressInterval);
+        ddlOfflinePolicy = removeEnum(configuration, DDL_OFFLINE_POLICY, OceanBaseOfflineDdlPolicy.class, ddlOfflinePolicy);
+        Boolean submit = ConfigUtils.removeBoolean(configuration, DDL_SUBMIT);
+        if (submit != null) {
+            ddlSubmit = submit;
+        }
+        sessionQueryTimeout = removeNonNegativeInteger(configuration, SESSION_QUERY_TIMEOUT, sessionQueryTimeout);
+        sessionTrxTimeout = removeNonNegativeInteger(configuration, SESSION_TRX_TIMEOUT, sessionTrxTimeout);
+        sessionParallelDegree = removeNonNegativeInteger(configuration, SESSION_PARALLEL_DEGREE, sessionParallelDegree);
+        sessionDdlParallelDegree = removeNonNegativeInteger(configuration, SESSION_DDL_PARALLEL_DEGREE, sessionDdlParallelDegree);
+        scratchSchema = removeString(configuration, SCRATCH_SCHEMA, scratchSchema);
+        loadBatchSize = removePositiveInteger(configuration, LOAD_BATCH_SIZE, loadBatchSize);
+        loadParallelism = removePositiveInteger(configuration, LOAD_PARALLELISM, loadParallelism);
+        Boolean direct = ConfigUtils.removeBoolean(configuration, LOAD_DIRECT);
+        if (direct != null) {
+            loadDirect = direct;
+        }
+        checksumCacheFile = removeString(configuration, CHECKSUM_CACHE_FILE, checksumCacheFile);
+        explainTop = removePositiveInteger(configuration, EXPLAIN_TOP, explainTop);
+        explainMaxRows = removeNonNegativeInteger(configuration, EXPLAIN_MAX_ROWS, explainMaxRows);
+        explainMaxCost = removeNonNegativeInteger(configuration, EXPLAIN_MAX_COST, explainMaxCost);
+        explainMaxFullScanRows = removeNonNegativeInteger(configuration, EXPLAIN_MAX_FULL_SCAN_ROWS, explainMaxFullScanRows);
+        profileFile = removeString(configuration, PROFILE_FILE, profileFile);
+        profileTop = removePositiveInteger(configuration, PROFILE_TOP, profileTop);
+        Boolean traceId = ConfigUtils.removeBoolean(configuration, PROFILE_TRACE_ID);
+        if (traceId != null) {
+            profileTraceId = traceId;
+        }
+    }
+
+    @Override
+    public String getConfigurationParameterFromEnvironmentVariable(String environmentVariable) {
+        return ENVIRONMENT_VARIABLES.get(environmentVariable);
+    }
+
+    private static String removeString(Map<String, String> configuration, String key, String defaultValue) {
+        String value = configuration.remove(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <E extends Enum<E>> E removeEnum(Map<String, String> configuration, String key, Class<E> type, E defaultValue) {
+        String value = configuration.remove(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new FlywayException("Invalid value for " + key + ": " + value
+                    + " (should be one of " + Arrays.toString(type.getEnumConstants()) + ")");
+        }
+    }
+
+    private static int removePositiveInteger(Map<String, String> configuration, String key, int defaultValue) {
+        return removeInteger(configuration, key, defaultValue, 1);
+    }
+
+    private static int removeNonNegativeInteger(Map<String, String> configuration, String key, int defaultValue) {
+        return removeInteger(configuration, key, defaultValue, 0);
+    }
+
+    private static int removeInteger(Map<String, String> configuration, String key, int defaultValue, int minimum) {
+        Integer value = ConfigUtils.removeInteger(configuration, key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value < minimum) {
+            throw new FlywayException("Invalid value for " + key + " (should be at least " + minimum + "): " + value);
+        }
+        return value;
+    }
+}
@@ -1,7 +1,6 @@
 package com.github.fancysunkk.flyway.database.oceanbase;
 
 import lombok.CustomLog;
-import lombok.Getter;
 import org.flywaydb.core.internal.database.base.Connection;
 import org.flywaydb.core.internal.database.base.Schema;
 import org.flywaydb.core.internal.database.base.Table;
@@ -23,6 +22,7 @@ public class OceanBaseConnection extends Connection<OceanBaseDatabase> {
     private static final String USER_VARIABLES_TABLE_MYSQL = "performance_schema.user_variables_by_thread";
     private static final String FOREIGN_KEY_CHECKS = "foreign_key_checks";
     private static final String SQL_SAFE_UPDATES = "sql_safe_updates";
+    private static final int UNKNOWN_DATABASE = 1049;
 
     private final String userVariablesQuery;
     private final boolean canResetUserVariables;
@@ -30,93 +30,183 @@ public class OceanBaseConnection extends Connection<OceanBaseDatabase> {
     private final int originalForeignKeyChecks;
     private final int originalSqlSafeUpdates;
 
-
-    @Getter
-    private final boolean awsRds;
+    private final OceanBaseSessionTracker sessionTracker;
+    private final OceanBaseSessionProfile sessionProfile;
 
     public OceanBaseConnection(OceanBaseDatabase database, java.sql.Connection connection) {
-        super(database, connection);
+        this(database, connection, new OceanBaseSessionTracker(),
+                new OceanBaseSessionProfile(database.getConfigurationExtension(), connection),
+                new OceanBaseOfflineDdlGuard(database, connection));
+    }
 
-        userVariablesQuery = "SELECT variable_name FROM "
-                + (database.isMariaDB() ? USER_VARIABLES_TABLE_MARIADB : USER_VARIABLES_TABLE_MYSQL)
+    private OceanBaseConnection(OceanBaseDatabase database, java.sql.Connection connection,
+                                OceanBaseSessionTracker sessionTracker, OceanBaseSessionProfile sessionProfile,
+                                OceanBaseOfflineDdlGuard offlineDdlGuard) {
+        super(database, OceanBaseJdbcProxy.wrap(connection,
+                OceanBaseChunkedDml.fromConfiguration(database.getConfigurationExtension()),
+                new OceanBaseParallelDdl(database, database.getConfigurationExtension().getDdlParallelism(), offlineDdlGuard,
+                        database.getConfigurationExtension().isDdlSubmit()),
+                offlineDdlGuard, sessionTracker, database.getCatalogCache(), sessionProfile,
+                new OceanBaseDdlMonitor(database, connection), OceanBaseLeaseLockTemplate.fence(database, connection)));
+        this.sessionTracker = sessionTracker;
+        this.sessionProfile = sessionProfile;
+        sessionTracker.currentSchemaChanged(originalSchemaNameOrSearchPath);
+
+        userVariablesQuery = "SELECT variable_name FROM " + getUserVariablesTable(database.isMariaDB())
                 + " WHERE variable_value IS NOT NULL";
-        canResetUserVariables = hasUserVariableResetCapability();
+        canResetUserVariables = database.getCapabilities().isUserVariablesQueryable();
 
-        originalForeignKeyChecks = getIntVariableValue(FOREIGN_KEY_CHECKS);
-        originalSqlSafeUpdates = getIntVariableValue(SQL_SAFE_UPDATES);
-        awsRds = rdsAdminExists();
+        int[] originalValues;
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.PROBE)) {
+            originalValues = getIntVariableValues(FOREIGN_KEY_CHECKS, SQL_SAFE_UPDATES);
+            sessionProfile.apply();
+        }
+        originalForeignKeyChecks = originalValues[0];
+        originalSqlSafeUpdates = originalValues[1];
+        sessionTracker.reset();
     }
 
-    private int getIntVariableValue(String varName) {
-        try {
-            return jdbcTemplate.queryForInt("SELECT @@" + varName);
-        } catch (SQLException e) {
-            throw new FlywaySqlException("Unable to determine value for '" + varName + "' variable", e);
-        }
+    static String getUserVariablesTable(boolean mariaDB) {
+        return mariaDB ? USER_VARIABLES_TABLE_MARIADB : USER_VARIABLES_TABLE_MYSQL;
     }
 
-    // #2215: ensure the database is recent enough and the current user has the necessary SELECT grant
-    private boolean hasUserVariableResetCapability() {
+    public boolean isAwsRds() {
+        return database.getCapabilities().isAwsRds(jdbcTemplate);
+    }
+
+    private int[] getIntVariableValues(String... varNames) {
+        StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < varNames.length; i++) {
+            query.append(i == 0 ? "@@" : ", @@").append(varNames[i]);
+        }
         try {
-            jdbcTemplate.queryForStringList(userVariablesQuery);
-            return true;
+            return jdbcTemplate.query(query.toString(), rs -> {
+                int[] values = new int[varNames.length];
+                for (int i = 0; i < varNames.length; i++) {
+                    values[i] = rs.getInt(i + 1);
+                }
+                return values;
+            }).get(0);
         } catch (SQLException e) {
-            LOG.debug("Disabled user variable reset as "
-                    + (database.isMariaDB() ? USER_VARIABLES_TABLE_MARIADB : USER_VARIABLES_TABLE_MYSQL)
-                    + "cannot be queried (SQL State: " + e.getSQLState() + ", Error Code: " + e.getErrorCode() + ")");
-            return false;
+            throw new FlywaySqlException("Unable to determine value for " + String.join(", ", varNames) + " variables", e);
         }
     }
 
     @Override
     protected void doRestoreOriginalState() throws SQLException {
-        resetUserVariables();
-        jdbcTemplate.execute("SET " + FOREIGN_KEY_CHECKS + "=?, " + SQL_SAFE_UPDATES + "=?",
-                originalForeignKeyChecks, originalSqlSafeUpdates);
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.RESTORE)) {
+            restoreTrackedState();
+        }
+    }
+
+    private void restoreTrackedState() throws SQLException {
+        // Without tracking this would always cost a user variable query plus a SET statement
+        int fullRoundTrips = (canResetUserVariables ? 1 : 0) + 1;
+        int roundTrips = 0;
+
+        StringBuilder setStatement = new StringBuilder();
+        if (canResetUserVariables && sessionTracker.isUserVariablesChanged()) {
+            roundTrips++;
+            appendUserVariablesReset(setStatement);
+        }
+        boolean sessionVariablesChanged = sessionTracker.isSessionVariablesChanged();
+        if (sessionVariablesChanged) {
+            if (setStatement.length() > 0) {
+                setStatement.append(",");
+            }
+            setStatement.append(FOREIGN_KEY_CHECKS).append("=").append(originalForeignKeyChecks).append(",")
+                    .append(SQL_SAFE_UPDATES).append("=").append(originalSqlSafeUpdates);
+        }
+        sessionProfile.appendRestore(setStatement, sessionVariablesChanged);
+        if (setStatement.length() > 0) {
+            roundTrips++;
+            jdbcTemplate.execute("SET " + setStatement);
+        }
+
+        sessionTracker.reset();
+        database.recordSkippedRestoreRoundTrips(fullRoundTrips - roundTrips);
     }
 
     // #2197: prevent user-defined variables from leaking beyond the scope of a migration
-    private void resetUserVariables() throws SQLException {
-        if (canResetUserVariables) {
-            List<String> userVariables = jdbcTemplate.queryForStringList(userVariablesQuery);
-            if (!userVariables.isEmpty()) {
-                boolean first = true;
-                StringBuilder setStatement = new StringBuilder("SET ");
-                for (String userVariable : userVariables) {
-                    if (first) {
-                        first = false;
-                    } else {
-                        setStatement.append(",");
-                    }
-                    setStatement.append("@").append(userVariable).append("=NULL");
-                }
-                jdbcTemplate.executeStatement(setStatement.toString());
+    private void appendUserVariablesReset(StringBuilder setStatement) throws SQLException {
+        List<String> userVariables = jdbcTemplate.queryForStringList(userVariablesQuery);
+        for (String userVariable : userVariables) {
+            if (setStatement.length() > 0) {
+                setStatement.append(",");
             }
+            setStatement.append("@").append(userVariable).append("=NULL");
         }
     }
 
+    /**
+     * @return The current schema, or {@code null} if none or the scratch schema is selected.
+     */
     @Override
     protected String getCurrentSchemaNameOrSearchPath() throws SQLException {
-        return jdbcTemplate.queryForString("SELECT DATABASE()");
+        String schema;
+        // The tracker is not assigned yet while the original schema is read during construction
+        if (sessionTracker != null && sessionTracker.isCurrentSchemaKnown()) {
+            schema = sessionTracker.getCurrentSchema();
+        } else {
+            schema = jdbcTemplate.queryForString("SELECT DATABASE()");
+            if (sessionTracker != null) {
+                sessionTracker.currentSchemaChanged(schema);
+            }
+        }
+        return schema != null && schema.equals(database.getConfigurationExtension().getScratchSchema()) ? null : schema;
     }
 
     @Override
     public void doChangeCurrentSchemaOrSearchPathTo(String schema) throws SQLException {
+        String scratchSchema = database.getConfigurationExtension().getScratchSchema();
+        if (sessionTracker.isCurrentSchemaKnown()) {
+            String current = sessionTracker.getCurrentSchema();
+            if (StringUtils.hasLength(schema) ? schema.equals(current)
+                    : current == null || current.equals(scratchSchema)) {
+                return;
+            }
+        }
         if (StringUtils.hasLength(schema)) {
             jdbcTemplate.getConnection().setCatalog(schema);
-        } else {
+        } else if (scratchSchema == null || !switchToScratchSchema(scratchSchema)) {
             try {
                 // Weird hack to switch back to no database selected...
                 String newDb = database.quote(UUID.randomUUID().toString());
                 jdbcTemplate.execute("CREATE SCHEMA " + newDb);
                 jdbcTemplate.execute("USE " + newDb);
                 jdbcTemplate.execute("DROP SCHEMA " + newDb);
+                sessionTracker.currentSchemaChanged(null);
             } catch (Exception e) {
                 LOG.warn("Unable to restore connection to having no default schema: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Switches to the scratch schema, creating it first if it does not exist yet.
+     *
+     * @return Whether the switch succeeded.
+     */
+    private boolean switchToScratchSchema(String scratchSchema) {
+        java.sql.Connection connection = jdbcTemplate.getConnection();
+        try {
+            try {
+                connection.setCatalog(scratchSchema);
+            } catch (SQLException e) {
+                if (e.getErrorCode() != UNKNOWN_DATABASE) {
+                    throw e;
+                }
+                jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + database.quote(scratchSchema));
+                connection.setCatalog(scratchSchema);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOG.warn("Unable to switch to scratch schema " + scratchSchema + ", deselecting the current schema instead: "
+                    + e.getMessage());
+            return false;
+        }
+    }
+
     @Override
     protected Schema doGetCurrentSchema() throws SQLException {
         String schemaName = getCurrentSchemaNameOrSearchPath();
@@ -132,20 +222,19 @@ public class OceanBaseConnection extends Connection<OceanBaseDatabase> {
 
     @Override
     public <T> T lock(Table table, Callable<T> callable) {
+        if (database.getLockStrategy() == OceanBaseLockStrategy.LEASE) {
+            OceanBaseConfigurationExtension configuration = database.getConfigurationExtension();
+            return new OceanBaseLeaseLockTemplate(database, table, configuration.getLockTimeout(),
+                    configuration.getLockLeaseDuration()).execute(callable);
+        }
         if (canUseNamedLockTemplate()) {
-            return new MySQLNamedLockTemplate(jdbcTemplate, table.toString().hashCode()).execute(callable);
+            return new MySQLNamedLockTemplate(jdbcTemplate, table.toString().hashCode(),
+                    database.getConfigurationExtension().getLockTimeout()).execute(callable);
         }
         return super.lock(table, callable);
     }
-    protected boolean canUseNamedLockTemplate() {
-        return false;
-    }
 
-    private boolean rdsAdminExists() {
-        try {
-            return StringUtils.hasText(jdbcTemplate.queryForString("SHOW DATABASES LIKE 'RDSAdmin';"));
-        } catch (Exception e) {
-            return false;
-        }
+    protected boolean canUseNamedLockTemplate() {
+        return database.getLockStrategy() == OceanBaseLockStrategy.NAMED_LOCK;
     }
 }
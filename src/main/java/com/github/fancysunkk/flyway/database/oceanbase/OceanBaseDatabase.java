@@ -9,12 +9,15 @@ import org.flywaydb.core.internal.database.base.Database;
 import org.flywaydb.core.internal.database.base.Table;
 import org.flywaydb.core.internal.database.mysql.MySQLDatabaseType;
 import org.flywaydb.core.internal.database.mysql.mariadb.MariaDBDatabaseType;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
 import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
 import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.plugin.PluginRegister;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,21 +30,147 @@ public class OceanBaseDatabase extends Database<OceanBaseConnection> {
 
     private static final Pattern MYSQL_VERSION_PATTERN = Pattern.compile("(\\d+\\.\\d+)\\.\\d+\\w*");
 
-    private final boolean pxcStrict;
+    final boolean eventSchedulerQueryable;
 
-    private final boolean gtidConsistencyEnforced;
+    private final OceanBaseCapabilities capabilities;
 
-    final boolean eventSchedulerQueryable;
+    private final AtomicLong skippedRestoreRoundTrips = new AtomicLong();
+
+    private final OceanBaseCatalogCache catalogCache = new OceanBaseCatalogCache();
+
+    /**
+     * The main connection, wrapped so that the plugin's own probes are recorded by {@link OceanBaseMetrics}.
+     */
+    private final Connection probeConnection;
+
+    /**
+     * The profile of the statements executed by SQL migrations, or {@code null} if they are not profiled.
+     */
+    private final OceanBaseStatementProfile statementProfile;
+
+    /**
+     * The migration lease held by this process, or {@code null} if none is held.
+     */
+    private volatile OceanBaseLeaseLockTemplate lease;
 
     public OceanBaseDatabase(Configuration configuration, JdbcConnectionFactory jdbcConnectionFactory, StatementInterceptor statementInterceptor) {
         super(configuration, jdbcConnectionFactory, statementInterceptor);
 
-        JdbcTemplate jdbcTemplate = new JdbcTemplate(rawMainJdbcConnection, databaseType);
-        pxcStrict = isMySQL() && isRunningInPerconaXtraDBClusterWithStrictMode(jdbcTemplate);
-        gtidConsistencyEnforced = isMySQL() && isRunningInGTIDConsistencyMode(jdbcTemplate);
-        eventSchedulerQueryable = isMySQL() || isEventSchedulerQueryable(jdbcTemplate);
+        // Percona XtraDB Cluster strict mode and GTID consistency do not exist in OceanBase, so they are not probed
+        probeConnection = OceanBaseJdbcProxy.wrap(rawMainJdbcConnection);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(probeConnection, databaseType);
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.PROBE)) {
+            capabilities = OceanBaseCapabilities.get(jdbcTemplate, jdbcConnectionFactory.getJdbcUrl(), getConnectionUser(),
+                    getServerVersion(), OceanBaseConnection.getUserVariablesTable(isMariaDB()));
+            eventSchedulerQueryable = isMySQL() || isEventSchedulerQueryable(jdbcTemplate);
+        }
+        statementProfile = OceanBaseStatementProfile.open(getConfigurationExtension());
+    }
+
+    /**
+     * @return The version and edition of the server, read once per connection identity.
+     */
+    OceanBaseVersion getOceanBaseVersion() {
+        OceanBaseVersion version;
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.PROBE)) {
+            version = OceanBaseJdbcUtils.getVersion(probeConnection);
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Failed to get version number", e);
+        }
+        if (version == null) {
+            throw new FlywayException("Unable to determine OceanBase version");
+        }
+        return version;
+    }
+
+    OceanBaseCatalogCache getCatalogCache() {
+        return catalogCache;
+    }
+
+    OceanBaseCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    OceanBaseLeaseLockTemplate getLease() {
+        return lease;
+    }
+
+    void setLease(OceanBaseLeaseLockTemplate lease) {
+        this.lease = lease;
+    }
+
+    private String getConnectionUser() {
+        if (configuration.getUser() != null) {
+            return configuration.getUser();
+        }
+        return "DataSource@" + Integer.toHexString(System.identityHashCode(configuration.getDataSource()));
+    }
+
+    private String getServerVersion() {
+        try {
+            return jdbcMetaData.getDatabaseProductVersion();
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to read server version", e);
+        }
     }
 
+    OceanBaseConfigurationExtension getConfigurationExtension() {
+        OceanBaseConfigurationExtension extension = PluginRegister.getPlugin(OceanBaseConfigurationExtension.class);
+        return extension == null ? new OceanBaseConfigurationExtension() : extension;
+    }
+
+    /**
+     * Opens an additional connection to the database, for work that runs alongside the main connection.
+     *
+     * @return The new connection. The caller is responsible for closing it.
+     */
+    Connection openConnection() {
+        return OceanBaseJdbcProxy.wrap(jdbcConnectionFactory.openConnection());
+    }
+
+    /**
+     * Opens an additional connection to the database for executing DDL, whose index builds and table alterations are
+     * watched like those of the main connection.
+     *
+     * @return The new connection. The caller is responsible for closing it.
+     */
+    Connection openDdlConnection() {
+        Connection connection = jdbcConnectionFactory.openConnection();
+        return OceanBaseJdbcProxy.wrap(connection, getCatalogCache(), new OceanBaseDdlMonitor(this, connection));
+    }
+
+    /**
+     * @return The lock strategy in effect, with {@link OceanBaseLockStrategy#AUTO} resolved.
+     */
+    OceanBaseLockStrategy getLockStrategy() {
+        OceanBaseLockStrategy strategy = getConfigurationExtension().getLockStrategy();
+        if (strategy == OceanBaseLockStrategy.AUTO) {
+            return supportsNamedLocks() ? OceanBaseLockStrategy.NAMED_LOCK : OceanBaseLockStrategy.TABLE;
+        }
+        return strategy;
+    }
+
+    private boolean supportsNamedLocks() {
+        // GET_LOCK and RELEASE_LOCK are only available in MySQL mode from OceanBase 4.2.2 onwards
+        OceanBaseVersion version = getOceanBaseVersion();
+        return version.isMySQLMode() && version.isAtLeast(4, 2, 2);
+    }
+
+    void recordSkippedRestoreRoundTrips(int roundTrips) {
+        skippedRestoreRoundTrips.addAndGet(roundTrips);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (statementProfile != null) {
+            statementProfile.close();
+        }
+        long skipped = skippedRestoreRoundTrips.get();
+        if (skipped > 0) {
+            LOG.info("Skipped " + skipped + " round trips while restoring session state after migrations");
+        }
+    }
 
     boolean isMariaDB() {
         return databaseType instanceof MariaDBDatabaseType;
@@ -60,45 +189,8 @@ public class OceanBaseDatabase extends Database<OceanBaseConnection> {
             return false;
         }
     }
-    static boolean isRunningInPerconaXtraDBClusterWithStrictMode(JdbcTemplate jdbcTemplate) {
-        try {
-            String pcx_strict_mode = jdbcTemplate.queryForString(
-                    "select VARIABLE_VALUE from performance_schema.global_variables"
-                            + " where variable_name = 'pxc_strict_mode'");
-            if ("ENFORCING".equals(pcx_strict_mode) || "MASTER".equals(pcx_strict_mode)) {
-                LOG.debug("Detected Percona XtraDB Cluster in strict mode");
-                return true;
-            }
-        } catch (SQLException e) {
-            LOG.debug("Unable to detect whether we are running in a Percona XtraDB Cluster. Assuming not to be.");
-        }
-
-        return false;
-    }
-
-    static boolean isRunningInGTIDConsistencyMode(JdbcTemplate jdbcTemplate) {
-        try {
-            String gtidConsistency = jdbcTemplate.queryForString("SELECT @@GLOBAL.ENFORCE_GTID_CONSISTENCY");
-            if ("ON".equals(gtidConsistency)) {
-                LOG.debug("Detected GTID consistency being enforced");
-                return true;
-            }
-        } catch (SQLException e) {
-            LOG.debug("Unable to detect whether database enforces GTID consistency. Assuming not.");
-        }
-
-        return false;
-    }
-
     @Override
     public String getRawCreateScript(Table table, boolean baseline) {
-        String tablespace =
-
-
-                configuration.getTablespace() == null
-                        ? ""
-                        : " TABLESPACE \"" + configuration.getTablespace() + "\"";
-
         String baselineMarker = "";
         if (baseline) {
             if (isCreateTableAsSelectAllowed()) {
@@ -132,12 +224,38 @@ public class OceanBaseDatabase extends Database<OceanBaseConnection> {
                 "    `execution_time` INT NOT NULL,\n" +
                 "    `success` BOOL NOT NULL,\n" +
                 "    CONSTRAINT " + getConstraintName(table.getName()) + " PRIMARY KEY (`installed_rank`)\n" +
-                ")" + tablespace + " ENGINE=InnoDB" +
+                ")" + getHistoryTableOptions() +
                 baselineMarker +
                 ";\n" +
                 "CREATE INDEX `" + table.getName() + "_s_idx` ON " + table + " (`success`);";
     }
 
+    /**
+     * The table options of the schema history table. Its primary key is clustered in OceanBase, so the reads Flyway
+     * orders by installed_rank are served by the table itself and need no covering index.
+     */
+    private String getHistoryTableOptions() {
+        OceanBaseConfigurationExtension extension = getConfigurationExtension();
+        StringBuilder options = new StringBuilder();
+        if (configuration.getTablespace() != null) {
+            options.append(" TABLESPACE ").append(doQuote(configuration.getTablespace()));
+        }
+        if (extension.getHistoryTableGroup() != null) {
+            options.append(" TABLEGROUP = ").append(doQuote(extension.getHistoryTableGroup()));
+        }
+        appendStringOption(options, "PRIMARY_ZONE", extension.getHistoryTablePrimaryZone());
+        appendStringOption(options, "LOCALITY", extension.getHistoryTableLocality());
+        appendStringOption(options, "COMPRESSION", extension.getHistoryTableCompression());
+        appendStringOption(options, "DUPLICATE_SCOPE", extension.getHistoryTableDuplicateScope());
+        return options.toString();
+    }
+
+    private static void appendStringOption(StringBuilder options, String name, String value) {
+        if (value != null) {
+            options.append(" ").append(name).append(" = '").append(value.replace("'", "''")).append("'");
+        }
+    }
+
     protected String getConstraintName(String tableName) {
         return "`" + tableName + "_pk`";
     }
@@ -186,7 +304,7 @@ public class OceanBaseDatabase extends Database<OceanBaseConnection> {
 
     @Override
     public boolean useSingleConnection() {
-        return !pxcStrict;
+        return true;
     }
 
     @Override
@@ -207,12 +325,6 @@ public class OceanBaseDatabase extends Database<OceanBaseConnection> {
 
     @Override
     protected MigrationVersion determineVersion() {
-        String versionNumber;
-        try {
-            versionNumber = OceanBaseJdbcUtils.getVersionNumber(rawMainJdbcConnection);
-        } catch (SQLException e) {
-            throw new FlywayException("Failed to get version number", e);
-        }
-        return MigrationVersion.fromVersion(versionNumber);
+        return getOceanBaseVersion().toMigrationVersion();
     }
 }
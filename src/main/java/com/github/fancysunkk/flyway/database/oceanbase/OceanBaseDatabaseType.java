@@ -1,10 +1,13 @@
 package com.github.fancysunkk.flyway.database.oceanbase;
 
 import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.callback.CallbackExecutor;
 import org.flywaydb.core.internal.database.base.Database;
 import org.flywaydb.core.internal.database.mysql.MySQLDatabaseType;
 import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutorFactory;
 import org.flywaydb.core.internal.util.ClassUtils;
 
 import java.sql.Connection;
@@ -59,13 +62,11 @@ public class OceanBaseDatabaseType extends MySQLDatabaseType  {
             return false;
         }
 
-        String versionComment;
         try {
-            versionComment = OceanBaseJdbcUtils.getVersionComment(connection);
+            return OceanBaseJdbcUtils.getVersion(connection) != null;
         } catch (SQLException e) {
             return false;
         }
-        return versionComment != null && versionComment.contains("OceanBase");
     }
 
     @Override
@@ -73,4 +74,21 @@ public class OceanBaseDatabaseType extends MySQLDatabaseType  {
         return new OceanBaseDatabase(configuration, jdbcConnectionFactory, statementInterceptor);
     }
 
+    @Override
+    public SqlScriptExecutorFactory createSqlScriptExecutorFactory(JdbcConnectionFactory jdbcConnectionFactory,
+                                                                   CallbackExecutor callbackExecutor,
+                                                                   StatementInterceptor statementInterceptor) {
+        // Batching is not supported by Flyway's community edition, so it is never enabled
+        return (connection, undo, batch, outputQueryResults) -> {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(connection, this);
+            OceanBaseStatementProfile profile = OceanBaseStatementProfile.current();
+            if (profile == null) {
+                return new OceanBaseSqlScriptExecutor(jdbcTemplate, callbackExecutor, undo, outputQueryResults,
+                        statementInterceptor);
+            }
+            return new OceanBaseProfilingSqlScriptExecutor(jdbcTemplate, callbackExecutor, undo, outputQueryResults,
+                    statementInterceptor, profile);
+        };
+    }
+
 }
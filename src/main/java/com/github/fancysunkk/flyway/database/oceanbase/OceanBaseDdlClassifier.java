@@ -0,0 +1,358 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tells how costly a DDL statement is for OceanBase before it is executed. Most ALTER TABLE clauses only change
+ * metadata or build an index in the background, but some make OceanBase rewrite the whole table ("offline DDL"), during
+ * which writes to it are blocked. What is offline depends on the server version: adding a column in the middle of a
+ * table is online from 4.2, and before 4.0 offline DDL is not supported at all.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseDdlClassifier {
+    private static final Pattern ALTER_TABLE = Pattern.compile("^ALTER\\s+(?:(?:ONLINE|OFFLINE|IGNORE)\\s+)*TABLE\\s+"
+            + "((?:`[^`]+`|[\\w$]+)(?:\\s*\\.\\s*(?:`[^`]+`|[\\w$]+))?)\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^CREATE\\s+(?:UNIQUE\\s+|FULLTEXT\\s+|SPATIAL\\s+)?INDEX\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DROP_INDEX = Pattern.compile("^DROP\\s+INDEX\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final String CONSTRAINT = "^ADD\\s+(?:CONSTRAINT(?:\\s+(?!PRIMARY|UNIQUE|FOREIGN|CHECK)\\S+)?\\s+)?";
+    private static final Pattern ADD_PRIMARY_KEY = Pattern.compile(CONSTRAINT + "PRIMARY\\s+KEY\\b");
+    private static final Pattern ADD_INDEX = Pattern.compile(
+            CONSTRAINT + "(?:(?:UNIQUE|FULLTEXT|SPATIAL)\\s+)?(?:INDEX|KEY)\\b|" + CONSTRAINT + "UNIQUE\\b");
+    private static final Pattern ADD_FOREIGN_KEY = Pattern.compile(CONSTRAINT + "FOREIGN\\s+KEY\\b");
+    private static final Pattern ADD_CHECK = Pattern.compile(CONSTRAINT + "CHECK\\b");
+    private static final Pattern PARTITION_MAINTENANCE = Pattern.compile(
+            "^(?:ADD|DROP|TRUNCATE|REORGANIZE|EXCHANGE|COALESCE|SPLIT)\\s+(?:SUB)?PARTITION\\b");
+    private static final Pattern REPARTITION = Pattern.compile("^(?:PARTITION\\s+BY|REMOVE\\s+PARTITIONING)\\b");
+    private static final Pattern DROP_PRIMARY_KEY = Pattern.compile("^DROP\\s+PRIMARY\\s+KEY\\b");
+    private static final Pattern DROP_CONSTRAINT = Pattern.compile(
+            "^DROP\\s+(?:INDEX|KEY|FOREIGN\\s+KEY|CONSTRAINT|CHECK)\\b");
+    private static final Pattern ALTER_DEFAULT = Pattern.compile("^ALTER\\s+(?:COLUMN\\s+)?\\S+\\s+(?:SET|DROP)\\s+DEFAULT\\b");
+    private static final Pattern REBUILD = Pattern.compile("^(?:FORCE|ORDER\\s+BY|CONVERT\\s+TO)\\b");
+    private static final Pattern COLUMN_POSITION = Pattern.compile("\\b(?:FIRST|AFTER|BEFORE)\\b");
+    private static final Pattern MODIFY_COLUMN = Pattern.compile(
+            "^MODIFY\\s+(?:COLUMN\\s+)?(`[^`]+`|[\\w$]+)\\s+(\\w+(?:\\s*\\([^)]*\\))?(?:\\s+UNSIGNED)?)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHANGE_COLUMN = Pattern.compile(
+            "^CHANGE\\s+(?:COLUMN\\s+)?(`[^`]+`|[\\w$]+)\\s+(?:`[^`]+`|[\\w$]+)\\s+(\\w+(?:\\s*\\([^)]*\\))?(?:\\s+UNSIGNED)?)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern LENGTH = Pattern.compile("^(\\w+)\\((\\d+)\\)$");
+    private static final Pattern INTEGER_DISPLAY_WIDTH = Pattern.compile("^(tinyint|smallint|mediumint|int|bigint)\\(\\d+\\)");
+    private static final List<String> INTEGERS = Arrays.asList("tinyint", "smallint", "mediumint", "int", "bigint");
+
+    /**
+     * The cost of a DDL statement for the table it changes.
+     */
+    public enum CostClass {
+        /**
+         * Only the table's metadata changes.
+         */
+        INSTANT,
+
+        /**
+         * Data is read or written in the background, such as to build an index, while the table remains writable.
+         */
+        ONLINE,
+
+        /**
+         * The table is rewritten and writes to it are blocked until the statement completes.
+         */
+        OFFLINE
+    }
+
+    /**
+     * The expected cost of a statement, with the clause that determines it.
+     */
+    @Getter
+    public static class Classification {
+        private final CostClass costClass;
+        private final String reason;
+
+        Classification(CostClass costClass, String reason) {
+            this.costClass = costClass;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return costClass + " (" + reason + ")";
+        }
+    }
+
+    /**
+     * Looks up the current type of a column, such as {@code varchar(64)}.
+     */
+    public interface ColumnTypes {
+        /**
+         * @param table  The table, possibly qualified with its schema, in lower case.
+         * @param column The column, in lower case.
+         * @return The type of the column, or {@code null} if unknown.
+         */
+        String get(String table, String column);
+    }
+
+    private final OceanBaseVersion version;
+
+    /**
+     * Creates a new classifier.
+     *
+     * @param version The version of the server the statements are executed on.
+     */
+    public OceanBaseDdlClassifier(OceanBaseVersion version) {
+        this.version = version;
+    }
+
+    /**
+     * Classifies this statement.
+     *
+     * @param sql         The statement.
+     * @param columnTypes The current column types, used to tell whether a column change rewrites the table, or
+     *                    {@code null} to assume that it does.
+     * @return The expected cost, or {@code null} if the statement is not an ALTER TABLE, CREATE INDEX or DROP INDEX.
+     */
+    public Classification classify(String sql, ColumnTypes columnTypes) {
+        String keyword = OceanBaseSessionTracker.firstKeyword(sql);
+        if (!"ALTER".equals(keyword) && !"CREATE".equals(keyword) && !"DROP".equals(keyword)) {
+            return null;
+        }
+        String statement = stripComments(sql).trim();
+        if (CREATE_INDEX.matcher(statement).find()) {
+            return new Classification(CostClass.ONLINE, "builds an index");
+        }
+        if (DROP_INDEX.matcher(statement).find()) {
+            return new Classification(CostClass.INSTANT, "drops an index");
+        }
+        Matcher alterTable = ALTER_TABLE.matcher(statement);
+        if (!alterTable.find()) {
+            return null;
+        }
+        String table = alterTable.group(1).replace("`", "").replaceAll("\\s", "").toLowerCase(Locale.ENGLISH);
+        Classification result = null;
+        for (String clause : splitClauses(statement.substring(alterTable.end()))) {
+            Classification classification = classifyClause(clause, table, columnTypes);
+            if (classification != null && (result == null || classification.costClass.compareTo(result.costClass) > 0)) {
+                result = classification;
+            }
+        }
+        if (result == null) {
+            return new Classification(CostClass.INSTANT, "changes table options");
+        }
+        if (result.costClass == CostClass.OFFLINE && version.getMajor() < 4) {
+            return new Classification(CostClass.OFFLINE, result.reason + ", which OceanBase " + version.getVersionNumber()
+                    + " does not support online");
+        }
+        return result;
+    }
+
+    private Classification classifyClause(String clause, String table, ColumnTypes columnTypes) {
+        String c = clause.replaceAll("'(?:[^'\\\\]|\\\\.|'')*'", "''").replaceAll("\\s+", " ").trim()
+                .toUpperCase(Locale.ENGLISH);
+        if (c.isEmpty() || c.startsWith("ALGORITHM") || c.startsWith("LOCK")) {
+            return null;
+        }
+        if (ADD_PRIMARY_KEY.matcher(c).find()) {
+            return new Classification(CostClass.OFFLINE, "adds a primary key");
+        }
+        if (DROP_PRIMARY_KEY.matcher(c).find()) {
+            return new Classification(CostClass.OFFLINE, "drops the primary key");
+        }
+        if (ADD_INDEX.matcher(c).find()) {
+            return new Classification(CostClass.ONLINE, "builds an index");
+        }
+        if (ADD_FOREIGN_KEY.matcher(c).find()) {
+            return new Classification(CostClass.ONLINE, "validates a foreign key");
+        }
+        if (ADD_CHECK.matcher(c).find()) {
+            return new Classification(CostClass.ONLINE, "validates a check constraint");
+        }
+        if (PARTITION_MAINTENANCE.matcher(c).find()) {
+            return new Classification(CostClass.ONLINE, "maintains partitions");
+        }
+        if (REPARTITION.matcher(c).find()) {
+            return new Classification(CostClass.OFFLINE, "repartitions the table");
+        }
+        if (c.startsWith("ADD ")) {
+            return classifyAddColumn(c);
+        }
+        if (DROP_CONSTRAINT.matcher(c).find()) {
+            return new Classification(CostClass.INSTANT, "drops an index or constraint");
+        }
+        if (c.startsWith("DROP ")) {
+            return new Classification(CostClass.OFFLINE, "drops a column");
+        }
+        if (c.startsWith("MODIFY ") || c.startsWith("CHANGE ")) {
+            return classifyColumnChange(clause.trim(), c, table, columnTypes);
+        }
+        if (ALTER_DEFAULT.matcher(c).find() || c.startsWith("ALTER INDEX") || c.startsWith("RENAME")) {
+            return new Classification(CostClass.INSTANT, "changes metadata");
+        }
+        if (REBUILD.matcher(c).find()) {
+            return new Classification(CostClass.OFFLINE, c.startsWith("CONVERT")
+                    ? "converts the character set of every row" : "rebuilds the table");
+        }
+        return null;
+    }
+
+    private Classification classifyAddColumn(String c) {
+        if (c.matches(".*\\bAUTO_INCREMENT\\b.*") || c.matches(".*\\bPRIMARY\\s+KEY\\b.*")) {
+            return new Classification(CostClass.OFFLINE, "adds a key column");
+        }
+        if (c.matches(".*\\bSTORED\\b.*")) {
+            return new Classification(CostClass.OFFLINE, "adds a stored generated column");
+        }
+        if (COLUMN_POSITION.matcher(c).find()) {
+            return version.isAtLeast(4, 2, 0)
+                    ? new Classification(CostClass.ONLINE, "adds a column in the middle of the table")
+                    : new Classification(CostClass.OFFLINE, "adds a column in the middle of the table");
+        }
+        return new Classification(CostClass.INSTANT, "adds a column at the end of the table");
+    }
+
+    private Classification classifyColumnChange(String clause, String c, String table, ColumnTypes columnTypes) {
+        Matcher matcher = (c.startsWith("MODIFY ") ? MODIFY_COLUMN : CHANGE_COLUMN).matcher(clause);
+        if (!matcher.find()) {
+            return new Classification(CostClass.OFFLINE, "changes a column");
+        }
+        String column = matcher.group(1).replace("`", "").toLowerCase(Locale.ENGLISH);
+        if (COLUMN_POSITION.matcher(c).find()) {
+            return new Classification(CostClass.OFFLINE, "moves column " + column);
+        }
+        String current = columnTypes == null ? null : columnTypes.get(table, column);
+        if (current == null) {
+            return new Classification(CostClass.OFFLINE, "changes column " + column + " whose current type is unknown");
+        }
+        String oldType = normalizeType(current);
+        String newType = normalizeType(matcher.group(2));
+        if (oldType.equals(newType)) {
+            return new Classification(CostClass.INSTANT, "changes attributes of column " + column);
+        }
+        Matcher oldLength = LENGTH.matcher(oldType);
+        Matcher newLength = LENGTH.matcher(newType);
+        if (oldLength.matches() && newLength.matches() && oldLength.group(1).equals(newLength.group(1))
+                && (oldLength.group(1).equals("varchar") || oldLength.group(1).equals("varbinary"))
+                && Integer.parseInt(newLength.group(2)) >= Integer.parseInt(oldLength.group(2))) {
+            return new Classification(CostClass.INSTANT, "widens column " + column);
+        }
+        String[] oldInteger = oldType.split(" ");
+        String[] newInteger = newType.split(" ");
+        if (INTEGERS.contains(oldInteger[0]) && INTEGERS.contains(newInteger[0]) && oldInteger.length == newInteger.length
+                && INTEGERS.indexOf(newInteger[0]) >= INTEGERS.indexOf(oldInteger[0])) {
+            return new Classification(CostClass.ONLINE, "widens integer column " + column);
+        }
+        return new Classification(CostClass.OFFLINE, "changes column " + column + " from " + oldType + " to " + newType);
+    }
+
+    /**
+     * @return The type in lower case without spaces before its length or the display width of integers, such as
+     * {@code bigint unsigned} or {@code varchar(64)}.
+     */
+    static String normalizeType(String type) {
+        String normalized = type.toLowerCase(Locale.ENGLISH).replaceAll("\\s*\\(\\s*", "(").replaceAll("\\s*\\)", ")")
+                .replaceAll("\\s*,\\s*", ",").replaceAll("\\s+", " ").trim();
+        if (normalized.startsWith("integer")) {
+            normalized = "int" + normalized.substring("integer".length());
+        }
+        return INTEGER_DISPLAY_WIDTH.matcher(normalized).replaceFirst("$1");
+    }
+
+    /**
+     * @return The clauses of this ALTER TABLE, split on the commas outside parentheses, quotes and backticks.
+     */
+    private static List<String> splitClauses(String clauses) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < clauses.length(); i++) {
+            char ch = clauses.charAt(i);
+            if (quote != 0) {
+                if (ch == '\\' && quote != '`') {
+                    i++;
+                } else if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '\'' || ch == '"' || ch == '`') {
+                quote = ch;
+            } else if (ch == '(') {
+                depth++;
+            } else if (ch == ')') {
+                depth--;
+            } else if (ch == ',' && depth == 0) {
+                result.add(clauses.substring(start, i));
+                start = i + 1;
+            }
+        }
+        result.add(clauses.substring(start));
+        return result;
+    }
+
+    /**
+     * @return The statement without its comments, other than the executable {@code /*!} ones.
+     */
+    private static String stripComments(String sql) {
+        StringBuilder result = new StringBuilder(sql.length());
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                result.append(ch);
+                if (ch == '\\' && quote != '`' && i + 1 < sql.length()) {
+                    result.append(sql.charAt(++i));
+                } else if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '\'' || ch == '"' || ch == '`') {
+                quote = ch;
+                result.append(ch);
+            } else if (ch == '/' && sql.startsWith("/*", i) && !sql.startsWith("/*!", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 1;
+                result.append(' ');
+            } else if (ch == '#' || (ch == '-' && sql.startsWith("-- ", i))) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end;
+                result.append(' ');
+            } else {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Looks up column types in {@code information_schema.columns} over this connection, in the current schema for
+     * unqualified tables.
+     *
+     * @param connection The connection.
+     * @return The column types.
+     */
+    static ColumnTypes columnTypes(Connection connection) {
+        return (table, column) -> {
+            int dot = table.indexOf('.');
+            try (PreparedStatement query = connection.prepareStatement("SELECT column_type FROM information_schema.columns"
+                    + " WHERE table_schema = COALESCE(?, DATABASE()) AND LOWER(table_name) = ? AND LOWER(column_name) = ?")) {
+                query.setString(1, dot < 0 ? null : table.substring(0, dot));
+                query.setString(2, table.substring(dot + 1));
+                query.setString(3, column);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    return resultSet.next() ? resultSet.getString(1) : null;
+                }
+            } catch (SQLException e) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,298 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.internal.jdbc.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Watches the index builds and table alterations executed on a connection. While such a statement runs, the session's
+ * {@code ob_query_timeout} is raised to the configured DDL timeout so that the server does not abort the build, and
+ * its progress is read from {@code GV$SESSION_LONGOPS} over a separate connection and logged with an estimated time
+ * remaining.
+ * <p>
+ * Only statements that {@link OceanBaseDdlClassifier} does not expect to complete instantly are watched, so that
+ * renames, column additions at the end of a table and other metadata changes execute without extra round trips.
+ * Column type changes are watched, as telling whether they rewrite the table would take a round trip of its own.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseDdlMonitor implements OceanBaseStatementListener {
+    private static final Pattern INDEX_NAME = Pattern.compile(
+            "\\b(?:INDEX|KEY)\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(`[^`]+`|[\\w$]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROWS = Pattern.compile("ROW_(SCANNED|INSERTED)\\s*:\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    private static final ScheduledThreadPoolExecutor POLLER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "flyway-oceanbase-ddl-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        POLLER.setKeepAliveTime(1, TimeUnit.MINUTES);
+        POLLER.allowCoreThreadTimeOut(true);
+        POLLER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final OceanBaseDatabase database;
+    private final Connection connection;
+    private final long timeoutMicros;
+    private final int progressInterval;
+
+    /**
+     * The session's own {@code ob_query_timeout} in microseconds, {@code null} if not read yet, or a negative value if
+     * it cannot be changed on this server.
+     */
+    private Long originalTimeout;
+    private Progress progress;
+    private OceanBaseDdlClassifier classifier;
+
+    /**
+     * Creates a new monitor.
+     *
+     * @param database   The database-specific support, used to open the connection progress is read over.
+     * @param connection The raw connection the watched statements are executed on.
+     */
+    OceanBaseDdlMonitor(OceanBaseDatabase database, Connection connection) {
+        OceanBaseConfigurationExtension extension = database.getConfigurationExtension();
+        this.database = database;
+        this.connection = connection;
+        this.timeoutMicros = extension.getDdlTimeout() * 1_000_000L;
+        this.progressInterval = extension.getDdlProgressInterval();
+    }
+
+    @Override
+    public void beforeExecute(String sql) {
+        String keyword = OceanBaseSessionTracker.firstKeyword(sql);
+        if (("SET".equals(keyword) && sql.toLowerCase(Locale.ENGLISH).contains("ob_query_timeout"))
+                || sql.contains(OceanBaseSessionProfile.MARKER)) {
+            // The session's own timeout, which is the one to restore after DDL, changes
+            if (originalTimeout != null && originalTimeout >= 0) {
+                originalTimeout = null;
+            }
+        }
+        if (progress != null || !("CREATE".equals(keyword) || "ALTER".equals(keyword)) || !isLong(sql)) {
+            return;
+        }
+        extendTimeout();
+        progress = new Progress(sql, currentSchema());
+        if (progressInterval > 0) {
+            progress.future = POLLER.scheduleWithFixedDelay(progress::poll, progressInterval, progressInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void afterExecute(String sql) {
+        if (progress == null || !progress.sql.equals(sql)) {
+            return;
+        }
+        progress.stop();
+        progress = null;
+        restoreTimeout();
+    }
+
+    /**
+     * @return Whether this statement builds an index or otherwise reads or rewrites the table's rows.
+     */
+    private boolean isLong(String sql) {
+        if (classifier == null) {
+            classifier = new OceanBaseDdlClassifier(database.getOceanBaseVersion());
+        }
+        return isLong(classifier, sql);
+    }
+
+    /**
+     * @param classifier The classifier for the server's version.
+     * @return Whether this statement builds an index or otherwise reads or rewrites the table's rows.
+     */
+    static boolean isLong(OceanBaseDdlClassifier classifier, String sql) {
+        OceanBaseDdlClassifier.Classification classification = classifier.classify(sql, null);
+        return classification != null && classification.getCostClass() != OceanBaseDdlClassifier.CostClass.INSTANT;
+    }
+
+    private void extendTimeout() {
+        if (timeoutMicros <= 0) {
+            return;
+        }
+        if (originalTimeout == null) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT @@ob_query_timeout")) {
+                originalTimeout = resultSet.next() ? resultSet.getLong(1) : -1;
+            } catch (SQLException e) {
+                LOG.debug("Unable to read ob_query_timeout, DDL timeouts will not be extended: " + e.getMessage());
+                originalTimeout = -1L;
+            }
+        }
+        if (originalTimeout >= 0 && originalTimeout < timeoutMicros) {
+            setTimeout(timeoutMicros);
+        }
+    }
+
+    private void restoreTimeout() {
+        if (timeoutMicros > 0 && originalTimeout != null && originalTimeout >= 0 && originalTimeout < timeoutMicros) {
+            setTimeout(originalTimeout);
+        }
+    }
+
+    private String currentSchema() {
+        try {
+            return connection.getCatalog();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private void setTimeout(long micros) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET ob_query_timeout = " + micros);
+        } catch (SQLException e) {
+            LOG.warn("Unable to set ob_query_timeout to " + micros + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The name of the index this statement builds, in lower case, or {@code null} if it does not build one.
+     */
+    static String indexName(String sql) {
+        Matcher matcher = INDEX_NAME.matcher(sql);
+        return matcher.find() ? matcher.group(1).replace("`", "").toLowerCase(Locale.ENGLISH) : null;
+    }
+
+    /**
+     * @return The estimated completion in percent from the figures of a progress row, or a negative value if they do
+     * not allow an estimate.
+     */
+    static double percentComplete(long elapsedSeconds, long remainingSeconds, String message, long tableRows) {
+        if (remainingSeconds > 0) {
+            return 100.0 * elapsedSeconds / (elapsedSeconds + remainingSeconds);
+        }
+        if (message == null || tableRows <= 0) {
+            return -1;
+        }
+        // An index build scans every row, then inserts every row into the index once they are sorted
+        long done = 0;
+        Matcher matcher = ROWS.matcher(message);
+        while (matcher.find()) {
+            done += Long.parseLong(matcher.group(2));
+        }
+        return done == 0 ? -1 : Math.min(99.9, 50.0 * done / tableRows);
+    }
+
+    /**
+     * The progress of one statement, polled on the shared poller thread.
+     */
+    private class Progress {
+        private final String sql;
+        private final String schema;
+        private final String table;
+        private final String index;
+        private final long start = System.nanoTime();
+        private ScheduledFuture<?> future;
+        private Connection pollConnection;
+        private boolean viewUnavailable;
+        private boolean stopped;
+        private Long tableRows;
+
+        Progress(String sql, String currentSchema) {
+            this.sql = sql;
+            String target = OceanBaseParallelDdl.targetTable(sql, null);
+            int dot = target.lastIndexOf('.');
+            this.schema = dot < 0 ? currentSchema : target.substring(0, dot);
+            this.table = target.substring(dot + 1);
+            this.index = indexName(sql);
+        }
+
+        synchronized void poll() {
+            if (stopped) {
+                return;
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000_000L;
+            String description = index == null ? "ALTER TABLE " + table : "index " + index + " on " + table;
+            if (!viewUnavailable) {
+                try {
+                    if (pollConnection == null) {
+                        pollConnection = database.openConnection();
+                        if (schema != null) {
+                            pollConnection.setCatalog(schema);
+                        }
+                    }
+                    if (report(description, elapsed)) {
+                        return;
+                    }
+                } catch (RuntimeException | SQLException e) {
+                    LOG.debug("Unable to read DDL progress, only the elapsed time is reported: " + e.getMessage());
+                    viewUnavailable = true;
+                }
+            }
+            LOG.info("Building " + description + ": running for " + formatSeconds(elapsed));
+        }
+
+        private boolean report(String description, long elapsed) throws SQLException {
+            try (PreparedStatement query = pollConnection.prepareStatement(
+                    "SELECT ELAPSED_SECONDS, TIME_REMAINING, MESSAGE FROM oceanbase.GV$SESSION_LONGOPS"
+                            + " WHERE LOWER(TARGET) IN (?, ?) ORDER BY ELAPSED_SECONDS DESC")) {
+                query.setString(1, index == null ? table : index);
+                query.setString(2, table);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    long remaining = resultSet.getLong(2);
+                    String message = resultSet.getString(3);
+                    if (remaining <= 0 && tableRows == null) {
+                        tableRows = estimateRows();
+                    }
+                    double percent = percentComplete(elapsed, remaining, message, tableRows == null ? 0 : tableRows);
+                    if (percent <= 0) {
+                        return false;
+                    }
+                    long eta = remaining > 0 ? remaining : (long) (elapsed * (100 - percent) / percent);
+                    LOG.info(String.format(Locale.ENGLISH, "Building %s: %.1f%% complete, about %s remaining (running for %s)",
+                            description, percent, formatSeconds(eta), formatSeconds(elapsed)));
+                    return true;
+                }
+            }
+        }
+
+        private long estimateRows() throws SQLException {
+            try (PreparedStatement query = pollConnection.prepareStatement("SELECT table_rows FROM information_schema.tables"
+                    + " WHERE table_schema = DATABASE() AND LOWER(table_name) = ?")) {
+                query.setString(1, table);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0;
+                }
+            }
+        }
+
+        synchronized void stop() {
+            if (future != null) {
+                future.cancel(false);
+            }
+            JdbcUtils.closeConnection(pollConnection);
+            pollConnection = null;
+            stopped = true;
+        }
+    }
+
+    private static String formatSeconds(long seconds) {
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        if (seconds < 3600) {
+            return seconds / 60 + "m " + seconds % 60 + "s";
+        }
+        return seconds / 3600 + "h " + seconds / 60 % 60 + "m";
+    }
+}
@@ -0,0 +1,393 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import lombok.Getter;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationType;
+import org.flywaydb.core.api.ResourceProvider;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.flywaydb.core.internal.database.DatabaseType;
+import org.flywaydb.core.internal.database.base.Database;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.parser.ParsingContext;
+import org.flywaydb.core.internal.sqlscript.SqlScriptFactory;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlStatementIterator;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reports the cost of the DML statements of pending migrations before they are applied. Every INSERT, UPDATE, DELETE,
+ * REPLACE and MERGE of the pending SQL migrations is explained on the target database, and the statements are ranked
+ * by the estimated cost of their plan, with their estimated rows, full table scans and parallel execution. Statements
+ * exceeding the {@code flyway.oceanbase.explain.*} thresholds fail the report. The ALTER TABLE, CREATE INDEX and DROP
+ * INDEX statements are listed with their {@link OceanBaseDdlClassifier.CostClass}, and offline ones fail the report
+ * when the {@code flyway.oceanbase.ddl.offlinePolicy} is {@link OceanBaseOfflineDdlPolicy#FAIL}.
+ * <pre>
+ * OceanBaseExplainAnalyzer.Report report = new OceanBaseExplainAnalyzer(Flyway.configure()
+ *         .dataSource(url, user, password)
+ *         .locations("db/migration")).analyze();
+ * </pre>
+ * Statements on tables that only a pending migration creates cannot be explained, and are listed as such.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseExplainAnalyzer {
+    private final Configuration configuration;
+
+    /**
+     * Creates a new analyzer.
+     *
+     * @param configuration The configuration of the migrations to analyze.
+     */
+    public OceanBaseExplainAnalyzer(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Explains the DML statements of the pending migrations and logs the most expensive ones.
+     *
+     * @return The report.
+     * @throws FlywayException if a statement exceeds a configured threshold.
+     */
+    public Report analyze() {
+        MigrationInfo[] pending = new Flyway(configuration).info().pending();
+        ResourceProvider resourceProvider = OceanBaseScanner.getResourceProvider(configuration);
+        OceanBaseConfigurationExtension extension;
+        List<Entry> entries = new ArrayList<>();
+
+        JdbcConnectionFactory jdbcConnectionFactory = new JdbcConnectionFactory(configuration.getDataSource(), configuration, null);
+        DatabaseType databaseType = jdbcConnectionFactory.getDatabaseType();
+        if (!(databaseType instanceof OceanBaseDatabaseType)) {
+            throw new FlywayException("Unable to explain pending migrations on " + databaseType.getName()
+                    + ": only OceanBase execution plans are supported");
+        }
+        try (Database<?> database = databaseType.createDatabase(configuration, false, jdbcConnectionFactory, null)) {
+            OceanBaseDatabase oceanBaseDatabase = (OceanBaseDatabase) database;
+            extension = oceanBaseDatabase.getConfigurationExtension();
+            OceanBaseConnection connection = oceanBaseDatabase.getMainConnection();
+            String defaultSchema = configuration.getDefaultSchema() != null ? configuration.getDefaultSchema()
+                    : configuration.getSchemas().length > 0 ? configuration.getSchemas()[0] : null;
+            if (defaultSchema != null) {
+                connection.changeCurrentSchemaTo(connection.getSchema(defaultSchema));
+            }
+
+            ParsingContext parsingContext = new ParsingContext();
+            parsingContext.populate(database, configuration);
+            SqlScriptFactory sqlScriptFactory = databaseType.createSqlScriptFactory(configuration, parsingContext);
+            Explainer explainer = new Explainer(connection.getJdbcTemplate(), extension,
+                    new OceanBaseDdlClassifier(oceanBaseDatabase.getOceanBaseVersion()));
+            for (MigrationInfo migration : pending) {
+                if (migration.getType() != MigrationType.SQL) {
+                    LOG.debug("Not explaining " + migration.getScript() + ": only SQL migrations can be explained");
+                    continue;
+                }
+                LoadableResource resource = resourceProvider.getResource(migration.getScript());
+                if (resource == null) {
+                    LOG.warn("Not explaining " + migration.getScript() + ": script not found");
+                    continue;
+                }
+                try (SqlStatementIterator statements = sqlScriptFactory
+                        .createSqlScript(resource, configuration.isMixed(), resourceProvider).getSqlStatements()) {
+                    while (statements.hasNext()) {
+                        SqlStatement statement = statements.next();
+                        String sql = statement.getSql();
+                        if (OceanBaseStatementCategory.of(sql) == OceanBaseStatementCategory.DML
+                                && !"LOAD".equals(OceanBaseSessionTracker.firstKeyword(sql))) {
+                            entries.add(explainer.explain(migration.getScript(), statement.getLineNumber(), sql));
+                        } else {
+                            Entry entry = explainer.classify(migration.getScript(), statement.getLineNumber(), sql);
+                            if (entry != null) {
+                                entries.add(entry);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        Report report = new Report(pending.length, entries, extension.getExplainTop());
+        LOG.info(report.format());
+        if (!report.getViolations().isEmpty()) {
+            StringBuilder message = new StringBuilder(report.getViolations().size()
+                    + " pending statements exceed the EXPLAIN thresholds or are refused offline DDL:");
+            for (Entry entry : report.getViolations()) {
+                message.append("\n").append(entry.getLocation()).append(": ").append(String.join(", ", entry.getViolations()));
+            }
+            throw new FlywayException(message.toString());
+        }
+        return report;
+    }
+
+    /**
+     * Explains statements on one connection, looking up the size of every fully scanned table once.
+     */
+    private static class Explainer {
+        private final JdbcTemplate jdbcTemplate;
+        private final OceanBaseConfigurationExtension extension;
+        private final OceanBaseDdlClassifier classifier;
+        private final Map<String, Long> tableRows = new HashMap<>();
+
+        Explainer(JdbcTemplate jdbcTemplate, OceanBaseConfigurationExtension extension, OceanBaseDdlClassifier classifier) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.extension = extension;
+            this.classifier = classifier;
+        }
+
+        /**
+         * @return The entry of this DDL statement, or {@code null} if it is not a statement the classifier knows.
+         */
+        Entry classify(String script, int lineNumber, String sql) {
+            OceanBaseDdlClassifier.Classification classification =
+                    classifier.classify(sql, OceanBaseDdlClassifier.columnTypes(jdbcTemplate.getConnection()));
+            if (classification == null) {
+                return null;
+            }
+            Entry entry = new Entry(script, lineNumber, sql, null, Collections.emptyMap(), null, classification);
+            if (classification.getCostClass() == OceanBaseDdlClassifier.CostClass.OFFLINE
+                    && extension.getDdlOfflinePolicy() == OceanBaseOfflineDdlPolicy.FAIL
+                    && !sql.contains(OceanBaseOfflineDdlGuard.MARKER)) {
+                entry.violations.add("offline DDL: " + classification.getReason());
+            }
+            return entry;
+        }
+
+        Entry explain(String script, int lineNumber, String sql) {
+            OceanBaseExplainPlan plan;
+            try {
+                plan = OceanBaseExplainPlan.parse(String.join("\n", jdbcTemplate.queryForStringList("EXPLAIN " + sql)));
+            } catch (SQLException | FlywayException e) {
+                return new Entry(script, lineNumber, sql, null, Collections.emptyMap(), e.getMessage(), null);
+            }
+            Map<String, Long> fullScans = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> scan : plan.getFullScans().entrySet()) {
+                fullScans.put(scan.getKey(), Math.max(scan.getValue(), tableRows(scan.getKey())));
+            }
+            Entry entry = new Entry(script, lineNumber, sql, plan, fullScans, null, null);
+            if (extension.getExplainMaxRows() > 0 && plan.getEstimatedRows() > extension.getExplainMaxRows()) {
+                entry.violations.add("estimated rows " + plan.getEstimatedRows() + " > " + extension.getExplainMaxRows());
+            }
+            if (extension.getExplainMaxCost() > 0 && plan.getCost() > extension.getExplainMaxCost()) {
+                entry.violations.add("cost " + plan.getCost() + " > " + extension.getExplainMaxCost());
+            }
+            if (extension.getExplainMaxFullScanRows() > 0) {
+                for (Map.Entry<String, Long> scan : fullScans.entrySet()) {
+                    if (scan.getValue() > extension.getExplainMaxFullScanRows()) {
+                        entry.violations.add("full scan of " + scan.getKey() + " (" + scan.getValue() + " rows) > "
+                                + extension.getExplainMaxFullScanRows());
+                    }
+                }
+            }
+            return entry;
+        }
+
+        /**
+         * @return The estimated number of rows of the table scanned as {@code name}, such as {@code orders} or
+         * {@code orders(idx_orders_user)}, or 0 if unknown.
+         */
+        private long tableRows(String name) {
+            int index = name.indexOf('(');
+            String table = (index < 0 ? name : name.substring(0, index)).replace("`", "").toLowerCase(Locale.ENGLISH);
+            return tableRows.computeIfAbsent(table, key -> {
+                try {
+                    String rows = jdbcTemplate.queryForString("SELECT table_rows FROM information_schema.tables"
+                            + " WHERE table_schema = DATABASE() AND LOWER(table_name) = ?", key);
+                    return rows == null ? 0L : Long.parseLong(rows);
+                } catch (SQLException | NumberFormatException e) {
+                    LOG.debug("Unable to estimate the rows of " + key + ": " + e.getMessage());
+                    return 0L;
+                }
+            });
+        }
+    }
+
+    /**
+     * The outcome of explaining the pending migrations.
+     */
+    @Getter
+    public static class Report {
+        private static final Comparator<Entry> MOST_EXPENSIVE_FIRST = Comparator
+                .comparingLong((Entry entry) -> entry.plan.getCost())
+                .thenComparingLong(entry -> entry.plan.getEstimatedRows())
+                .reversed();
+
+        /**
+         * The number of pending migrations.
+         */
+        private final int pendingMigrations;
+
+        /**
+         * The explained statements, most expensive first.
+         */
+        private final List<Entry> ranked;
+
+        /**
+         * The statements that could not be explained, in the order they would be executed.
+         */
+        private final List<Entry> unexplained;
+
+        /**
+         * The DDL statements with their expected cost, in the order they would be executed.
+         */
+        private final List<Entry> ddl;
+
+        /**
+         * The statements exceeding a threshold, most expensive first, followed by the refused offline DDL.
+         */
+        private final List<Entry> violations;
+
+        /**
+         * The number of statements listed by {@link #format()}.
+         */
+        private final int top;
+
+        Report(int pendingMigrations, List<Entry> entries, int top) {
+            List<Entry> ranked = new ArrayList<>();
+            List<Entry> unexplained = new ArrayList<>();
+            List<Entry> ddl = new ArrayList<>();
+            List<Entry> violations = new ArrayList<>();
+            for (Entry entry : entries) {
+                (entry.classification != null ? ddl : entry.plan == null ? unexplained : ranked).add(entry);
+            }
+            ranked.sort(MOST_EXPENSIVE_FIRST);
+            for (Entry entry : ranked) {
+                if (!entry.violations.isEmpty()) {
+                    violations.add(entry);
+                }
+            }
+            for (Entry entry : ddl) {
+                if (!entry.violations.isEmpty()) {
+                    violations.add(entry);
+                }
+            }
+            this.pendingMigrations = pendingMigrations;
+            this.ranked = Collections.unmodifiableList(ranked);
+            this.unexplained = Collections.unmodifiableList(unexplained);
+            this.ddl = Collections.unmodifiableList(ddl);
+            this.violations = Collections.unmodifiableList(violations);
+            this.top = top;
+        }
+
+        /**
+         * @return The report as text: the most expensive statements, those that could not be explained, then the DDL.
+         */
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            text.append("Explained ").append(ranked.size()).append(" of ").append(ranked.size() + unexplained.size())
+                    .append(" DML statements in ").append(pendingMigrations).append(" pending migrations");
+            for (int i = 0; i < Math.min(top, ranked.size()); i++) {
+                Entry entry = ranked.get(i);
+                OceanBaseExplainPlan plan = entry.plan;
+                text.append(String.format(Locale.ENGLISH, "%n%3d. %s  cost=%d rows=%d", i + 1, entry.getLocation(),
+                        plan.getCost(), plan.getEstimatedRows()));
+                if (plan.isParallel()) {
+                    text.append(" PX");
+                }
+                for (Map.Entry<String, Long> scan : entry.fullScans.entrySet()) {
+                    text.append(" FULL SCAN ").append(scan.getKey()).append(" (").append(scan.getValue()).append(" rows)");
+                }
+                if (!entry.violations.isEmpty()) {
+                    text.append(" EXCEEDS ").append(String.join(", ", entry.violations));
+                }
+                text.append(String.format("%n     %s", abbreviate(entry.sql)));
+            }
+            if (ranked.size() > top) {
+                text.append(String.format("%n     ... and %d more", ranked.size() - top));
+            }
+            for (Entry entry : unexplained) {
+                text.append(String.format("%nNot explained: %s: %s", entry.getLocation(), entry.error));
+            }
+            for (Entry entry : ddl) {
+                text.append(String.format("%nDDL %s: %s", entry.getLocation(), entry.classification));
+                if (!entry.violations.isEmpty()) {
+                    text.append(" REFUSED");
+                }
+                text.append(String.format("%n     %s", abbreviate(entry.sql)));
+            }
+            return text.toString();
+        }
+
+        private static String abbreviate(String sql) {
+            String line = sql.replaceAll("\\s+", " ").trim();
+            return line.length() <= 120 ? line : line.substring(0, 117) + "...";
+        }
+    }
+
+    /**
+     * An explained statement.
+     */
+    @Getter
+    public static class Entry {
+        /**
+         * The script of the migration containing the statement.
+         */
+        private final String script;
+
+        /**
+         * The line the statement starts on.
+         */
+        private final int lineNumber;
+
+        /**
+         * The statement.
+         */
+        private final String sql;
+
+        /**
+         * The plan of the statement, or {@code null} if it could not be explained.
+         */
+        private final OceanBaseExplainPlan plan;
+
+        /**
+         * The tables scanned from end to end, with the larger of the scan's estimated rows and the table's.
+         */
+        private final Map<String, Long> fullScans;
+
+        /**
+         * The reason the statement could not be explained, or {@code null} if it was.
+         */
+        private final String error;
+
+        /**
+         * The expected cost of the statement if it is DDL, or {@code null} if it is DML.
+         */
+        private final OceanBaseDdlClassifier.Classification classification;
+
+        /**
+         * The thresholds the statement exceeds.
+         */
+        private final List<String> violations = new ArrayList<>();
+
+        Entry(String script, int lineNumber, String sql, OceanBaseExplainPlan plan, Map<String, Long> fullScans, String error,
+              OceanBaseDdlClassifier.Classification classification) {
+            this.script = script;
+            this.lineNumber = lineNumber;
+            this.sql = sql;
+            this.plan = plan;
+            this.fullScans = Collections.unmodifiableMap(fullScans);
+            this.error = error;
+            this.classification = classification;
+        }
+
+        /**
+         * @return The script and line of the statement.
+         */
+        public String getLocation() {
+            return script + ":" + lineNumber;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.Getter;
+import org.flywaydb.core.api.FlywayException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The figures of an OceanBase execution plan, as printed by {@code EXPLAIN}: the plan table with one row per operator,
+ * followed by the outputs and filters of every operator.
+ * <pre>
+ * ================================================
+ * |ID|OPERATOR       |NAME  |EST.ROWS|EST.TIME(us)|
+ * ------------------------------------------------
+ * |0 |TABLE FULL SCAN|orders|100000  |5320        |
+ * ================================================
+ * </pre>
+ * Both the 4.x columns ({@code EST.ROWS}, {@code EST.TIME(us)}) and the 3.x ones ({@code EST. ROWS}, {@code COST}) are
+ * understood.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@Getter
+public class OceanBaseExplainPlan {
+    private static final Pattern OPERATOR_SECTION = Pattern.compile("^\\s*(\\d+)\\s+-\\s", Pattern.MULTILINE);
+    private static final Pattern TREE = Pattern.compile("^[^A-Za-z]+");
+    private static final Pattern FULL_RANGE = Pattern.compile(
+            "range\\(\\s*MIN[^;)]*;\\s*MAX[^)]*\\)\\s*always true", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The largest number of rows any operator is estimated to produce.
+     */
+    private final long estimatedRows;
+
+    /**
+     * The estimated cost of the whole plan, that of its root operator.
+     */
+    private final long cost;
+
+    /**
+     * The tables or indexes scanned from end to end, with the number of rows their scan is estimated to produce.
+     */
+    private final Map<String, Long> fullScans;
+
+    /**
+     * Whether the plan is executed in parallel (PX).
+     */
+    private final boolean parallel;
+
+    private OceanBaseExplainPlan(long estimatedRows, long cost, Map<String, Long> fullScans, boolean parallel) {
+        this.estimatedRows = estimatedRows;
+        this.cost = cost;
+        this.fullScans = Collections.unmodifiableMap(fullScans);
+        this.parallel = parallel;
+    }
+
+    /**
+     * Parses the output of {@code EXPLAIN}.
+     *
+     * @param text The plan, as returned by the server.
+     * @return The figures of the plan.
+     * @throws FlywayException if the text does not contain a plan table.
+     */
+    public static OceanBaseExplainPlan parse(String text) {
+        String[] lines = text.split("\\r?\\n");
+        Map<String, Integer> columns = null;
+        List<String[]> rows = new ArrayList<>();
+        int end = lines.length;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (!line.startsWith("|")) {
+                if (!rows.isEmpty() && line.startsWith("=")) {
+                    end = i + 1;
+                    break;
+                }
+                continue;
+            }
+            String[] cells = line.substring(1, line.endsWith("|") ? line.length() - 1 : line.length()).split("\\|", -1);
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int j = 0; j < cells.length; j++) {
+                    columns.put(cells[j].toUpperCase(Locale.ENGLISH).replaceAll("[^A-Z]", ""), j);
+                }
+            } else {
+                rows.add(cells);
+            }
+        }
+        if (columns == null || rows.isEmpty() || !columns.containsKey("OPERATOR")) {
+            throw new FlywayException("Unrecognized execution plan: " + text);
+        }
+        int idColumn = columns.getOrDefault("ID", -1);
+        int operatorColumn = columns.get("OPERATOR");
+        int nameColumn = columns.getOrDefault("NAME", -1);
+        int rowsColumn = columns.getOrDefault("ESTROWS", -1);
+        int costColumn = columns.containsKey("COST") ? columns.get("COST") : columns.getOrDefault("ESTTIMEUS", -1);
+
+        Map<String, String> sections = operatorSections(lines, end);
+        long estimatedRows = 0;
+        Map<String, Long> fullScans = new LinkedHashMap<>();
+        boolean parallel = false;
+        for (String[] row : rows) {
+            // 4.2 draws the tree of operators in box-drawing characters in front of their names
+            String operator = TREE.matcher(cell(row, operatorColumn)).replaceFirst("").toUpperCase(Locale.ENGLISH);
+            long operatorRows = number(cell(row, rowsColumn));
+            estimatedRows = Math.max(estimatedRows, operatorRows);
+            if (operator.startsWith("PX ") || operator.startsWith("EXCHANGE")) {
+                parallel = true;
+            }
+            String section = sections.get(cell(row, idColumn));
+            if (operator.contains("FULL SCAN") || (operator.startsWith("TABLE SCAN")
+                    && section != null && FULL_RANGE.matcher(section).find())) {
+                fullScans.merge(cell(row, nameColumn), operatorRows, Math::max);
+            }
+        }
+        return new OceanBaseExplainPlan(estimatedRows, number(cell(rows.get(0), costColumn)), fullScans, parallel);
+    }
+
+    /**
+     * @return The outputs and filters following the plan table, by operator id.
+     */
+    private static Map<String, String> operatorSections(String[] lines, int start) {
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i < lines.length; i++) {
+            text.append(lines[i]).append('\n');
+        }
+        Map<String, String> sections = new HashMap<>();
+        Matcher matcher = OPERATOR_SECTION.matcher(text);
+        String id = null;
+        int sectionStart = 0;
+        while (matcher.find()) {
+            if (id != null) {
+                sections.put(id, text.substring(sectionStart, matcher.start()));
+            }
+            id = matcher.group(1);
+            sectionStart = matcher.end();
+        }
+        if (id != null) {
+            sections.put(id, text.substring(sectionStart));
+        }
+        return sections;
+    }
+
+    private static String cell(String[] row, int column) {
+        return column >= 0 && column < row.length ? row[column].trim() : "";
+    }
+
+    private static long number(String value) {
+        if (value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(value);
+            } catch (NumberFormatException ignored) {
+                return 0;
+            }
+        }
+    }
+}
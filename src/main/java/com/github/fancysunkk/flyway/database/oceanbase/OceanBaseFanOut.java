@@ -0,0 +1,303 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import lombok.Getter;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.ClassProvider;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.ResourceProvider;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.flywaydb.core.internal.scanner.Scanner;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Migrates many tenants or schemas with the same migrations, several at a time. The locations are scanned once and
+ * every script is read once for all targets, and the server version and capabilities are probed once per server
+ * rather than once per target.
+ * <pre>
+ * List&lt;OceanBaseFanOut.Result&gt; results = new OceanBaseFanOut(Flyway.configure().locations("db/migration"), 8)
+ *         .migrate(Arrays.asList(
+ *                 new OceanBaseFanOut.Target("tenant_a", dataSourceA),
+ *                 new OceanBaseFanOut.Target("tenant_b", dataSourceB, "app")));
+ * </pre>
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseFanOut {
+    private final Configuration configuration;
+    private final int parallelism;
+    private final ResourceProvider resourceProvider;
+    private final ClassProvider<JavaMigration> javaMigrationClassProvider;
+
+    /**
+     * Creates a new fan-out.
+     *
+     * @param configuration The configuration shared by all targets. Its data source and schemas are replaced by
+     *                      those of each target.
+     * @param parallelism   The maximum number of targets migrated at the same time.
+     */
+    public OceanBaseFanOut(Configuration configuration, int parallelism) {
+        if (parallelism < 1) {
+            throw new FlywayException("Invalid fan-out parallelism (should be at least 1): " + parallelism);
+        }
+        this.configuration = configuration;
+        this.parallelism = parallelism;
+
+        ResourceProvider resources = configuration.getResourceProvider();
+        ClassProvider<JavaMigration> classes = configuration.getJavaMigrationClassProvider();
+        if (resources == null || classes == null) {
+            Scanner<JavaMigration> scanner = OceanBaseScanner.scan(configuration);
+            resources = resources == null ? scanner : resources;
+            classes = classes == null ? scanner : classes;
+        }
+        this.resourceProvider = new SharedResourceProvider(resources);
+        Collection<Class<? extends JavaMigration>> javaMigrations = Collections.unmodifiableCollection(classes.getClasses());
+        this.javaMigrationClassProvider = () -> javaMigrations;
+    }
+
+    /**
+     * Migrates these targets, at most {@code parallelism} at a time. A target failing does not stop the others.
+     *
+     * @param targets The targets to migrate.
+     * @return The result of every target, in the same order.
+     */
+    public List<Result> migrate(List<Target> targets) {
+        if (targets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int threads = Math.min(parallelism, targets.size());
+        long start = System.nanoTime();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "flyway-oceanbase-fanout-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Result> results = new ArrayList<>(targets.size());
+        try {
+            List<Future<Result>> futures = new ArrayList<>(targets.size());
+            for (Target target : targets) {
+                futures.add(executor.submit(() -> migrate(target)));
+            }
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new FlywayException("Unable to migrate targets", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while migrating targets", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long failed = results.stream().filter(result -> !result.isSuccess()).count();
+        LOG.info("Migrated " + targets.size() + " targets (" + failed + " failed) on " + threads + " threads in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return results;
+    }
+
+    private Result migrate(Target target) {
+        long start = System.nanoTime();
+        try {
+            FluentConfiguration targetConfiguration = new FluentConfiguration(configuration.getClassLoader())
+                    .configuration(configuration)
+                    .dataSource(target.dataSource)
+                    .resourceProvider(resourceProvider)
+                    .javaMigrationClassProvider(javaMigrationClassProvider);
+            if (target.schemas.length > 0) {
+                targetConfiguration.schemas(target.schemas);
+            }
+            MigrateResult migrateResult = new Flyway(targetConfiguration).migrate();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            LOG.info("Migrated " + target.name + ": " + migrateResult.migrationsExecuted + " migrations in " + millis + " ms");
+            return new Result(target.name, migrateResult, null, millis);
+        } catch (RuntimeException e) {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            LOG.error("Unable to migrate " + target.name + " after " + millis + " ms: " + e.getMessage());
+            return new Result(target.name, null,
+                    e instanceof FlywayException ? (FlywayException) e : new FlywayException(e.getMessage(), e), millis);
+        }
+    }
+
+    /**
+     * A tenant or schema to migrate.
+     */
+    public static class Target {
+        private final String name;
+        private final DataSource dataSource;
+        private final String[] schemas;
+
+        /**
+         * @param name       The name of the target in logs and results.
+         * @param dataSource The data source connecting to the target.
+         * @param schemas    The schemas to manage, or none to use those of the shared configuration.
+         */
+        public Target(String name, DataSource dataSource, String... schemas) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.schemas = schemas;
+        }
+    }
+
+    /**
+     * The outcome of migrating one target.
+     */
+    @Getter
+    public static class Result {
+        /**
+         * The name of the target.
+         */
+        private final String target;
+
+        /**
+         * The result of the migration, or {@code null} if it failed.
+         */
+        private final MigrateResult migrateResult;
+
+        /**
+         * The reason the migration failed, or {@code null} if it succeeded.
+         */
+        private final FlywayException exception;
+
+        /**
+         * The time the migration took, in milliseconds.
+         */
+        private final long durationMillis;
+
+        Result(String target, MigrateResult migrateResult, FlywayException exception, long durationMillis) {
+            this.target = target;
+            this.migrateResult = migrateResult;
+            this.exception = exception;
+            this.durationMillis = durationMillis;
+        }
+
+        public boolean isSuccess() {
+            return exception == null && migrateResult != null && migrateResult.success;
+        }
+    }
+
+    /**
+     * Lists the resources of the underlying provider once per query, and reads every resource once.
+     */
+    private static class SharedResourceProvider implements ResourceProvider {
+        private final ResourceProvider delegate;
+        private final ConcurrentMap<String, LoadableResource> resources = new ConcurrentHashMap<>();
+        private final ConcurrentMap<List<String>, Collection<LoadableResource>> listings = new ConcurrentHashMap<>();
+
+        SharedResourceProvider(ResourceProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public LoadableResource getResource(String name) {
+            LoadableResource resource = resources.get(name);
+            if (resource == null) {
+                resource = delegate.getResource(name);
+                if (resource == null) {
+                    return null;
+                }
+                LoadableResource found = resource;
+                resource = resources.computeIfAbsent(name, path -> new SharedResource(found));
+            }
+            return resource;
+        }
+
+        @Override
+        public Collection<LoadableResource> getResources(String prefix, String[] suffixes) {
+            List<String> key = new ArrayList<>(suffixes.length + 1);
+            key.add(prefix);
+            key.addAll(Arrays.asList(suffixes));
+            return listings.computeIfAbsent(key, listing -> {
+                List<LoadableResource> shared = new ArrayList<>();
+                for (LoadableResource resource : delegate.getResources(prefix, suffixes)) {
+                    shared.add(resources.computeIfAbsent(resource.getAbsolutePath(), path -> new SharedResource(resource)));
+                }
+                return Collections.unmodifiableList(shared);
+            });
+        }
+    }
+
+    /**
+     * A resource whose content is read on first use and kept in memory.
+     */
+    private static class SharedResource extends LoadableResource {
+        private final LoadableResource delegate;
+        private volatile String content;
+
+        SharedResource(LoadableResource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Reader read() {
+            String result = content;
+            if (result == null) {
+                synchronized (this) {
+                    result = content;
+                    if (result == null) {
+                        result = readFully();
+                        content = result;
+                    }
+                }
+            }
+            return new StringReader(result);
+        }
+
+        private String readFully() {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[8192];
+            try (Reader reader = delegate.read()) {
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    builder.append(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                throw new FlywayException("Unable to read " + delegate.getAbsolutePath(), e);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String getAbsolutePath() {
+            return delegate.getAbsolutePath();
+        }
+
+        @Override
+        public String getAbsolutePathOnDisk() {
+            return delegate.getAbsolutePathOnDisk();
+        }
+
+        @Override
+        public String getFilename() {
+            return delegate.getFilename();
+        }
+
+        @Override
+        public String getRelativePath() {
+            return delegate.getRelativePath();
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps a JDBC connection so that every statement executed through it, including those of Java-based migrations,
+ * is reported to an {@link OceanBaseStatementListener} and, while {@link OceanBaseMetrics} is enabled, timed.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class OceanBaseJdbcProxy {
+    private static final OceanBaseStatementListener NO_LISTENER = sql -> {
+    };
+
+    /**
+     * Wraps this connection.
+     *
+     * @param connection The connection to wrap.
+     * @param listeners  The listeners to notify, in order.
+     * @return The wrapped connection.
+     */
+    static Connection wrap(Connection connection, OceanBaseStatementListener... listeners) {
+        return wrap(connection, null, null, listeners);
+    }
+
+    /**
+     * Wraps this connection, executing the statements accepted by these executors in chunks or in parallel.
+     *
+     * @param connection  The connection to wrap.
+     * @param chunkedDml  The chunked DML executor, or {@code null} to never execute statements in chunks.
+     * @param parallelDdl The parallel DDL executor, or {@code null} to never defer statements.
+     * @param listeners   The listeners to notify, in order.
+     * @return The wrapped connection.
+     */
+    static Connection wrap(Connection connection, OceanBaseChunkedDml chunkedDml, OceanBaseParallelDdl parallelDdl,
+                           OceanBaseStatementListener... listeners) {
+        OceanBaseStatementListener listener;
+        if (listeners.length == 0) {
+            listener = NO_LISTENER;
+        } else if (listeners.length == 1) {
+            listener = listeners[0];
+        } else {
+            listener = new OceanBaseStatementListener() {
+                @Override
+                public void beforeExecute(String sql) {
+                    for (OceanBaseStatementListener l : listeners) {
+                        l.beforeExecute(sql);
+                    }
+                }
+
+                @Override
+                public void afterExecute(String sql) {
+                    for (OceanBaseStatementListener l : listeners) {
+                        l.afterExecute(sql);
+                    }
+                }
+
+                @Override
+                public void catalogChanged(String catalog) {
+                    for (OceanBaseStatementListener l : listeners) {
+                        l.catalogChanged(catalog);
+                    }
+                }
+
+                @Override
+                public void beforeClose() {
+                    for (OceanBaseStatementListener l : listeners) {
+                        l.beforeClose();
+                    }
+                }
+            };
+        }
+        return (Connection) Proxy.newProxyInstance(OceanBaseJdbcProxy.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection, chunkedDml, parallelDdl, listener));
+    }
+
+    /**
+     * Executes the statements deferred on this connection, if it was wrapped with a parallel DDL executor.
+     *
+     * @param connection The connection, wrapped or not.
+     */
+    static void flushDeferred(Connection connection) throws SQLException {
+        ConnectionHandler handler = handlerOf(connection);
+        if (handler != null) {
+            handler.flushDeferred();
+        }
+    }
+
+    /**
+     * Drops the statements deferred on this connection without executing them, if it was wrapped with a parallel DDL
+     * executor.
+     *
+     * @param connection The connection, wrapped or not.
+     */
+    static void discardDeferred(Connection connection) {
+        ConnectionHandler handler = handlerOf(connection);
+        if (handler != null && handler.parallelDdl != null) {
+            handler.parallelDdl.discard();
+        }
+    }
+
+    /**
+     * Scopes the progress of the statements chunked on this connection to this SQL migration, if it was wrapped with a
+     * chunked DML executor.
+     *
+     * @param connection The connection, wrapped or not.
+     * @param script     The path of the script, or {@code null} once it is no longer executed.
+     */
+    static void setScript(Connection connection, String script) {
+        ConnectionHandler handler = handlerOf(connection);
+        if (handler != null && handler.chunkedDml != null) {
+            handler.chunkedDml.setScript(script);
+        }
+    }
+
+    /**
+     * Deletes the chunk progress left by the statements of the SQL migration that completed on this connection, if it
+     * was wrapped with a chunked DML executor.
+     *
+     * @param connection The connection, wrapped or not.
+     */
+    static void completeScript(Connection connection) throws SQLException {
+        ConnectionHandler handler = handlerOf(connection);
+        if (handler != null && handler.chunkedDml != null) {
+            handler.chunkedDml.completeScript(connection);
+        }
+    }
+
+    /**
+     * Reads the trace ID of the statements executed through this connection from now on, right after each of them and
+     * before any listener issues SQL of its own on the session.
+     *
+     * @param connection The connection, wrapped or not.
+     */
+    static void captureTraceIds(Connection connection) {
+        ConnectionHandler handler = handlerOf(connection);
+        if (handler != null) {
+            handler.traceIds = true;
+            handler.traceId = null;
+            handler.traceIdFailure = null;
+        }
+    }
+
+    /**
+     * Returns the trace ID of the last statement executed through this connection since
+     * {@link #captureTraceIds(Connection)}, and stops capturing them.
+     *
+     * @param connection The connection, wrapped or not. An unwrapped connection is asked for its last trace ID.
+     * @return The trace ID, or {@code null} if no statement was executed.
+     * @throws SQLException when the trace ID could not be read.
+     */
+    static String takeTraceId(Connection connection) throws SQLException {
+        ConnectionHandler handler = handlerOf(connection);
+        if (handler == null) {
+            return ConnectionHandler.readTraceId(connection);
+        }
+        handler.traceIds = false;
+        String traceId = handler.traceId;
+        SQLException failure = handler.traceIdFailure;
+        handler.traceId = null;
+        handler.traceIdFailure = null;
+        if (failure != null) {
+            throw failure;
+        }
+        return traceId;
+    }
+
+    private static ConnectionHandler handlerOf(Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof ConnectionHandler) {
+            return (ConnectionHandler) Proxy.getInvocationHandler(connection);
+        }
+        return null;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object invokeRecorded(Object target, Method method, Object[] args, String call,
+                                         OceanBaseStatementCategory category) throws Throwable {
+        if (!OceanBaseMetrics.isEnabled()) {
+            return invoke(target, method, args);
+        }
+        OceanBaseMetrics.Recording recording = OceanBaseMetrics.start(call, category);
+        boolean failed = true;
+        try {
+            Object result = invoke(target, method, args);
+            failed = false;
+            return result;
+        } finally {
+            recording.finish(failed);
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final OceanBaseChunkedDml chunkedDml;
+        private final OceanBaseParallelDdl parallelDdl;
+        private final OceanBaseStatementListener listener;
+
+        /**
+         * Whether to read the trace ID of every statement executed, see {@link #captureTraceIds(Connection)}.
+         */
+        private boolean traceIds;
+        private String traceId;
+        private SQLException traceIdFailure;
+
+        ConnectionHandler(Connection connection, OceanBaseChunkedDml chunkedDml, OceanBaseParallelDdl parallelDdl,
+                          OceanBaseStatementListener listener) {
+            this.connection = connection;
+            this.chunkedDml = chunkedDml;
+            this.parallelDdl = parallelDdl;
+            this.listener = listener;
+        }
+
+        /**
+         * Executes the statements deferred by the parallel DDL executor, as everything that follows may depend on them.
+         */
+        void flushDeferred() throws SQLException {
+            if (parallelDdl != null) {
+                parallelDdl.flush(connection, listener);
+            }
+        }
+
+        /**
+         * Reads the trace ID of the statement just executed, if requested, before the listener gets to run SQL.
+         */
+        void captureTraceId() {
+            if (!traceIds) {
+                return;
+            }
+            try {
+                traceId = readTraceId(connection);
+                traceIdFailure = null;
+            } catch (SQLException e) {
+                traceId = null;
+                traceIdFailure = e;
+            }
+        }
+
+        static String readTraceId(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT LAST_TRACE_ID()")) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "createStatement":
+                    return wrapStatement(Statement.class, (Statement) OceanBaseJdbcProxy.invoke(connection, method, args), null,
+                            chunkedDml == null && parallelDdl == null ? null : (Connection) proxy);
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, (Statement) OceanBaseJdbcProxy.invoke(connection, method, args), (String) args[0], null);
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, (Statement) OceanBaseJdbcProxy.invoke(connection, method, args), (String) args[0], null);
+                case "commit":
+                    flushDeferred();
+                    return invokeRecorded(connection, method, args, "Connection.commit()", OceanBaseStatementCategory.TRANSACTION);
+                case "rollback":
+                    if (parallelDdl != null) {
+                        parallelDdl.discard();
+                    }
+                    return invokeRecorded(connection, method, args, "Connection.rollback()", OceanBaseStatementCategory.TRANSACTION);
+                case "setAutoCommit":
+                    flushDeferred();
+                    return invokeRecorded(connection, method, args, "Connection.setAutoCommit()", OceanBaseStatementCategory.TRANSACTION);
+                case "setCatalog":
+                    flushDeferred();
+                    Object result = invokeRecorded(connection, method, args, "Connection.setCatalog()", OceanBaseStatementCategory.SESSION);
+                    listener.catalogChanged((String) args[0]);
+                    return result;
+                case "setTransactionIsolation":
+                    return invokeRecorded(connection, method, args, "Connection.setTransactionIsolation()", OceanBaseStatementCategory.SESSION);
+                case "close":
+                    try {
+                        flushDeferred();
+                        listener.beforeClose();
+                    } finally {
+                        connection.close();
+                    }
+                    return null;
+                default:
+                    return OceanBaseJdbcProxy.invoke(connection, method, args);
+            }
+        }
+
+        /**
+         * @param interceptingConnection The wrapped connection to execute intercepted statements on, or {@code null}
+         *                               if statements are never intercepted.
+         */
+        private Object wrapStatement(Class<? extends Statement> type, Statement statement, String preparedSql,
+                                     Connection interceptingConnection) {
+            return Proxy.newProxyInstance(OceanBaseJdbcProxy.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, preparedSql, this, interceptingConnection));
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private final OceanBaseStatementListener listener;
+        private final ConnectionHandler owner;
+        private final Connection interceptingConnection;
+
+        /**
+         * The update count of the last execution if it was intercepted, which the statement itself never saw.
+         */
+        private Long interceptedUpdateCount;
+
+        /**
+         * The first statement added to the current batch, which stands for the whole batch in recordings.
+         */
+        private String batchSql;
+
+        /**
+         * The recording of the last execution, while its results are still being read.
+         */
+        private OceanBaseMetrics.Recording pending;
+
+        StatementHandler(Statement statement, String preparedSql, ConnectionHandler owner, Connection interceptingConnection) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+            this.listener = owner.listener;
+            this.owner = owner;
+            this.interceptingConnection = interceptingConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            if ("addBatch".equals(name)) {
+                if (sql != null) {
+                    listener.beforeExecute(sql);
+                    if (batchSql == null) {
+                        batchSql = sql;
+                    }
+                }
+                return OceanBaseJdbcProxy.invoke(statement, method, args);
+            }
+            if (name.startsWith("execute")) {
+                if (sql == null) {
+                    sql = preparedSql;
+                }
+                return sql == null ? execute(method, args, name, batchSql, false) : execute(method, args, name, sql, true);
+            }
+            if (interceptedUpdateCount != null) {
+                switch (name) {
+                    case "getUpdateCount":
+                        return (int) Math.min(interceptedUpdateCount, Integer.MAX_VALUE);
+                    case "getLargeUpdateCount":
+                        return interceptedUpdateCount;
+                    case "getResultSet":
+                        return null;
+                    case "getMoreResults":
+                        interceptedUpdateCount = -1L;
+                        return false;
+                    default:
+                        break;
+                }
+            }
+            switch (name) {
+                case "getResultSet":
+                    Object resultSet = OceanBaseJdbcProxy.invoke(statement, method, args);
+                    return pending == null || resultSet == null ? resultSet : wrapResultSet((ResultSet) resultSet, pending);
+                case "getMoreResults":
+                case "close":
+                    finishPending();
+                    break;
+                case "clearBatch":
+                    batchSql = null;
+                    break;
+                default:
+                    break;
+            }
+            return OceanBaseJdbcProxy.invoke(statement, method, args);
+        }
+
+        /**
+         * Executes this statement, unless it is executed in chunks, deferred or submitted, and records it if metrics
+         * are enabled. A deferred statement is only reported to the listener once it is eventually executed, and a
+         * submitted one to the listeners of the connection it is submitted on.
+         *
+         * @param sql    The SQL being executed, or {@code null} for a batch whose statements are unknown.
+         * @param notify Whether to report the execution to the listener, which already saw the statements of a batch.
+         */
+        private Object execute(Method method, Object[] args, String name, String sql, boolean notify) throws Throwable {
+            finishPending();
+            interceptedUpdateCount = null;
+            if (name.endsWith("Batch")) {
+                batchSql = null;
+            }
+            boolean interceptable = interceptingConnection != null && args != null && args.length == 1
+                    && !"executeQuery".equals(name);
+            if (interceptable && owner.parallelDdl != null && owner.parallelDdl.accepts(sql)) {
+                owner.parallelDdl.defer(sql);
+                if (owner.chunkedDml != null) {
+                    owner.chunkedDml.invalidate();
+                }
+                return intercepted(name, 0);
+            }
+            owner.flushDeferred();
+            if (interceptable && owner.parallelDdl != null && owner.parallelDdl.submits(sql)) {
+                owner.parallelDdl.submit(owner.connection, sql);
+                if (owner.chunkedDml != null) {
+                    owner.chunkedDml.invalidate();
+                }
+                return intercepted(name, 0);
+            }
+            if (notify) {
+                listener.beforeExecute(sql);
+            }
+            try {
+                if (interceptable && owner.chunkedDml != null && owner.chunkedDml.accepts(interceptingConnection, sql)) {
+                    return intercepted(name, owner.chunkedDml.execute(interceptingConnection, sql));
+                }
+                if (!OceanBaseMetrics.isEnabled()) {
+                    return OceanBaseJdbcProxy.invoke(statement, method, args);
+                }
+                return executeRecorded(method, args, sql == null ? "Statement." + name + "()" : sql);
+            } finally {
+                if (notify) {
+                    owner.captureTraceId();
+                    listener.afterExecute(sql);
+                }
+            }
+        }
+
+        /**
+         * @return The result of this execute method for a statement that was executed, or deferred, elsewhere.
+         */
+        private Object intercepted(String name, long rows) {
+            interceptedUpdateCount = rows;
+            if ("executeUpdate".equals(name)) {
+                return (int) Math.min(rows, Integer.MAX_VALUE);
+            }
+            if ("executeLargeUpdate".equals(name)) {
+                return rows;
+            }
+            return false;
+        }
+
+        private Object executeRecorded(Method method, Object[] args, String sql) throws Throwable {
+            OceanBaseMetrics.Recording recording = OceanBaseMetrics.start(sql, OceanBaseStatementCategory.of(sql));
+            Object result;
+            try {
+                result = OceanBaseJdbcProxy.invoke(statement, method, args);
+            } catch (Throwable e) {
+                recording.finish(true);
+                throw e;
+            }
+            if (result instanceof ResultSet) {
+                pending = recording;
+                return wrapResultSet((ResultSet) result, recording);
+            }
+            if (Boolean.TRUE.equals(result)) {
+                // The rows are counted as the result sets are read
+                pending = recording;
+                return result;
+            }
+            if (Boolean.FALSE.equals(result)) {
+                recording.addRows(statement.getUpdateCount());
+            } else if (result instanceof Number) {
+                recording.addRows(((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    recording.addRows(count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    recording.addRows(count);
+                }
+            }
+            recording.finish(false);
+            return result;
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish(false);
+                pending = null;
+            }
+        }
+
+        private static Object wrapResultSet(ResultSet resultSet, OceanBaseMetrics.Recording recording) {
+            return Proxy.newProxyInstance(OceanBaseJdbcProxy.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if ("next".equals(name)) {
+                            Object hasRow = OceanBaseJdbcProxy.invoke(resultSet, method, args);
+                            if (Boolean.TRUE.equals(hasRow)) {
+                                recording.addRows(1);
+                            } else {
+                                recording.finish(false);
+                            }
+                            return hasRow;
+                        }
+                        if ("close".equals(name)) {
+                            recording.finish(false);
+                        }
+                        return OceanBaseJdbcProxy.invoke(resultSet, method, args);
+                    });
+        }
+    }
+}
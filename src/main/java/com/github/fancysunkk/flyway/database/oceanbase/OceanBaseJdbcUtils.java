@@ -1,41 +1,112 @@
 package com.github.fancysunkk.flyway.database.oceanbase;
 
-import org.flywaydb.core.internal.util.StringUtils;
-
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Sunk
  * @version 1.0
  */
 public class OceanBaseJdbcUtils {
-    public static String getVersionComment(Connection connection) throws SQLException {
-        return queryVariable(connection, "version_comment");
+    /**
+     * The versions read so far, keyed by server address, user and the server version reported by the driver
+     * handshake. The user, which carries the tenant as in {@code user@tenant}, is part of the key because tenants
+     * behind the same OBProxy address may run in different compatibility modes. Servers that turned out not to be
+     * OceanBase are cached as well.
+     */
+    private static final ConcurrentMap<String, Optional<OceanBaseVersion>> VERSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the version of the server this connection points to. The server is only queried the first time
+     * a connection with this address and user is seen, whichever database it connects to, and only by one
+     * connection when several see it at the same time.
+     *
+     * @param connection The connection.
+     * @return The version, or {@code null} if the server is not OceanBase.
+     * @throws SQLException when the version could not be read.
+     */
+    public static OceanBaseVersion getVersion(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String key = getServerAddress(metaData.getURL()) + "\u0000" + metaData.getUserName() + "\u0000"
+                + metaData.getDatabaseProductVersion();
+        Optional<OceanBaseVersion> version = VERSIONS.get(key);
+        if (version == null) {
+            try {
+                version = VERSIONS.computeIfAbsent(key, k -> {
+                    try {
+                        return Optional.ofNullable(queryVersion(connection, metaData));
+                    } catch (SQLException e) {
+                        throw new UncheckedSQLException(e);
+                    }
+                });
+            } catch (UncheckedSQLException e) {
+                throw e.getCause();
+            }
+        }
+        return version.orElse(null);
     }
 
-    public static String getVersionNumber(Connection connection) throws SQLException {
-        String versionComment = getVersionComment(connection);
-        if (StringUtils.hasText(versionComment)) {
-            String[] parts = versionComment.split(" ");
-            if (parts.length > 1) {
-                return parts[1];
+    /**
+     * Strips the database and the connection properties from this JDBC URL, leaving the address of the server.
+     *
+     * @param url The JDBC URL.
+     * @return The scheme, hosts and ports of the URL.
+     */
+    static String getServerAddress(String url) {
+        if (url == null) {
+            return null;
+        }
+        int hosts = url.indexOf("//");
+        int end = url.length();
+        for (char separator : new char[]{'/', '?', ';'}) {
+            int index = url.indexOf(separator, hosts < 0 ? 0 : hosts + 2);
+            if (index >= 0 && index < end) {
+                end = index;
             }
         }
-        return null;
+        return url.substring(0, end);
+    }
+
+    public static String getVersionComment(Connection connection) throws SQLException {
+        OceanBaseVersion version = getVersion(connection);
+        return version == null ? null : version.getVersionComment();
     }
 
-    private static String queryVariable(Connection connection, String variable) throws SQLException {
-        assert StringUtils.hasText(variable);
-        String sql = String.format("SHOW VARIABLES LIKE '%s'", variable);
-        try (Statement statement = connection.createStatement()) {
-            ResultSet rs = statement.executeQuery(sql);
+    public static String getVersionNumber(Connection connection) throws SQLException {
+        OceanBaseVersion version = getVersion(connection);
+        return version == null ? null : version.getVersionNumber();
+    }
+
+    private static OceanBaseVersion queryVersion(Connection connection, DatabaseMetaData metaData) throws SQLException {
+        String productName = metaData.getDatabaseProductName();
+        OceanBaseVersion.CompatibilityMode compatibilityMode = productName != null && productName.contains("Oracle")
+                ? OceanBaseVersion.CompatibilityMode.ORACLE
+                : OceanBaseVersion.CompatibilityMode.MYSQL;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT @@version_comment, @@version")) {
             if (rs.next()) {
-                return rs.getString("VALUE");
+                return OceanBaseVersion.parse(rs.getString(1), rs.getString(2), compatibilityMode);
             }
         }
         return null;
     }
+
+    private static class UncheckedSQLException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedSQLException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
 }
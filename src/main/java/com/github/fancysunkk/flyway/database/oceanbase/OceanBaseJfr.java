@@ -0,0 +1,98 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emits the plugin's JFR events. Only loaded by {@link OceanBaseMetrics} when the JVM provides {@code jdk.jfr}.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+class OceanBaseJfr {
+    private final EventType statementType = EventType.getEventType(StatementEvent.class);
+    private final EventType phaseType = EventType.getEventType(PhaseEvent.class);
+
+    /**
+     * @return Whether a recording is currently collecting statement events.
+     */
+    boolean isStatementEnabled() {
+        return statementType.isEnabled();
+    }
+
+    Object beginStatement() {
+        if (!statementType.isEnabled()) {
+            return null;
+        }
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        return event;
+    }
+
+    void commitStatement(Object started, OceanBasePhase phase, OceanBaseStatementCategory category, String sql,
+                         long rows, boolean failed) {
+        StatementEvent event = (StatementEvent) started;
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.category = category.name();
+            event.sql = sql;
+            event.rows = rows;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    Object beginPhase() {
+        if (!phaseType.isEnabled()) {
+            return null;
+        }
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    void commitPhase(Object started, OceanBasePhase phase) {
+        PhaseEvent event = (PhaseEvent) started;
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.commit();
+        }
+    }
+
+    @Name("com.github.fancysunkk.flyway.oceanbase.Statement")
+    @Label("OceanBase Statement")
+    @Description("A round trip made by the Flyway OceanBase plugin, until its results were read")
+    @Category({"Flyway", "OceanBase"})
+    @StackTrace(false)
+    static class StatementEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Category")
+        String category;
+
+        @Label("SQL")
+        String sql;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.github.fancysunkk.flyway.oceanbase.Phase")
+    @Label("OceanBase Phase")
+    @Description("A phase of the Flyway OceanBase plugin's work, such as probing, locking or cleaning")
+    @Category({"Flyway", "OceanBase"})
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+}
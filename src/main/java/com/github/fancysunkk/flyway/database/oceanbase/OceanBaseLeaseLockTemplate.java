@@ -0,0 +1,422 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import lombok.Getter;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.database.base.Table;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Serializes migrations across nodes with a lease recorded in a companion table of the schema history table, rather
+ * than with a session-bound named lock or a long-held row lock, so that it also works through OBProxy, which may route
+ * the statements of a client session to different server sessions.
+ * <p>
+ * The lease names its owner and expires after {@link #leaseSeconds} unless a background heartbeat renews it, so that
+ * a lease left behind by a crashed node is taken over once it expired. Every acquisition increments a fencing token,
+ * and the heartbeat and the release only touch the lease while it still carries the owner and token they acquired.
+ * Every write to the schema history table while holding the lease first locks the lease row in the transaction of the
+ * write, and fails unless it still carries this owner and token and has not expired. The takeover of another node then
+ * waits for the write to commit, so that a node which lost its lease, for example because the heartbeat could not reach
+ * the server in time, records no further migration. Expiry is measured by the server's clock, so the clocks of the
+ * nodes do not matter. All other statements on the lease are executed in auto-commit mode on a dedicated connection.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseLeaseLockTemplate {
+    /**
+     * The suffix of the companion table holding the lease.
+     */
+    static final String LEASE_TABLE_SUFFIX = "_lease";
+
+    /**
+     * Waits longer than this are reported at info level.
+     */
+    private static final long REPORT_WAIT_MILLIS = 1000L;
+
+    private static final long MIN_BACKOFF_MILLIS = 50L;
+    private static final long MAX_BACKOFF_MILLIS = 1000L;
+
+    private static final int ER_NO_SUCH_TABLE = 1146;
+
+    private final OceanBaseDatabase database;
+    private final String leaseTable;
+
+    /**
+     * Matches the statements writing to the schema history table.
+     */
+    private final Pattern historyWrite;
+
+    /**
+     * The maximum total time to wait for the lease, in seconds. 0 waits indefinitely.
+     */
+    private final int timeoutSeconds;
+
+    /**
+     * How long the lease lasts unless renewed, in seconds.
+     */
+    private final int leaseSeconds;
+
+    /**
+     * Identifies this acquisition among all nodes.
+     */
+    @Getter
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * The fencing token of the lease, incremented by every acquisition.
+     */
+    @Getter
+    private long token;
+
+    /**
+     * How long the last execution waited for the lease, in milliseconds.
+     */
+    @Getter
+    private long waitMillis;
+
+    /**
+     * The dedicated connection of the lease, shared by the acquisition, the heartbeat and the release.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Set once the lease can no longer be renewed or was found taken over.
+     */
+    private volatile String lostReason;
+
+    /**
+     * Creates a new lease lock template.
+     *
+     * @param database       The database-specific support.
+     * @param table          The schema history table.
+     * @param timeoutSeconds The maximum total time to wait for the lease, in seconds. 0 waits indefinitely.
+     * @param leaseSeconds   How long the lease lasts unless renewed, in seconds.
+     */
+    OceanBaseLeaseLockTemplate(OceanBaseDatabase database, Table<?, ?> table, int timeoutSeconds, int leaseSeconds) {
+        this.database = database;
+        this.leaseTable = database.quote(table.getSchema().getName(), table.getName() + LEASE_TABLE_SUFFIX);
+        this.historyWrite = Pattern.compile("^\\s*(INSERT\\s+INTO|UPDATE|DELETE\\s+FROM)\\s+"
+                + Pattern.quote(table.toString()), Pattern.CASE_INSENSITIVE);
+        this.timeoutSeconds = timeoutSeconds;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    /**
+     * Executes this callback while holding the lease.
+     *
+     * @param callable The callback to execute.
+     * @return The result of the callable code.
+     */
+    public <T> T execute(Callable<T> callable) {
+        try (Connection connection = database.openConnection()) {
+            jdbcTemplate = new JdbcTemplate(connection, database.getDatabaseType());
+            try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.LOCK)) {
+                acquire();
+            } catch (SQLException e) {
+                throw new FlywaySqlException("Unable to acquire migration lease " + leaseTable, e);
+            }
+            ScheduledExecutorService heartbeat = startHeartbeat();
+            T result;
+            database.setLease(this);
+            try {
+                result = callable.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new FlywayException(e);
+            } finally {
+                database.setLease(null);
+                heartbeat.shutdownNow();
+                awaitTermination(heartbeat);
+                release();
+            }
+            if (lostReason != null) {
+                throw lost();
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to close the connection of migration lease " + leaseTable, e);
+        }
+    }
+
+    /**
+     * Creates a listener fencing the writes to the schema history table on this connection with the lease of this
+     * database, while one is held. A write in auto-commit mode is executed in a transaction of its own, committed once
+     * the write completed, so that the lease row stays locked until then.
+     *
+     * @param database   The database-specific support.
+     * @param connection The connection the writes are executed on, not wrapped.
+     * @return The listener.
+     */
+    static OceanBaseStatementListener fence(OceanBaseDatabase database, Connection connection) {
+        return new OceanBaseStatementListener() {
+            /**
+             * Whether the statement in progress runs in a transaction begun by this listener.
+             */
+            private boolean began;
+
+            @Override
+            public void beforeExecute(String sql) {
+                OceanBaseLeaseLockTemplate lease = database.getLease();
+                if (lease != null && lease.historyWrite.matcher(sql).find()) {
+                    began = lease.checkHeld(connection);
+                }
+            }
+
+            @Override
+            public void afterExecute(String sql) {
+                if (!began) {
+                    return;
+                }
+                began = false;
+                try {
+                    // A failed write rolled itself back, so this only commits a successful one
+                    connection.commit();
+                } catch (SQLException e) {
+                    throw new FlywaySqlException("Unable to commit schema history write", e);
+                } finally {
+                    restoreAutoCommit(connection);
+                }
+            }
+        };
+    }
+
+    /**
+     * Locks the lease row on this connection, and fails unless it still carries the owner and token acquired and has
+     * not expired. Until the transaction ends, another node cannot take the lease over.
+     *
+     * @param connection The connection about to write to the schema history table.
+     * @return {@code true} if a transaction was begun, which the caller must commit.
+     */
+    private boolean checkHeld(Connection connection) {
+        if (lostReason != null) {
+            throw lost();
+        }
+        boolean begin = false;
+        boolean held;
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.LOCK)) {
+            if (connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                begin = true;
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM " + leaseTable
+                    + " WHERE id = 1 AND owner = ? AND token = ? AND expires_at > UTC_TIMESTAMP(6) FOR UPDATE")) {
+                statement.setString(1, owner);
+                statement.setLong(2, token);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    held = resultSet.next();
+                }
+            }
+            if (!held && begin) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            if (begin) {
+                restoreAutoCommit(connection);
+            }
+            throw new FlywaySqlException("Unable to check migration lease " + leaseTable, e);
+        }
+        if (!held) {
+            if (begin) {
+                restoreAutoCommit(connection);
+            }
+            lostReason = "taken over by another node or expired";
+            throw lost();
+        }
+        return begin;
+    }
+
+    private static void restoreAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            LOG.warn("Unable to restore auto-commit after a schema history write: " + e.getMessage());
+        }
+    }
+
+    private FlywayException lost() {
+        return new FlywayException("Lost migration lease " + leaseTable + " with token " + token + " while holding it ("
+                + lostReason + "), another node may have migrated concurrently");
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = timeoutSeconds > 0 ? start + timeoutSeconds * 1_000_000_000L : Long.MAX_VALUE;
+        long backoff = MIN_BACKOFF_MILLIS;
+        String waitingFor = null;
+
+        while (true) {
+            Lease lease = read();
+            if (lease == null) {
+                create();
+                continue;
+            }
+            if (lease.owner == null || lease.remainingMicros <= 0) {
+                // Compare-and-set on the token, so that only one of the nodes seeing the lease free takes it
+                if (update("UPDATE " + leaseTable + " SET owner = ?, token = token + 1,"
+                                + " expires_at = UTC_TIMESTAMP(6) + INTERVAL " + leaseSeconds + " SECOND"
+                                + " WHERE id = 1 AND token = ? AND (owner IS NULL OR expires_at <= UTC_TIMESTAMP(6))",
+                        owner, lease.token) == 1) {
+                    token = lease.token + 1;
+                    if (lease.owner != null) {
+                        LOG.warn("Took over migration lease " + leaseTable + " from " + lease.owner
+                                + ", whose lease expired without being released");
+                    }
+                    break;
+                }
+                continue;
+            }
+
+            if (!lease.owner.equals(waitingFor)) {
+                LOG.info("Waiting for migration lease " + leaseTable + " held by " + lease.owner);
+                waitingFor = lease.owner;
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new FlywayException("Unable to acquire migration lease " + leaseTable + " within " + timeoutSeconds
+                        + " seconds (held by " + lease.owner + ")");
+            }
+            // Jitter keeps waiters from polling in lockstep, and no waiter sleeps past the expiry of a stale lease
+            long sleep = Math.min(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff),
+                    lease.remainingMicros / 1000 + 1);
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlywayException("Interrupted while attempting to acquire migration lease " + leaseTable, e);
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+
+        waitMillis = (System.nanoTime() - start) / 1_000_000;
+        String message = "Acquired migration lease " + leaseTable + " with token " + token + " after waiting "
+                + waitMillis + " ms";
+        if (waitMillis >= REPORT_WAIT_MILLIS) {
+            LOG.info(message);
+        } else {
+            LOG.debug(message);
+        }
+    }
+
+    /**
+     * @return The lease, or {@code null} if neither the table nor its row exist yet.
+     */
+    private Lease read() throws SQLException {
+        List<Lease> leases;
+        try {
+            leases = jdbcTemplate.query("SELECT owner, token, TIMESTAMPDIFF(MICROSECOND, UTC_TIMESTAMP(6), expires_at)"
+                    + " FROM " + leaseTable + " WHERE id = 1", rs -> new Lease(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_NO_SUCH_TABLE) {
+                throw e;
+            }
+            return null;
+        }
+        return leases.isEmpty() ? null : leases.get(0);
+    }
+
+    private void create() throws SQLException {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + leaseTable + " (`id` INT NOT NULL PRIMARY KEY,"
+                + " `owner` VARCHAR(255), `token` BIGINT NOT NULL, `expires_at` DATETIME(6) NOT NULL)");
+        jdbcTemplate.execute("INSERT IGNORE INTO " + leaseTable + " (`id`, `owner`, `token`, `expires_at`)"
+                + " VALUES (1, NULL, 0, UTC_TIMESTAMP(6))");
+    }
+
+    /**
+     * Renews the lease three times per lease period, so that it survives a missed heartbeat.
+     */
+    private ScheduledExecutorService startHeartbeat() {
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flyway-oceanbase-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = Math.max(1, leaseSeconds * 1000L / 3);
+        long[] lastRenewal = {System.nanoTime()};
+        heartbeat.scheduleWithFixedDelay(() -> {
+            if (lostReason != null) {
+                return;
+            }
+            try {
+                if (update("UPDATE " + leaseTable + " SET expires_at = UTC_TIMESTAMP(6) + INTERVAL " + leaseSeconds
+                        + " SECOND WHERE id = 1 AND owner = ? AND token = ?", owner, token) == 1) {
+                    lastRenewal[0] = System.nanoTime();
+                    return;
+                }
+                lostReason = "taken over by another node";
+            } catch (SQLException e) {
+                if (System.nanoTime() - lastRenewal[0] < leaseSeconds * 1_000_000_000L) {
+                    LOG.warn("Unable to renew migration lease " + leaseTable + ", retrying: " + e.getMessage());
+                    return;
+                }
+                lostReason = "not renewed within " + leaseSeconds + " seconds: " + e.getMessage();
+            }
+            LOG.error("Lost migration lease " + leaseTable + " with token " + token + ": " + lostReason);
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return heartbeat;
+    }
+
+    private static void awaitTermination(ScheduledExecutorService heartbeat) {
+        try {
+            heartbeat.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void release() {
+        try (OceanBaseMetrics.PhaseScope ignored = OceanBaseMetrics.enter(OceanBasePhase.LOCK)) {
+            // Leaves the token as it is, so that it keeps increasing with every acquisition
+            update("UPDATE " + leaseTable + " SET owner = NULL, expires_at = UTC_TIMESTAMP(6)"
+                    + " WHERE id = 1 AND owner = ? AND token = ?", owner, token);
+        } catch (SQLException e) {
+            LOG.error("Unable to release migration lease " + leaseTable + ", it expires in " + leaseSeconds
+                    + " seconds at the latest", e);
+        }
+    }
+
+    /**
+     * @return The number of rows this statement updated.
+     */
+    private int update(String sql, Object... params) throws SQLException {
+        try (PreparedStatement statement = jdbcTemplate.getConnection().prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    private static class Lease {
+        private final String owner;
+        private final long token;
+
+        /**
+         * The time until the lease expires according to the server, in microseconds, negative once it expired.
+         */
+        private final long remainingMicros;
+
+        Lease(String owner, long token, long remainingMicros) {
+            this.owner = owner;
+            this.token = token;
+            this.remainingMicros = remainingMicros;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+/**
+ * How the schema history table is locked while migrating.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public enum OceanBaseLockStrategy {
+    /**
+     * Named locks where the server supports them, otherwise {@link #TABLE}.
+     */
+    AUTO,
+
+    /**
+     * A session-level named lock acquired with GET_LOCK.
+     */
+    NAMED_LOCK,
+
+    /**
+     * SELECT ... FOR UPDATE over every row of the schema history table.
+     */
+    TABLE,
+
+    /**
+     * SELECT ... FOR UPDATE over the single row of a companion lock table, whose cost does not grow with the history.
+     */
+    SENTINEL,
+
+    /**
+     * A lease with an owner, an expiry renewed by a heartbeat and a fencing token, recorded in a companion lease table.
+     * Unlike named locks it does not depend on the server session, so it also works through OBProxy.
+     */
+    LEASE
+}
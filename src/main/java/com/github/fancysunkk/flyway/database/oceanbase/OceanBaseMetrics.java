@@ -0,0 +1,202 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.AccessLevel;
+import lombok.CustomLog;
+import lombok.NoArgsConstructor;
+import org.flywaydb.core.internal.plugin.PluginRegister;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the round trips made by the plugin's connections and the phases of its work, and forwards them to the
+ * registered {@link OceanBaseMetricsListener}s and, where the JVM supports it, to JFR. When no listener is registered
+ * and no recording collects the plugin's events, nothing is timed or allocated.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class OceanBaseMetrics {
+    private static final List<OceanBaseMetricsListener> LISTENERS =
+            new CopyOnWriteArrayList<>(PluginRegister.getPlugins(OceanBaseMetricsListener.class));
+
+    private static final OceanBaseJfr JFR = loadJfr();
+
+    private static final ThreadLocal<OceanBasePhase> CURRENT_PHASE = new ThreadLocal<>();
+
+    private static final PhaseScope NO_PHASE = new PhaseScope(null, null, 0, null);
+
+    /**
+     * Registers a listener in addition to those registered as plugins.
+     *
+     * @param listener The listener.
+     */
+    public static void addListener(OceanBaseMetricsListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener The listener to unregister.
+     */
+    public static void removeListener(OceanBaseMetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    private static OceanBaseJfr loadJfr() {
+        try {
+            Class.forName("jdk.jfr.Event", false, OceanBaseMetrics.class.getClassLoader());
+            return new OceanBaseJfr();
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOG.debug("JFR is not available, OceanBase JFR events are disabled");
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether anything is interested in the plugin's round trips.
+     */
+    static boolean isEnabled() {
+        return !LISTENERS.isEmpty() || (JFR != null && JFR.isStatementEnabled());
+    }
+
+    /**
+     * Marks the statements executed by the current thread as belonging to this phase until the returned scope is
+     * closed.
+     *
+     * @param phase The phase.
+     * @return The scope of the phase.
+     */
+    static PhaseScope enter(OceanBasePhase phase) {
+        OceanBasePhase previous = CURRENT_PHASE.get();
+        if (previous == phase || !isEnabled()) {
+            return NO_PHASE;
+        }
+        CURRENT_PHASE.set(phase);
+        return new PhaseScope(phase, previous, System.nanoTime(), JFR == null ? null : JFR.beginPhase());
+    }
+
+    /**
+     * Starts recording a round trip. Must only be called if {@link #isEnabled()}.
+     *
+     * @param sql The statement, or the name of the JDBC call.
+     * @return The recording, to be finished once the results have been read.
+     */
+    static Recording start(String sql, OceanBaseStatementCategory category) {
+        OceanBasePhase phase = CURRENT_PHASE.get();
+        return new Recording(phase == null ? OceanBasePhase.OTHER : phase, category, sql,
+                System.nanoTime(), JFR == null ? null : JFR.beginStatement());
+    }
+
+    /**
+     * Reports the acquisition of the migration lock to the registered listeners.
+     *
+     * @param lock       The name of the lock.
+     * @param waitMillis How long acquiring the lock took, in milliseconds.
+     * @param holder     The holder of the lock while waiting, or {@code null} if the lock was never contended.
+     */
+    static void lockAcquired(String lock, long waitMillis, String holder) {
+        for (OceanBaseMetricsListener listener : LISTENERS) {
+            try {
+                listener.lockAcquired(lock, waitMillis, holder);
+            } catch (RuntimeException e) {
+                LOG.debug("OceanBase metrics listener " + listener.getClass().getName() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A round trip being recorded.
+     */
+    static class Recording {
+        private final OceanBasePhase phase;
+        private final OceanBaseStatementCategory category;
+        private final String sql;
+        private final long startNanos;
+        private final Object jfrEvent;
+        private long rows;
+        private boolean finished;
+
+        private Recording(OceanBasePhase phase, OceanBaseStatementCategory category, String sql, long startNanos,
+                          Object jfrEvent) {
+            this.phase = phase;
+            this.category = category;
+            this.sql = sql;
+            this.startNanos = startNanos;
+            this.jfrEvent = jfrEvent;
+        }
+
+        /**
+         * @param count The number of rows read or affected, ignored if negative.
+         */
+        void addRows(long count) {
+            if (count > 0) {
+                rows += count;
+            }
+        }
+
+        /**
+         * Reports this round trip. Subsequent calls have no effect.
+         *
+         * @param failed Whether the statement failed.
+         */
+        void finish(boolean failed) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long durationNanos = System.nanoTime() - startNanos;
+            for (OceanBaseMetricsListener listener : LISTENERS) {
+                try {
+                    listener.statementExecuted(phase, category, sql, durationNanos, rows, failed);
+                } catch (RuntimeException e) {
+                    LOG.debug("OceanBase metrics listener " + listener.getClass().getName() + " failed: " + e.getMessage());
+                }
+            }
+            if (jfrEvent != null) {
+                JFR.commitStatement(jfrEvent, phase, category, sql, rows, failed);
+            }
+        }
+    }
+
+    /**
+     * The scope of a phase, reported when closed.
+     */
+    static class PhaseScope implements AutoCloseable {
+        private final OceanBasePhase phase;
+        private final OceanBasePhase previous;
+        private final long startNanos;
+        private final Object jfrEvent;
+
+        private PhaseScope(OceanBasePhase phase, OceanBasePhase previous, long startNanos, Object jfrEvent) {
+            this.phase = phase;
+            this.previous = previous;
+            this.startNanos = startNanos;
+            this.jfrEvent = jfrEvent;
+        }
+
+        @Override
+        public void close() {
+            if (phase == null) {
+                return;
+            }
+            if (previous == null) {
+                CURRENT_PHASE.remove();
+            } else {
+                CURRENT_PHASE.set(previous);
+            }
+            long durationNanos = System.nanoTime() - startNanos;
+            for (OceanBaseMetricsListener listener : LISTENERS) {
+                try {
+                    listener.phaseCompleted(phase, durationNanos);
+                } catch (RuntimeException e) {
+                    LOG.debug("OceanBase metrics listener " + listener.getClass().getName() + " failed: " + e.getMessage());
+                }
+            }
+            if (jfrEvent != null) {
+                JFR.commitPhase(jfrEvent, phase);
+            }
+        }
+    }
+}
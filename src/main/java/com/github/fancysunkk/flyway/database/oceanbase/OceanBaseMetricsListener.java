@@ -0,0 +1,48 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.extensibility.Plugin;
+
+/**
+ * Receives the timing of every round trip the plugin's connections make, for example to feed counters and
+ * histograms of a monitoring system. Implementations are registered like any other Flyway plugin, in
+ * {@code META-INF/services/org.flywaydb.core.extensibility.Plugin}, or at runtime with
+ * {@link OceanBaseMetrics#addListener}. They are called on the thread executing the statement and must be fast and
+ * thread-safe.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public interface OceanBaseMetricsListener extends Plugin {
+    /**
+     * Called once a statement has completed and its results have been read.
+     *
+     * @param phase         The phase the statement belongs to.
+     * @param category      The kind of statement.
+     * @param sql           The statement, or the name of the JDBC call for round trips without SQL such as commit.
+     * @param durationNanos The time from sending the statement until its results were read, in nanoseconds.
+     * @param rows          The number of rows read or affected.
+     * @param failed        Whether the statement failed.
+     */
+    void statementExecuted(OceanBasePhase phase, OceanBaseStatementCategory category, String sql,
+                           long durationNanos, long rows, boolean failed);
+
+    /**
+     * Called when the plugin completes a phase.
+     *
+     * @param phase         The phase.
+     * @param durationNanos The time the phase took, in nanoseconds.
+     */
+    default void phaseCompleted(OceanBasePhase phase, long durationNanos) {
+    }
+
+    /**
+     * Called once the migration lock has been acquired.
+     *
+     * @param lock       The name of the lock.
+     * @param waitMillis How long acquiring the lock took, in milliseconds.
+     * @param holder     The connection id or owner that held the lock while waiting, or {@code null} if the lock was
+     *                   never contended.
+     */
+    default void lockAcquired(String lock, long waitMillis, String holder) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+
+import java.sql.Connection;
+
+/**
+ * Applies the {@link OceanBaseOfflineDdlPolicy} to the statements executed on a connection, before OceanBase starts
+ * rewriting a table. A statement marked with {@value #MARKER} is known to be offline and always executed. Statements
+ * deferred by {@link OceanBaseParallelDdl} are checked as they are deferred instead.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseOfflineDdlGuard implements OceanBaseStatementListener {
+    /**
+     * Acknowledges that the statement is offline DDL, so that it is executed whatever the policy.
+     */
+    public static final String MARKER = "/* flyway:offline */";
+
+    private final OceanBaseDatabase database;
+    private final Connection connection;
+    private final OceanBaseOfflineDdlPolicy policy;
+    private final boolean parallelDdl;
+    private OceanBaseDdlClassifier classifier;
+
+    /**
+     * Creates a new guard.
+     *
+     * @param database   The database-specific support, which provides the policy and the server version.
+     * @param connection The raw connection the guarded statements are executed on.
+     */
+    OceanBaseOfflineDdlGuard(OceanBaseDatabase database, Connection connection) {
+        this.database = database;
+        this.connection = connection;
+        this.policy = database.getConfigurationExtension().getDdlOfflinePolicy();
+        this.parallelDdl = database.getConfigurationExtension().getDdlParallelism() > 1;
+    }
+
+    @Override
+    public void beforeExecute(String sql) {
+        if (!parallelDdl || !sql.contains(OceanBaseParallelDdl.MARKER)) {
+            check(sql);
+        }
+    }
+
+    /**
+     * Applies the policy to this statement.
+     *
+     * @param sql The statement about to be executed.
+     * @throws FlywayException if the statement is offline DDL and the policy refuses it.
+     */
+    void check(String sql) {
+        if (policy == OceanBaseOfflineDdlPolicy.IGNORE) {
+            return;
+        }
+        String keyword = OceanBaseSessionTracker.firstKeyword(sql);
+        if (!"ALTER".equals(keyword)) {
+            return;
+        }
+        if (classifier == null) {
+            classifier = new OceanBaseDdlClassifier(database.getOceanBaseVersion());
+        }
+        OceanBaseDdlClassifier.Classification classification =
+                classifier.classify(sql, OceanBaseDdlClassifier.columnTypes(connection));
+        if (classification == null || classification.getCostClass() != OceanBaseDdlClassifier.CostClass.OFFLINE) {
+            return;
+        }
+        String statement = sql.replaceAll("\\s+", " ").trim();
+        if (sql.contains(MARKER)) {
+            LOG.info("Executing offline DDL, which " + classification.getReason() + ": " + statement);
+        } else if (policy == OceanBaseOfflineDdlPolicy.WARN) {
+            LOG.warn("Offline DDL, which " + classification.getReason()
+                    + ", blocks writes to the table until it completes: " + statement);
+        } else {
+            throw new FlywayException("Refusing to execute offline DDL, which " + classification.getReason()
+                    + " and blocks writes to the table until it completes: " + statement
+                    + "\nMark the statement with " + MARKER + " to execute it anyway");
+        }
+    }
+}
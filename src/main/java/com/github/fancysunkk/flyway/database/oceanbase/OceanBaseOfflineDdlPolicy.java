@@ -0,0 +1,24 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+/**
+ * What happens to DDL statements that OceanBase executes offline, rewriting the table and blocking writes to it.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public enum OceanBaseOfflineDdlPolicy {
+    /**
+     * Offline DDL is executed like any other statement.
+     */
+    IGNORE,
+
+    /**
+     * Offline DDL is executed, with a warning naming the clause that makes it offline.
+     */
+    WARN,
+
+    /**
+     * Offline DDL is refused unless the statement is marked with {@value OceanBaseOfflineDdlGuard#MARKER}.
+     */
+    FAIL
+}
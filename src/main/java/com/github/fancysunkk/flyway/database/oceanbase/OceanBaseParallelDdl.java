@@ -0,0 +1,327 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.jdbc.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes consecutive DDL statements marked with {@value #MARKER} concurrently over additional connections, so that
+ * index builds on different tables within one migration overlap instead of adding up. Marked statements are deferred
+ * until the next unmarked statement, the end of the script, commit or close on the connection, and then executed
+ * together, while a rollback discards them. Marked statements on the same table run one after the other on the same
+ * connection, as OceanBase would serialize them anyway.
+ * <p>
+ * As marked statements only run at the next barrier, a failure is reported there, listing every statement that failed.
+ * The end of a script being a barrier, a failure always fails the migration that deferred the statement.
+ * <p>
+ * With {@code flyway.oceanbase.ddl.submit}, unmarked index builds and table alterations are submitted one at a time
+ * on a DDL connection of their own, so that the migration's connection holds no statement open for the whole build.
+ * The migration waits for the build to complete, checking that its own connection is still alive in the meantime,
+ * while the monitor of the DDL connection extends that connection's timeout and reports progress.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseParallelDdl {
+    /**
+     * Marks a DDL statement in a SQL migration as independent of the statements around it.
+     */
+    public static final String MARKER = "/* flyway:parallel */";
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final Pattern TARGET_TABLE = Pattern.compile(
+            "\\b(?:ON|TABLE)\\s+(`[^`]+`|[\\w$]+)(?:\\s*\\.\\s*(`[^`]+`|[\\w$]+))?", Pattern.CASE_INSENSITIVE);
+
+    private final OceanBaseDatabase database;
+    private final int parallelism;
+    private final OceanBaseOfflineDdlGuard offlineDdlGuard;
+    private final boolean submit;
+    private final List<String> pending = new ArrayList<>();
+    private OceanBaseDdlClassifier classifier;
+
+    /**
+     * Creates a new parallel DDL executor.
+     *
+     * @param database        The database-specific support, used to open the additional connections.
+     * @param parallelism     The maximum number of connections executing statements concurrently.
+     * @param offlineDdlGuard The guard checking statements as they are deferred, so that a refused one stops the
+     *                        migration before any statement deferred with it is executed.
+     * @param submit          Whether to execute index builds and table alterations with {@link #submit}.
+     */
+    OceanBaseParallelDdl(OceanBaseDatabase database, int parallelism, OceanBaseOfflineDdlGuard offlineDdlGuard,
+                         boolean submit) {
+        this.database = database;
+        this.parallelism = parallelism;
+        this.offlineDdlGuard = offlineDdlGuard;
+        this.submit = submit;
+    }
+
+    /**
+     * @param sql The statement about to be executed.
+     * @return Whether it should be deferred with {@link #defer} instead.
+     */
+    boolean accepts(String sql) {
+        return parallelism > 1 && sql.contains(MARKER);
+    }
+
+    /**
+     * @param sql The statement about to be executed, which is not deferred.
+     * @return Whether it should be executed with {@link #submit} instead.
+     */
+    boolean submits(String sql) {
+        if (!submit) {
+            return false;
+        }
+        String keyword = OceanBaseSessionTracker.firstKeyword(sql);
+        if (!"CREATE".equals(keyword) && !"ALTER".equals(keyword)) {
+            return false;
+        }
+        if (classifier == null) {
+            classifier = new OceanBaseDdlClassifier(database.getOceanBaseVersion());
+        }
+        return OceanBaseDdlMonitor.isLong(classifier, sql);
+    }
+
+    /**
+     * Executes this statement on a DDL connection of its own and waits for it to complete.
+     *
+     * @param connection The connection the statement was submitted on, whose current schema the DDL connection uses
+     *                   and which is kept alive while waiting.
+     * @param sql        The statement.
+     * @throws SQLException when the statement failed.
+     */
+    void submit(Connection connection, String sql) throws SQLException {
+        offlineDdlGuard.check(sql);
+        String catalog = connection.getCatalog();
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flyway-oceanbase-ddl-submit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Failure> failures;
+        try {
+            Future<List<Failure>> future = executor.submit(() -> executeGroup(Collections.singletonList(sql), catalog));
+            while (true) {
+                try {
+                    failures = future.get(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (!connection.isValid((int) KEEP_ALIVE_SECONDS)) {
+                        LOG.warn("The migration connection was lost while waiting for a submitted DDL statement");
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new FlywayException("Unable to execute submitted DDL statement", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while waiting for submitted DDL statement", e);
+        } finally {
+            executor.shutdown();
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0).exception;
+        }
+        LOG.debug("Executed in " + (System.nanoTime() - start) / 1_000_000 + " ms on a DDL connection of its own: " + sql);
+    }
+
+    /**
+     * Defers this statement until the next {@link #flush}.
+     *
+     * @param sql The statement.
+     */
+    void defer(String sql) {
+        offlineDdlGuard.check(sql);
+        pending.add(sql);
+    }
+
+    /**
+     * Drops the deferred statements without executing them, as the transaction or script they belong to failed.
+     */
+    void discard() {
+        if (!pending.isEmpty()) {
+            LOG.debug("Discarding " + pending.size() + " deferred DDL statements");
+            pending.clear();
+        }
+    }
+
+    /**
+     * Executes the deferred statements, if any, and waits for all of them to complete.
+     *
+     * @param connection The connection the statements were deferred on, whose current schema the additional
+     *                   connections use.
+     * @param listener   The listener of that connection, notified of a statement executed on it.
+     * @throws SQLException listing every statement that failed.
+     */
+    void flush(Connection connection, OceanBaseStatementListener listener) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> statements = new ArrayList<>(pending);
+        pending.clear();
+        if (statements.size() == 1) {
+            String sql = statements.get(0);
+            listener.beforeExecute(sql);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            } finally {
+                listener.afterExecute(sql);
+            }
+            return;
+        }
+        execute(statements, connection.getCatalog());
+    }
+
+    private void execute(List<String> statements, String catalog) throws SQLException {
+        Map<String, List<String>> byTable = new LinkedHashMap<>();
+        for (String statement : statements) {
+            byTable.computeIfAbsent(targetTable(statement, catalog), k -> new ArrayList<>()).add(statement);
+        }
+        List<List<String>> groups = new ArrayList<>(byTable.values());
+        int connections = Math.min(parallelism, groups.size());
+
+        long start = System.nanoTime();
+        List<Failure> failures = new ArrayList<>();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "flyway-oceanbase-ddl-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<Failure>>> futures = new ArrayList<>();
+            for (List<String> group : groups) {
+                futures.add(executor.submit(() -> executeGroup(group, catalog)));
+            }
+            for (Future<List<Failure>> future : futures) {
+                failures.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new FlywayException("Unable to execute DDL statements in parallel", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while executing DDL statements in parallel", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        LOG.info("Executed " + statements.size() + " DDL statements on " + connections + " connections in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        if (!failures.isEmpty()) {
+            throw toException(failures, statements.size());
+        }
+    }
+
+    private List<Failure> executeGroup(List<String> group, String catalog) {
+        List<Failure> failures = new ArrayList<>();
+        Connection connection = null;
+        try {
+            connection = database.openDdlConnection();
+            if (catalog != null) {
+                connection.setCatalog(catalog);
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : group) {
+                    if (!failures.isEmpty()) {
+                        // A later statement on the same table may depend on the one that failed
+                        failures.add(new Failure(sql, null));
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        statement.execute(sql);
+                        LOG.debug("Executed in " + (System.nanoTime() - start) / 1_000_000 + " ms: " + sql);
+                    } catch (SQLException e) {
+                        failures.add(new Failure(sql, e));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            for (String sql : group) {
+                failures.add(new Failure(sql, e));
+            }
+        } finally {
+            JdbcUtils.closeConnection(connection);
+        }
+        return failures;
+    }
+
+    private static SQLException toException(List<Failure> failures, int total) {
+        StringBuilder message = new StringBuilder();
+        message.append(failures.size()).append(" of ").append(total).append(" parallel DDL statements failed:");
+        SQLException first = null;
+        for (Failure failure : failures) {
+            message.append("\n- ").append(failure.sql.replace(MARKER, "").trim()).append("\n  ");
+            if (failure.exception == null) {
+                message.append("Skipped as an earlier statement on the same table failed");
+            } else {
+                message.append(failure.exception.getMessage())
+                        .append(" (SQL State: ").append(failure.exception.getSQLState())
+                        .append(", Error Code: ").append(failure.exception.getErrorCode()).append(")");
+                if (first == null) {
+                    first = failure.exception;
+                }
+            }
+        }
+        SQLException exception = first == null
+                ? new SQLException(message.toString())
+                : new SQLException(message.toString(), first.getSQLState(), first.getErrorCode(), first);
+        for (Failure failure : failures) {
+            if (failure.exception != null && failure.exception != first) {
+                exception.setNextException(failure.exception);
+            }
+        }
+        return exception;
+    }
+
+    /**
+     * @param catalog The current schema, qualifying unqualified table names, or {@code null} if none is selected.
+     * @return The table this statement changes as {@code schema.table}, or only {@code table} if neither the statement
+     * nor the connection name its schema, or the statement itself if it cannot be determined.
+     */
+    static String targetTable(String sql, String catalog) {
+        Matcher matcher = TARGET_TABLE.matcher(sql);
+        if (!matcher.find()) {
+            return sql;
+        }
+        String schema = matcher.group(2) == null ? catalog : unquote(matcher.group(1));
+        String table = unquote(matcher.group(2) == null ? matcher.group(1) : matcher.group(2));
+        return schema == null ? table : schema.toLowerCase(Locale.ENGLISH) + "." + table;
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.replace("`", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    private static class Failure {
+        private final String sql;
+        private final SQLException exception;
+
+        Failure(String sql, SQLException exception) {
+            this.sql = sql;
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+/**
+ * The part of the plugin's work a statement belongs to, as reported to {@link OceanBaseMetricsListener}s and JFR.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public enum OceanBasePhase {
+    /**
+     * Reading the server version, capabilities and original session state.
+     */
+    PROBE,
+
+    /**
+     * Acquiring and releasing the migration lock.
+     */
+    LOCK,
+
+    /**
+     * Restoring the original session state after a migration.
+     */
+    RESTORE,
+
+    /**
+     * Reading the objects of a schema.
+     */
+    CATALOG,
+
+    /**
+     * Dropping the objects of a schema.
+     */
+    CLEAN,
+
+    /**
+     * Everything else, such as the migrations themselves and the schema history table.
+     */
+    OTHER
+}
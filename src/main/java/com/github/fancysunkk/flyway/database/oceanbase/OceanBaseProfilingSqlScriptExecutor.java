@@ -0,0 +1,86 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.internal.callback.CallbackExecutor;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Result;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.sqlscript.SqlScript;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+
+import java.sql.SQLException;
+
+/**
+ * Executes SQL scripts like {@link OceanBaseSqlScriptExecutor}, recording every statement in an
+ * {@link OceanBaseStatementProfile}.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseProfilingSqlScriptExecutor extends OceanBaseSqlScriptExecutor {
+    private final OceanBaseStatementProfile profile;
+
+    /**
+     * The rows affected by the statement being executed, or -1 if unknown.
+     */
+    private long rows;
+
+    OceanBaseProfilingSqlScriptExecutor(JdbcTemplate jdbcTemplate, CallbackExecutor callbackExecutor, boolean undo,
+                                        boolean outputQueryResults, StatementInterceptor statementInterceptor,
+                                        OceanBaseStatementProfile profile) {
+        super(jdbcTemplate, callbackExecutor, undo, outputQueryResults, statementInterceptor);
+        this.profile = profile;
+    }
+
+    @Override
+    protected void executeStatement(JdbcTemplate jdbcTemplate, SqlScript sqlScript, SqlStatement sqlStatement) {
+        rows = -1;
+        long start = System.nanoTime();
+        boolean failed = true;
+        if (profile.isTraceIds()) {
+            OceanBaseJdbcProxy.captureTraceIds(jdbcTemplate.getConnection());
+        }
+        try {
+            super.executeStatement(jdbcTemplate, sqlScript, sqlStatement);
+            failed = false;
+        } finally {
+            long durationNanos = System.nanoTime() - start;
+            String script = sqlScript.getResource().getRelativePath();
+            // Flyway's own scripts, such as the one creating the schema history table, have no path
+            profile.record(script == null || script.isEmpty() ? "(flyway)" : script, sqlStatement.getLineNumber(),
+                    sqlStatement.getSql(), durationNanos, rows, traceId(jdbcTemplate, failed), failed);
+        }
+    }
+
+    @Override
+    protected void handleResults(Results results) {
+        for (Result result : results.getResults()) {
+            if (result.getUpdateCount() >= 0) {
+                rows = Math.max(rows, 0) + result.getUpdateCount();
+            }
+        }
+        super.handleResults(results);
+    }
+
+    /**
+     * @return The trace ID of the statement just executed, or {@code null} if unknown. It is read by the connection
+     * right after the statement, as the listeners that follow may run SQL of their own on the session.
+     */
+    private String traceId(JdbcTemplate jdbcTemplate, boolean failed) {
+        if (!profile.isTraceIds()) {
+            return null;
+        }
+        try {
+            return OceanBaseJdbcProxy.takeTraceId(jdbcTemplate.getConnection());
+        } catch (SQLException e) {
+            // A failed statement may have broken the connection, otherwise the server has no trace IDs
+            if (!failed) {
+                LOG.debug("Unable to read trace IDs, no longer profiling them: " + e.getMessage());
+                profile.disableTraceIds();
+            }
+            return null;
+        }
+    }
+}
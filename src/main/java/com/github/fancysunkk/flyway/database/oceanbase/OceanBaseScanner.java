@@ -0,0 +1,41 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.flywaydb.core.api.ResourceProvider;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.flywaydb.core.internal.scanner.LocationScannerCache;
+import org.flywaydb.core.internal.scanner.ResourceNameCache;
+import org.flywaydb.core.internal.scanner.Scanner;
+
+import java.util.Arrays;
+
+/**
+ * Finds the resources and Java migrations of a configuration for the plugin's own resolvers and tools, the way Flyway
+ * does for its commands.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class OceanBaseScanner {
+    /**
+     * @return The resource provider of this configuration, or a scanner of its locations.
+     */
+    static ResourceProvider getResourceProvider(Configuration configuration) {
+        if (configuration.getResourceProvider() != null) {
+            return configuration.getResourceProvider();
+        }
+        return scan(configuration);
+    }
+
+    /**
+     * @return A scanner of the resources and Java migrations in the locations of this configuration.
+     */
+    static Scanner<JavaMigration> scan(Configuration configuration) {
+        return new Scanner<>(JavaMigration.class, Arrays.asList(configuration.getLocations()),
+                configuration.getClassLoader(), configuration.getEncoding(), configuration.isDetectEncoding(), false,
+                new ResourceNameCache(), new LocationScannerCache(), configuration.isFailOnMissingLocations());
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cleans a schema by dropping and creating it again, with a single pair of DDL statements instead of one per object.
+ * The schema keeps its default character set and collation, the schema-level grants of the configured grantees are
+ * restored, and the connection selects it again if it was selected. When the user lacks the privileges to do so, the
+ * schema is left alone so that it can be cleaned object by object.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseSchemaRecreator {
+    private static final Pattern GRANT = Pattern.compile("^GRANT\\s+(.+?)\\s+ON\\s+(\\S+)\\s+TO\\s+.*?(\\bWITH\\s+GRANT\\s+OPTION)?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final OceanBaseDatabase database;
+    private final JdbcTemplate jdbcTemplate;
+    private final Set<String> grantees = new HashSet<>();
+
+    /**
+     * Creates a new schema recreator.
+     *
+     * @param database     The database-specific support.
+     * @param jdbcTemplate The Jdbc Template of the connection performing the clean.
+     * @param grantees     The users whose grants on the schema are restored, such as {@code 'app'@'%'}.
+     */
+    OceanBaseSchemaRecreator(OceanBaseDatabase database, JdbcTemplate jdbcTemplate, String[] grantees) {
+        this.database = database;
+        this.jdbcTemplate = jdbcTemplate;
+        for (String grantee : grantees) {
+            this.grantees.add(normalizeGrantee(grantee));
+        }
+    }
+
+    /**
+     * Drops and creates this schema again.
+     *
+     * @param schema The schema to clean.
+     * @return {@code false} if the schema was left alone as the user lacks the privileges to recreate it.
+     * @throws SQLException when the schema could not be recreated.
+     */
+    boolean recreate(MySQLSchema schema) throws SQLException {
+        long start = System.nanoTime();
+        String name = schema.getName();
+        String missingPrivileges = missingPrivileges(name);
+        if (missingPrivileges != null) {
+            LOG.info("Unable to clean schema " + schema + " by recreating it (" + missingPrivileges
+                    + "), dropping its objects one by one instead");
+            return false;
+        }
+
+        List<String[]> options = jdbcTemplate.query("SELECT default_character_set_name, default_collation_name"
+                        + " FROM information_schema.schemata WHERE schema_name=?",
+                rs -> new String[]{rs.getString(1), rs.getString(2)}, name);
+        if (options.isEmpty()) {
+            return false;
+        }
+        Map<String, List<String>> grants = grants(name);
+        String currentSchema = jdbcTemplate.queryForString("SELECT DATABASE()");
+
+        String quoted = database.quote(name);
+        StringBuilder create = new StringBuilder("CREATE SCHEMA ").append(quoted);
+        if (options.get(0)[0] != null) {
+            create.append(" DEFAULT CHARACTER SET ").append(options.get(0)[0]);
+        }
+        if (options.get(0)[1] != null) {
+            create.append(" DEFAULT COLLATE ").append(options.get(0)[1]);
+        }
+        try {
+            jdbcTemplate.execute("DROP SCHEMA " + quoted);
+            try {
+                jdbcTemplate.execute(create.toString());
+            } catch (SQLException e) {
+                throw new FlywaySqlException("Schema " + schema + " was dropped but could not be created again", e);
+            }
+            for (Map.Entry<String, List<String>> grant : grants.entrySet()) {
+                jdbcTemplate.execute("GRANT " + String.join(", ", grant.getValue()) + " ON " + quoted + ".* TO "
+                        + grant.getKey());
+            }
+            if (name.equals(currentSchema)) {
+                jdbcTemplate.execute("USE " + quoted);
+            }
+        } finally {
+            database.getCatalogCache().invalidate();
+        }
+        LOG.info("Cleaned schema " + schema + " by recreating it in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
+    }
+
+    /**
+     * Checks the grants of the current user for DROP and CREATE on this schema, and GRANT OPTION if grants have to be
+     * restored. Privileges obtained through roles are not seen, which only means the schema is cleaned object by
+     * object.
+     *
+     * @return The missing privileges, or {@code null} if none are missing.
+     */
+    private String missingPrivileges(String schema) {
+        List<String> lines;
+        try {
+            lines = jdbcTemplate.queryForStringList("SHOW GRANTS");
+        } catch (SQLException e) {
+            return "unable to read the grants of the current user: " + e.getMessage();
+        }
+        Set<String> privileges = new HashSet<>();
+        for (String line : lines) {
+            Matcher grant = GRANT.matcher(line.trim());
+            if (!grant.matches() || !appliesTo(grant.group(2), schema)) {
+                continue;
+            }
+            for (String privilege : grant.group(1).split(",")) {
+                privilege = privilege.trim().toUpperCase(Locale.ENGLISH).replaceAll("\\s+", " ");
+                if ("ALL".equals(privilege) || "ALL PRIVILEGES".equals(privilege)) {
+                    privileges.addAll(Arrays.asList("CREATE", "DROP"));
+                } else {
+                    privileges.add(privilege);
+                }
+            }
+            if (grant.group(3) != null) {
+                privileges.add("GRANT OPTION");
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (String privilege : grantees.isEmpty()
+                ? Arrays.asList("CREATE", "DROP") : Arrays.asList("CREATE", "DROP", "GRANT OPTION")) {
+            if (!privileges.contains(privilege)) {
+                missing.add(privilege);
+            }
+        }
+        return missing.isEmpty() ? null : "missing " + String.join(", ", missing) + " privilege";
+    }
+
+    private static boolean appliesTo(String target, String schema) {
+        String unquoted = target.replace("`", "");
+        return "*.*".equals(unquoted) || (schema + ".*").equals(unquoted);
+    }
+
+    /**
+     * @return The schema-level privileges of the configured grantees, by grantee.
+     */
+    private Map<String, List<String>> grants(String schema) throws SQLException {
+        Map<String, List<String>> grants = new LinkedHashMap<>();
+        if (grantees.isEmpty()) {
+            return grants;
+        }
+        List<String[]> rows = jdbcTemplate.query("SELECT grantee, privilege_type FROM information_schema.schema_privileges"
+                + " WHERE table_schema=?", rs -> new String[]{rs.getString(1), rs.getString(2)}, schema);
+        for (String[] row : rows) {
+            if (grantees.contains(normalizeGrantee(row[0]))) {
+                grants.computeIfAbsent(row[0], grantee -> new ArrayList<>()).add(row[1]);
+            }
+        }
+        return grants;
+    }
+
+    /**
+     * @return This grantee as {@code user@host} without quotes, with {@code %} as host if it names none.
+     */
+    private static String normalizeGrantee(String grantee) {
+        String unquoted = grantee.replace("'", "").replace("`", "").replace("\"", "").trim();
+        return unquoted.indexOf('@') < 0 ? unquoted + "@%" : unquoted;
+    }
+}
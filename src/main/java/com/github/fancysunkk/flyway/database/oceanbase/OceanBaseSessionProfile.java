@@ -0,0 +1,224 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The session variables migrations run with: query and transaction timeouts and parallel degrees. The configured
+ * profile is applied when the connection is opened and re-applied after every migration, and the session's own values
+ * are restored when the connection is closed. A statement can override the profile until the end of its migration
+ * with a directive such as <code>/&#42; flyway:session queryTimeout=3600 parallelDegree=8 &#42;/</code>.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseSessionProfile implements OceanBaseStatementListener {
+    /**
+     * Starts a directive overriding the profile for the rest of the migration.
+     */
+    public static final String MARKER = "/* flyway:session";
+
+    private static final Pattern DIRECTIVE = Pattern.compile("/\\*\\s*flyway:session\\b(.*?)\\*/", Pattern.DOTALL);
+    private static final Pattern ASSIGNMENT = Pattern.compile("(\\w+)\\s*=\\s*(\\d+)");
+
+    /**
+     * A setting of the profile, named like its configuration property and directive key.
+     */
+    enum Setting {
+        QUERY_TIMEOUT("queryTimeout", 1_000_000L, "ob_query_timeout"),
+        TRX_TIMEOUT("trxTimeout", 1_000_000L, "ob_trx_timeout"),
+        PARALLEL_DEGREE("parallelDegree", 1, "_force_parallel_query_dop", "_force_parallel_dml_dop"),
+        DDL_PARALLEL_DEGREE("ddlParallelDegree", 1, "_force_parallel_ddl_dop");
+
+        private final String key;
+        private final long scale;
+        private final String[] variables;
+
+        Setting(String key, long scale, String... variables) {
+            this.key = key;
+            this.scale = scale;
+            this.variables = variables;
+        }
+
+        static Setting of(String key) {
+            for (Setting setting : values()) {
+                if (setting.key.equals(key)) {
+                    return setting;
+                }
+            }
+            List<String> keys = new ArrayList<>();
+            for (Setting setting : values()) {
+                keys.add(setting.key);
+            }
+            throw new FlywayException("Unknown session setting: " + key + " (should be one of " + keys + ")");
+        }
+    }
+
+    private final Connection connection;
+
+    /**
+     * The values the session is set to at the start of every migration, by variable.
+     */
+    private final Map<String, Long> baseline = new LinkedHashMap<>();
+
+    /**
+     * The session's own values of the variables changed so far, by variable.
+     */
+    private final Map<String, Long> originals = new LinkedHashMap<>();
+
+    private boolean overridden;
+
+    /**
+     * Creates a new profile from the {@code flyway.oceanbase.session.*} configuration.
+     *
+     * @param extension  The configuration.
+     * @param connection The raw connection the profile is applied to.
+     */
+    OceanBaseSessionProfile(OceanBaseConfigurationExtension extension, Connection connection) {
+        this.connection = connection;
+        put(baseline, Setting.QUERY_TIMEOUT, extension.getSessionQueryTimeout());
+        put(baseline, Setting.TRX_TIMEOUT, extension.getSessionTrxTimeout());
+        put(baseline, Setting.PARALLEL_DEGREE, extension.getSessionParallelDegree());
+        put(baseline, Setting.DDL_PARALLEL_DEGREE, extension.getSessionDdlParallelDegree());
+    }
+
+    private static void put(Map<String, Long> values, Setting setting, long value) {
+        if (value > 0) {
+            for (String variable : setting.variables) {
+                values.put(variable, value * setting.scale);
+            }
+        }
+    }
+
+    /**
+     * Applies the configured profile to the session, remembering the values it replaces.
+     */
+    void apply() {
+        if (baseline.isEmpty()) {
+            return;
+        }
+        try {
+            originals.putAll(read(baseline.keySet().toArray(new String[0])));
+            set(baseline);
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to apply the session profile " + baseline, e);
+        }
+    }
+
+    @Override
+    public void beforeExecute(String sql) {
+        if (!sql.contains(MARKER)) {
+            return;
+        }
+        Matcher directive = DIRECTIVE.matcher(sql);
+        Map<String, Long> values = new LinkedHashMap<>();
+        while (directive.find()) {
+            Matcher assignment = ASSIGNMENT.matcher(directive.group(1));
+            while (assignment.find()) {
+                put(values, Setting.of(assignment.group(1)), Long.parseLong(assignment.group(2)));
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> unknown = new ArrayList<>();
+            for (String variable : values.keySet()) {
+                if (!originals.containsKey(variable)) {
+                    unknown.add(variable);
+                }
+            }
+            if (!unknown.isEmpty()) {
+                Map<String, Long> read = read(unknown.toArray(new String[0]));
+                originals.putAll(read);
+                for (Map.Entry<String, Long> entry : read.entrySet()) {
+                    baseline.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            set(values);
+            overridden = true;
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to apply session directive " + values, e);
+        }
+    }
+
+    /**
+     * Appends the assignments bringing the session back to the profile to this SET statement, if needed.
+     *
+     * @param setStatement            The assignments of the SET statement restoring the session so far.
+     * @param sessionVariablesChanged Whether the migration may have changed session variables itself.
+     */
+    void appendRestore(StringBuilder setStatement, boolean sessionVariablesChanged) {
+        if (overridden || sessionVariablesChanged) {
+            appendAssignments(setStatement, baseline);
+        }
+        overridden = false;
+    }
+
+    @Override
+    public void beforeClose() {
+        Map<String, Long> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : originals.entrySet()) {
+            if (!entry.getValue().equals(baseline.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            set(changed);
+        } catch (SQLException e) {
+            LOG.warn("Unable to restore session variables " + changed + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, Long> read(String... variables) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < variables.length; i++) {
+            query.append(i == 0 ? "@@" : ", @@").append(variables[i]);
+        }
+        Map<String, Long> values = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query.toString())) {
+            if (!resultSet.next()) {
+                throw new SQLException("No values returned for " + Arrays.toString(variables));
+            }
+            for (int i = 0; i < variables.length; i++) {
+                values.put(variables[i], resultSet.getLong(i + 1));
+            }
+        }
+        return values;
+    }
+
+    private void set(Map<String, Long> values) throws SQLException {
+        StringBuilder setStatement = new StringBuilder();
+        appendAssignments(setStatement, values);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET " + setStatement);
+        }
+    }
+
+    private static void appendAssignments(StringBuilder setStatement, Map<String, Long> values) {
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            if (setStatement.length() > 0) {
+                setStatement.append(",");
+            }
+            setStatement.append(entry.getKey()).append("=").append(entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks whether the statements executed on a connection may have changed its session state, so that restoring
+ * the original state can be skipped or narrowed when they could not have. The current schema is tracked as well, so
+ * that it does not have to be queried or switched when it is already known.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseSessionTracker implements OceanBaseStatementListener {
+    private static final Pattern DROP_SCHEMA = Pattern.compile("\\bDROP\\s+(?:SCHEMA|DATABASE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private volatile boolean sessionVariablesChanged;
+    private volatile boolean userVariablesChanged;
+    private volatile boolean currentSchemaKnown;
+    private volatile String currentSchema;
+
+    @Override
+    public void beforeExecute(String sql) {
+        String keyword = firstKeyword(sql);
+        if (currentSchemaKnown && ("USE".equals(keyword) || ("DROP".equals(keyword) && DROP_SCHEMA.matcher(sql).find()))) {
+            currentSchemaKnown = false;
+        }
+        if (sessionVariablesChanged && userVariablesChanged) {
+            return;
+        }
+        if ("CALL".equals(keyword) || "EXECUTE".equals(keyword) || "PREPARE".equals(keyword)) {
+            // Stored procedures and dynamic SQL can do anything
+            sessionVariablesChanged = true;
+            userVariablesChanged = true;
+            currentSchemaKnown = false;
+            return;
+        }
+        if ("SET".equals(keyword) || sql.contains("/*!")) {
+            sessionVariablesChanged = true;
+        }
+        if (sql.indexOf('@') >= 0) {
+            userVariablesChanged = true;
+        }
+    }
+
+    @Override
+    public void catalogChanged(String catalog) {
+        currentSchemaChanged(catalog);
+    }
+
+    /**
+     * @return Whether the current schema is known without querying it.
+     */
+    boolean isCurrentSchemaKnown() {
+        return currentSchemaKnown;
+    }
+
+    /**
+     * @return The current schema, or {@code null} if none is selected. Only meaningful if it is known.
+     */
+    String getCurrentSchema() {
+        return currentSchema;
+    }
+
+    /**
+     * Records the current schema, as read from or switched on the server.
+     *
+     * @param schema The current schema, or {@code null} if none is selected.
+     */
+    void currentSchemaChanged(String schema) {
+        currentSchema = schema;
+        currentSchemaKnown = true;
+    }
+
+    /**
+     * @return Whether session variables such as foreign_key_checks may have changed.
+     */
+    boolean isSessionVariablesChanged() {
+        return sessionVariablesChanged;
+    }
+
+    /**
+     * @return Whether user-defined variables may have been assigned.
+     */
+    boolean isUserVariablesChanged() {
+        return userVariablesChanged;
+    }
+
+    /**
+     * Marks the session state as matching the original state again.
+     */
+    void reset() {
+        sessionVariablesChanged = false;
+        userVariablesChanged = false;
+    }
+
+    /**
+     * Extracts the first keyword of this statement, skipping leading whitespace and comments.
+     */
+    static String firstKeyword(String sql) {
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '/' && sql.startsWith("/*", i) && !sql.startsWith("/*!", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        int start = i;
+        while (i < length && Character.isLetter(sql.charAt(i))) {
+            i++;
+        }
+        return sql.substring(start, i).toUpperCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import org.flywaydb.core.internal.callback.CallbackExecutor;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.sqlscript.DefaultSqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.SqlScript;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Executes SQL scripts like Flyway does, then the DDL statements deferred by the script for parallel execution, so
+ * that they complete within the script's migration: a failure fails that migration, and their time counts towards
+ * its execution time. The deferred statements of a script that failed are discarded.
+ * <p>
+ * Statements chunked by the script keep their progress under the script's path, and the progress left by the script
+ * is deleted once it completed.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public class OceanBaseSqlScriptExecutor extends DefaultSqlScriptExecutor {
+    private final JdbcTemplate jdbcTemplate;
+
+    OceanBaseSqlScriptExecutor(JdbcTemplate jdbcTemplate, CallbackExecutor callbackExecutor, boolean undo,
+                               boolean outputQueryResults, StatementInterceptor statementInterceptor) {
+        super(jdbcTemplate, callbackExecutor, undo, false, outputQueryResults, statementInterceptor);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void execute(SqlScript sqlScript) {
+        Connection connection = jdbcTemplate.getConnection();
+        String script = sqlScript.getResource().getRelativePath();
+        OceanBaseJdbcProxy.setScript(connection, script);
+        try {
+            super.execute(sqlScript);
+        } catch (RuntimeException e) {
+            OceanBaseJdbcProxy.discardDeferred(connection);
+            OceanBaseJdbcProxy.setScript(connection, null);
+            throw e;
+        }
+        try {
+            OceanBaseJdbcProxy.flushDeferred(connection);
+        } catch (SQLException e) {
+            OceanBaseJdbcProxy.setScript(connection, null);
+            throw new FlywaySqlException("Unable to execute the parallel DDL statements of " + script, e);
+        }
+        try {
+            OceanBaseJdbcProxy.completeScript(connection);
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to delete the chunk progress of " + script, e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import java.util.regex.Pattern;
+
+/**
+ * The kind of a statement, as reported to {@link OceanBaseMetricsListener}s and JFR.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public enum OceanBaseStatementCategory {
+    QUERY,
+    DML,
+    DDL,
+    LOCK,
+    SESSION,
+    TRANSACTION,
+    OTHER;
+
+    private static final Pattern LOCKING_QUERY = Pattern.compile(
+            "\\b(GET_LOCK|RELEASE_LOCK|IS_USED_LOCK|IS_FREE_LOCK)\\s*\\(|\\bFOR\\s+UPDATE\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Determines the category of this statement from its first keyword.
+     *
+     * @param sql The statement.
+     * @return The category.
+     */
+    static OceanBaseStatementCategory of(String sql) {
+        switch (OceanBaseSessionTracker.firstKeyword(sql)) {
+            case "SELECT":
+                return LOCKING_QUERY.matcher(sql).find() ? LOCK : QUERY;
+            case "SHOW":
+            case "DESC":
+            case "DESCRIBE":
+            case "EXPLAIN":
+            case "WITH":
+                return QUERY;
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "REPLACE":
+            case "MERGE":
+            case "LOAD":
+                return DML;
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+            case "TRUNCATE":
+            case "RENAME":
+            case "GRANT":
+            case "REVOKE":
+            case "PURGE":
+            case "FLASHBACK":
+                return DDL;
+            case "LOCK":
+            case "UNLOCK":
+                return LOCK;
+            case "SET":
+            case "USE":
+                return SESSION;
+            case "BEGIN":
+            case "START":
+            case "COMMIT":
+            case "ROLLBACK":
+            case "SAVEPOINT":
+            case "RELEASE":
+            case "XA":
+                return TRANSACTION;
+            default:
+                return OTHER;
+        }
+    }
+}
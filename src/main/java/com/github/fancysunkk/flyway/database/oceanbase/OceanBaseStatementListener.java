@@ -0,0 +1,38 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+/**
+ * Observes the SQL executed on a connection wrapped by {@link OceanBaseJdbcProxy}.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+public interface OceanBaseStatementListener {
+    /**
+     * Called before a statement is sent to the server.
+     *
+     * @param sql The SQL about to be executed.
+     */
+    void beforeExecute(String sql);
+
+    /**
+     * Called once a statement has been executed, whether it succeeded or not.
+     *
+     * @param sql The SQL that was executed.
+     */
+    default void afterExecute(String sql) {
+    }
+
+    /**
+     * Called once the current schema has been switched with {@link java.sql.Connection#setCatalog}.
+     *
+     * @param catalog The new current schema.
+     */
+    default void catalogChanged(String catalog) {
+    }
+
+    /**
+     * Called before the connection is closed.
+     */
+    default void beforeClose() {
+    }
+}
@@ -0,0 +1,310 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Profiles the statements executed by the SQL migrations of one Flyway command: every statement is written to the
+ * profile file as soon as it completed, with its script, line, category, duration, rows and OceanBase trace ID, and
+ * only the slowest ones are kept in memory, to be logged once the command completed. Memory use therefore does not
+ * grow with the number of statements.
+ * <p>
+ * A profile is opened by each {@link OceanBaseDatabase} and applies to the scripts executed on the thread that opened
+ * it, until it is closed. Profiles written concurrently, such as those of the targets of an {@link OceanBaseFanOut},
+ * go to numbered files next to the configured one.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@CustomLog
+public class OceanBaseStatementProfile {
+    private static final ThreadLocal<OceanBaseStatementProfile> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The files being written by the open profiles of this JVM.
+     */
+    private static final Set<String> FILES_IN_USE = new HashSet<>();
+
+    /**
+     * The longest SQL written to the profile, longer statements are truncated.
+     */
+    private static final int MAX_SQL_LENGTH = 1000;
+
+    private static final Comparator<Entry> FASTEST_FIRST = Comparator.comparingLong(entry -> entry.durationNanos);
+
+    private final File configuredFile;
+    private final boolean json;
+    private final int top;
+    private final OceanBaseStatementProfile previous;
+    private final PriorityQueue<Entry> slowest;
+    private volatile boolean traceIds;
+    private File file;
+    private Writer writer;
+    private boolean writeFailed;
+    private long statements;
+    private long failedStatements;
+    private long totalNanos;
+
+    private OceanBaseStatementProfile(OceanBaseConfigurationExtension configuration, OceanBaseStatementProfile previous) {
+        this.configuredFile = new File(configuration.getProfileFile());
+        this.json = configuredFile.getName().toLowerCase(Locale.ENGLISH).endsWith(".json");
+        this.top = configuration.getProfileTop();
+        this.traceIds = configuration.isProfileTraceId();
+        this.previous = previous;
+        this.slowest = new PriorityQueue<>(top + 1, FASTEST_FIRST);
+    }
+
+    /**
+     * Opens a profile for the scripts executed by the current thread, if profiling is configured.
+     *
+     * @param configuration The plugin's configuration.
+     * @return The profile, or {@code null} if profiling is disabled.
+     */
+    static OceanBaseStatementProfile open(OceanBaseConfigurationExtension configuration) {
+        if (configuration.getProfileFile() == null) {
+            return null;
+        }
+        OceanBaseStatementProfile profile = new OceanBaseStatementProfile(configuration, CURRENT.get());
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    /**
+     * @return The profile of the scripts executed by the current thread, or {@code null} if they are not profiled.
+     */
+    static OceanBaseStatementProfile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return Whether the trace ID of every statement is to be read.
+     */
+    boolean isTraceIds() {
+        return traceIds;
+    }
+
+    /**
+     * Stops reading trace IDs, when the server does not provide them.
+     */
+    void disableTraceIds() {
+        traceIds = false;
+    }
+
+    /**
+     * Records an executed statement.
+     *
+     * @param script        The script the statement belongs to.
+     * @param line          The line of the script the statement starts at.
+     * @param sql           The statement.
+     * @param durationNanos The time the statement took, in nanoseconds.
+     * @param rows          The number of rows affected, or -1 if unknown.
+     * @param traceId       The OceanBase trace ID of the statement, or {@code null} if unknown.
+     * @param failed        Whether the statement failed.
+     */
+    synchronized void record(String script, int line, String sql, long durationNanos, long rows, String traceId,
+                             boolean failed) {
+        statements++;
+        totalNanos += durationNanos;
+        if (failed) {
+            failedStatements++;
+        }
+        String category = OceanBaseStatementCategory.of(sql).name();
+        String singleLine = sql.replaceAll("\\s+", " ").trim();
+        if (singleLine.length() > MAX_SQL_LENGTH) {
+            singleLine = singleLine.substring(0, MAX_SQL_LENGTH - 3) + "...";
+        }
+        write(script, line, category, durationNanos, rows, traceId, failed, singleLine);
+
+        if (slowest.size() < top || durationNanos > slowest.peek().durationNanos) {
+            slowest.add(new Entry(script, line, category, durationNanos, rows, traceId, failed, singleLine));
+            if (slowest.size() > top) {
+                slowest.poll();
+            }
+        }
+    }
+
+    private void write(String script, int line, String category, long durationNanos, long rows, String traceId,
+                       boolean failed, String sql) {
+        if (writeFailed) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                file = claimFile();
+                writer = FileUtils.openWriter(file);
+                writer.write(json ? "[\n" : "script,line,category,duration_ms,rows,trace_id,failed,sql\n");
+            } else if (json) {
+                writer.write(",\n");
+            }
+            String duration = String.format(Locale.ENGLISH, "%.3f", durationNanos / 1_000_000.0);
+            String rowCount = rows < 0 ? "" : Long.toString(rows);
+            if (json) {
+                writer.write("{\"script\":" + jsonString(script) + ",\"line\":" + line
+                        + ",\"category\":" + jsonString(category) + ",\"durationMs\":" + duration
+                        + ",\"rows\":" + (rows < 0 ? "null" : rowCount) + ",\"traceId\":" + jsonString(traceId)
+                        + ",\"failed\":" + failed + ",\"sql\":" + jsonString(sql) + "}");
+            } else {
+                writer.write(csvField(script) + "," + line + "," + category + "," + duration + "," + rowCount + ","
+                        + csvField(traceId) + "," + failed + "," + csvField(sql) + "\n");
+            }
+        } catch (IOException | FlywayException e) {
+            writeFailed = true;
+            LOG.warn("Unable to write statement profile " + (file == null ? configuredFile : file) + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The configured file, or a numbered one next to it if another profile of this JVM is writing it.
+     */
+    private File claimFile() {
+        synchronized (FILES_IN_USE) {
+            String name = configuredFile.getName();
+            int dot = name.lastIndexOf('.');
+            File candidate = configuredFile;
+            for (int i = 2; !FILES_IN_USE.add(candidate.getAbsolutePath()); i++) {
+                candidate = new File(configuredFile.getAbsoluteFile().getParentFile(),
+                        dot > 0 ? name.substring(0, dot) + "-" + i + name.substring(dot) : name + "-" + i);
+            }
+            return candidate;
+        }
+    }
+
+    /**
+     * Completes the profile file, logs the slowest statements and stops profiling the current thread.
+     */
+    synchronized void close() {
+        if (CURRENT.get() == this) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+        if (writer != null) {
+            try {
+                if (json && !writeFailed) {
+                    writer.write("\n]\n");
+                }
+                writer.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to write statement profile " + file + ": " + e.getMessage());
+            }
+            synchronized (FILES_IN_USE) {
+                FILES_IN_USE.remove(file.getAbsolutePath());
+            }
+        }
+        if (statements > 0) {
+            LOG.info(format());
+        }
+    }
+
+    private String format() {
+        List<Entry> entries = new ArrayList<>(slowest);
+        entries.sort(FASTEST_FIRST.reversed());
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ENGLISH, "Profiled %d statements (%d failed) taking %.3f s", statements,
+                failedStatements, totalNanos / 1_000_000_000.0));
+        if (file != null && !writeFailed) {
+            text.append(" to ").append(file);
+        }
+        text.append(", slowest:");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            text.append(String.format(Locale.ENGLISH, "%n%3d. %s:%d  %.3f ms %s", i + 1, entry.script, entry.line,
+                    entry.durationNanos / 1_000_000.0, entry.category));
+            if (entry.rows >= 0) {
+                text.append(" rows=").append(entry.rows);
+            }
+            if (entry.traceId != null) {
+                text.append(" trace=").append(entry.traceId);
+            }
+            if (entry.failed) {
+                text.append(" FAILED");
+            }
+            String sql = entry.sql;
+            text.append(String.format("%n     %s", sql.length() <= 120 ? sql : sql.substring(0, 117) + "..."));
+        }
+        return text.toString();
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * One of the slowest statements.
+     */
+    private static class Entry {
+        private final String script;
+        private final int line;
+        private final String category;
+        private final long durationNanos;
+        private final long rows;
+        private final String traceId;
+        private final boolean failed;
+        private final String sql;
+
+        Entry(String script, int line, String category, long durationNanos, long rows, String traceId, boolean failed,
+              String sql) {
+            this.script = script;
+            this.line = line;
+            this.category = category;
+            this.durationNanos = durationNanos;
+            this.rows = rows;
+            this.traceId = traceId;
+            this.failed = failed;
+            this.sql = sql;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.fancysunkk.flyway.database.oceanbase;
+
+import lombok.Getter;
+import org.flywaydb.core.api.MigrationVersion;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The version and edition of an OceanBase server, parsed from {@code @@version_comment} and {@code @@version}.
+ *
+ * @author Sunk
+ * @version 1.0
+ */
+@Getter
+public class OceanBaseVersion {
+    // e.g. "OceanBase_CE 4.2.1.0 (r100000102023103109-...) (Built Oct 31 2023 10:12:54)"
+    private static final Pattern VERSION_COMMENT_PATTERN = Pattern.compile("OceanBase(_CE)?\\s+v?(\\d+)\\.(\\d+)\\.(\\d+)(?:\\.(\\d+))?");
+    // e.g. "5.7.25-OceanBase_CE-v4.2.1.0"
+    private static final Pattern VERSION_PATTERN = Pattern.compile("OceanBase(_CE)?-v(\\d+)\\.(\\d+)\\.(\\d+)(?:\\.(\\d+))?");
+
+    public enum Edition {
+        COMMUNITY,
+        ENTERPRISE
+    }
+
+    public enum CompatibilityMode {
+        MYSQL,
+        ORACLE
+    }
+
+    private final String versionComment;
+    private final String serverVersion;
+    private final int major;
+    private final int minor;
+    private final int patch;
+    private final int hotfix;
+    private final Edition edition;
+    private final CompatibilityMode compatibilityMode;
+
+    private OceanBaseVersion(String versionComment, String serverVersion, int major, int minor, int patch, int hotfix,
+                             Edition edition, CompatibilityMode compatibilityMode) {
+        this.versionComment = versionComment;
+        this.serverVersion = serverVersion;
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.hotfix = hotfix;
+        this.edition = edition;
+        this.compatibilityMode = compatibilityMode;
+    }
+
+    /**
+     * Parses the version of an OceanBase server.
+     *
+     * @param versionComment    The value of {@code @@version_comment}.
+     * @param serverVersion     The value of {@code @@version}.
+     * @param compatibilityMode The compatibility mode of the tenant.
+     * @return The version, or {@code null} if the server is not OceanBase.
+     */
+    static OceanBaseVersion parse(String versionComment, String serverVersion, CompatibilityMode compatibilityMode) {
+        Matcher matcher = find(VERSION_COMMENT_PATTERN, versionComment);
+        if (matcher == null) {
+            matcher = find(VERSION_PATTERN, serverVersion);
+        }
+        if (matcher == null) {
+            return null;
+        }
+        return new OceanBaseVersion(versionComment, serverVersion,
+                Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(3)),
+                Integer.parseInt(matcher.group(4)),
+                matcher.group(5) == null ? 0 : Integer.parseInt(matcher.group(5)),
+                matcher.group(1) == null ? Edition.ENTERPRISE : Edition.COMMUNITY,
+                compatibilityMode);
+    }
+
+    private static Matcher find(Pattern pattern, String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(value);
+        return matcher.find() ? matcher : null;
+    }
+
+    /**
+     * @return The version number, such as {@code 4.2.1.0}.
+     */
+    public String getVersionNumber() {
+        return major + "." + minor + "." + patch + "." + hotfix;
+    }
+
+    public MigrationVersion toMigrationVersion() {
+        return MigrationVersion.fromVersion(getVersionNumber());
+    }
+
+    /**
+     * Checks whether this version is the given version or newer.
+     *
+     * @param major The major version.
+     * @param minor The minor version.
+     * @param patch The patch version.
+     * @return {@code true} if it is.
+     */
+    public boolean isAtLeast(int major, int minor, int patch) {
+        if (this.major != major) {
+            return this.major > major;
+        }
+        if (this.minor != minor) {
+            return this.minor > minor;
+        }
+        return this.patch >= patch;
+    }
+
+    public boolean isMySQLMode() {
+        return compatibilityMode == CompatibilityMode.MYSQL;
+    }
+
+    @Override
+    public String toString() {
+        return "OceanBase " + (edition == Edition.COMMUNITY ? "CE " : "EE ") + getVersionNumber()
+                + " (" + compatibilityMode + " mode)";
+    }
+}